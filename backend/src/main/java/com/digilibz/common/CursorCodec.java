@@ -0,0 +1,37 @@
+package com.digilibz.common;
+
+import com.digilibz.exception.ApiException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor tokens: the key columns of the last row of a page joined
+ * with a separator and base64url encoded, so clients can only hand them back.
+ */
+public final class CursorCodec {
+
+    private static final String SEPARATOR = "\u001F";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(String... keys) {
+        String raw = String.join(SEPARATOR, keys);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String[] decode(String cursor, int expectedKeys) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] keys = raw.split(SEPARATOR, -1);
+            if (keys.length != expectedKeys) {
+                throw new IllegalArgumentException();
+            }
+            return keys;
+        } catch (IllegalArgumentException e) {
+            throw new ApiException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.digilibz.config;
 
+import com.digilibz.dto.CursorPage;
+import com.digilibz.repository.NotificationRepository;
+import com.digilibz.repository.TransactionRepository;
+import com.digilibz.service.auth.TokenService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
+import java.util.function.Function;
 
 @Configuration
 @EnableWebSecurity
@@ -22,12 +33,67 @@ public class SecurityConfig {
         return new BCryptPasswordEncoder();
     }
 
+    /**
+     * Bearer tokens are always verified when present. Requiring them is opt-in with
+     * {@code digilibz.auth.enforce=true} until every client sends one; until then every
+     * route is open. Once enforced, registration and login stay open; catalog writes,
+     * user administration, exports, imports and scheduled-job routes need the
+     * {@code ADMIN} role; and routes about one user's data, or about a transaction or
+     * notification they own, only answer that user or an admin.
+     */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(
+            HttpSecurity http,
+            TokenService tokenService,
+            TransactionRepository transactionRepository,
+            NotificationRepository notificationRepository,
+            @Value("${digilibz.auth.enforce:false}") boolean enforce
+    ) throws Exception {
+        Function<String, String> borrower = invoiceCode ->
+                transactionRepository.findUserIdByInvoiceCode(invoiceCode).orElse(null);
+        Function<String, String> recipient = notificationId ->
+                notificationRepository.findUserIdById(notificationId).orElse(null);
         http
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
-            .authorizeHttpRequests(auth -> auth.anyRequest().permitAll());
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class)
+            .exceptionHandling(exceptions -> exceptions.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+            .authorizeHttpRequests(auth -> {
+                if (enforce) {
+                    auth.requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                        .requestMatchers("/api/auth/login", "/api/auth/login/admin", "/swagger-ui/**", "/v3/api-docs/**").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/users/register").permitAll()
+                        .requestMatchers("/api/export/**", "/api/books/import/**", "/api/fees/accrue",
+                                "/api/transactions/overdue/run", "/api/reviews/ratings/reconcile").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/api/users").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/api/users/register/admin", "/api/books", "/api/reviews/batch",
+                                "/api/notifications").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.PUT, "/api/transactions", "/api/books/{id}").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.DELETE, "/api/books/{id}").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/api/notifications", "/api/notifications/inbox",
+                                "/api/notifications/unread-count", "/api/notifications/stream", "/api/fees/balance",
+                                "/api/transactions", "/api/transactions/stream")
+                            .access(UserScopeAuthorizationManager.parameter("userId"))
+                        .requestMatchers(HttpMethod.PUT, "/api/notifications/read-all")
+                            .access(UserScopeAuthorizationManager.parameter("userId"))
+                        .requestMatchers(HttpMethod.GET, "/api/transactions/invoice", "/api/transactions/reservations",
+                                "/api/fees/ledger")
+                            .access(UserScopeAuthorizationManager.parameter("invoiceCode").ownedBy(borrower))
+                        .requestMatchers(HttpMethod.PUT, "/api/transactions/reservations")
+                            .access(UserScopeAuthorizationManager.parameter("invoiceCode").ownedBy(borrower))
+                        .requestMatchers(HttpMethod.PUT, "/api/notifications")
+                            .access(UserScopeAuthorizationManager.parameter("notifId").ownedBy(recipient))
+                        .requestMatchers(HttpMethod.DELETE, "/api/notifications/{notifId}")
+                            .access(UserScopeAuthorizationManager.pathVariable("notifId").ownedBy(recipient))
+                        .requestMatchers(HttpMethod.GET, "/api/users/{id}").access(UserScopeAuthorizationManager.pathVariable("id"))
+                        .requestMatchers(HttpMethod.PUT, "/api/users/{id}").access(UserScopeAuthorizationManager.pathVariable("id"))
+                        .requestMatchers(HttpMethod.DELETE, "/api/users/{id}").access(UserScopeAuthorizationManager.pathVariable("id"))
+                        .anyRequest().authenticated();
+                } else {
+                    auth.anyRequest().permitAll();
+                }
+            });
         return http.build();
     }
 
@@ -41,6 +107,7 @@ public class SecurityConfig {
         ));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList(CursorPage.NEXT_CURSOR_HEADER));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -0,0 +1,61 @@
+package com.digilibz.config;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.authorization.AuthorizationResult;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Grants a request about one user's data to that user and to admins. The user id is
+ * taken from the request by {@code target}, or looked up from a record id with
+ * {@link #ownedBy}; a missing id only passes for admins, so a listing that falls back
+ * to every user's rows, or a record that does not exist, stays admin-only.
+ */
+public class UserScopeAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+
+    private static final String ADMIN_AUTHORITY = "ROLE_ADMIN";
+
+    private final Function<RequestAuthorizationContext, String> target;
+
+    private UserScopeAuthorizationManager(Function<RequestAuthorizationContext, String> target) {
+        this.target = target;
+    }
+
+    public static UserScopeAuthorizationManager parameter(String name) {
+        return new UserScopeAuthorizationManager(context -> context.getRequest().getParameter(name));
+    }
+
+    public static UserScopeAuthorizationManager pathVariable(String name) {
+        return new UserScopeAuthorizationManager(context -> context.getVariables().get(name));
+    }
+
+    /**
+     * Treats the value taken from the request as a record id and grants the user that
+     * {@code owner} maps it to, e.g. an invoice code to its borrower.
+     */
+    public UserScopeAuthorizationManager ownedBy(Function<String, String> owner) {
+        return new UserScopeAuthorizationManager(context -> {
+            String recordId = target.apply(context);
+            return recordId == null ? null : owner.apply(recordId);
+        });
+    }
+
+    @Override
+    public AuthorizationResult authorize(Supplier<? extends Authentication> authentication,
+                                         RequestAuthorizationContext context) {
+        Authentication caller = authentication.get();
+        if (caller == null || !caller.isAuthenticated() || caller instanceof AnonymousAuthenticationToken) {
+            return new AuthorizationDecision(false);
+        }
+        if (caller.getAuthorities().stream().anyMatch(authority -> ADMIN_AUTHORITY.equals(authority.getAuthority()))) {
+            return new AuthorizationDecision(true);
+        }
+        String userId = target.apply(context);
+        return new AuthorizationDecision(userId != null && userId.equals(caller.getName()));
+    }
+}
@@ -0,0 +1,76 @@
+package com.digilibz.controller;
+
+import com.digilibz.exception.ApiException;
+import com.digilibz.service.analytics.AnalyticsEngine;
+import com.digilibz.service.analytics.Granularity;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+
+    private static final int DEFAULT_RANGE_DAYS = 30;
+
+    private final AnalyticsEngine analyticsEngine;
+
+    public AnalyticsController(AnalyticsEngine analyticsEngine) {
+        this.analyticsEngine = analyticsEngine;
+    }
+
+    @Operation(summary = "Ambil data analitik per periode",
+            description = "Mengambil data agregat transactions, reviews atau users per HOUR/DAY/MONTH dalam rentang tanggal [from, to)")
+    @GetMapping()
+    public ResponseEntity<?> getAnalytics(
+            @RequestParam(value = "metric") String metric,
+            @RequestParam(value = "granularity", required = false, defaultValue = "DAY") String granularity,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "dimension", required = false) String dimension
+    ) {
+        Granularity bucketSize;
+        try {
+            bucketSize = Granularity.valueOf(granularity.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ApiException("Granularity tidak valid. Gunakan 'hour', 'day' atau 'month'", HttpStatus.BAD_REQUEST);
+        }
+
+        LocalDateTime end = (to != null ? to : LocalDate.now().plusDays(1)).atStartOfDay();
+        LocalDateTime start = from != null ? from.atStartOfDay() : end.minusDays(DEFAULT_RANGE_DAYS);
+        if (!start.isBefore(end)) {
+            throw new ApiException("Parameter 'from' harus sebelum 'to'", HttpStatus.BAD_REQUEST);
+        }
+
+        Map<LocalDateTime, Map<String, Object>> buckets;
+        try {
+            buckets = analyticsEngine.query(metric.toLowerCase(), bucketSize, start, end, dimension);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        List<Map<String, Object>> data = new ArrayList<>(buckets.size());
+        buckets.forEach((bucketStart, values) -> {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("bucket", bucketStart);
+            point.putAll(values);
+            data.add(point);
+        });
+
+        return ResponseEntity.ok().body(Map.of(
+                "message", "Data analitik berhasil diambil",
+                "metric", metric.toLowerCase(),
+                "granularity", bucketSize,
+                "data", data
+        ));
+    }
+}
@@ -2,8 +2,14 @@ package com.digilibz.controller;
 
 import com.digilibz.models.User;
 import com.digilibz.service.AuthService;
+import com.digilibz.service.auth.ClientAddressResolver;
+import com.digilibz.service.auth.LoginRateLimiter;
+import com.digilibz.service.auth.TokenService;
 import com.digilibz.dto.AuthRequest;
+import com.digilibz.exception.ApiException;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,26 +21,31 @@ import java.util.Map;
 public class AuthController {
 
     private final AuthService authService;
+    private final ClientAddressResolver clientAddressResolver;
 
-    public AuthController(AuthService authService) {
+    public AuthController(AuthService authService, ClientAddressResolver clientAddressResolver) {
         this.authService = authService;
+        this.clientAddressResolver = clientAddressResolver;
     }
 
     @Operation(summary = "Login user", description = "Authenticate user with email and password")
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody AuthRequest loginRequest) {
+    public ResponseEntity<?> login(@RequestBody AuthRequest loginRequest, HttpServletRequest request) {
         try {
-            User user = authService.login(loginRequest.getEmail(), loginRequest.getPassword());
-            String token = authService.generateToken(user);
+            User user = authService.login(loginRequest.getEmail(), loginRequest.getPassword(), clientAddressResolver.resolve(request));
+            TokenService.IssuedToken token = authService.generateToken(user);
 
             Map<String, Object> response = new HashMap<>();
             response.put("id", user.getId());
             response.put("email", user.getEmail());
             response.put("name", user.getName());
             response.put("role", user.getRole().toString());
-            response.put("token", token);
+            response.put("token", token.token());
+            response.put("expiresAt", token.expiresAt());
 
             return ResponseEntity.ok(response);
+        } catch (ApiException e) {
+            return loginUnavailable(e);
         } catch (RuntimeException e) {
             return ResponseEntity.status(401).body(Map.of("error", e.getMessage()));
         }
@@ -42,21 +53,51 @@ public class AuthController {
 
     @Operation(summary = "Login admin", description = "Authenticate admin with email and password")
     @PostMapping("/login/admin")
-    public ResponseEntity<?> loginAdmin(@RequestBody AuthRequest loginRequest) {
+    public ResponseEntity<?> loginAdmin(@RequestBody AuthRequest loginRequest, HttpServletRequest request) {
         try {
-            User user = authService.loginAdmin(loginRequest.getEmail(), loginRequest.getPassword());
-            String token = authService.generateToken(user);
+            User user = authService.loginAdmin(loginRequest.getEmail(), loginRequest.getPassword(), clientAddressResolver.resolve(request));
+            TokenService.IssuedToken token = authService.generateToken(user);
 
             Map<String, Object> response = new HashMap<>();
             response.put("id", user.getId());
             response.put("email", user.getEmail());
             response.put("name", user.getName());
             response.put("role", user.getRole().toString());
-            response.put("token", token);
+            response.put("token", token.token());
+            response.put("expiresAt", token.expiresAt());
 
             return ResponseEntity.ok(response);
+        } catch (ApiException e) {
+            return loginUnavailable(e);
         } catch (RuntimeException e) {
             return ResponseEntity.status(403).body(Map.of("error", e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Login statistics", description = "Password verification pool metrics and rate limiter counters")
+    @GetMapping("/login/stats")
+    public ResponseEntity<Map<String, Object>> getLoginStats() {
+        return ResponseEntity.ok(authService.getLoginStats());
+    }
+
+    @Operation(summary = "Logout", description = "Revoke the bearer token sent in the Authorization header")
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return ResponseEntity.status(401).body(Map.of("error", "Missing bearer token"));
+        }
+        if (!authService.logout(authorization.substring("Bearer ".length()).trim())) {
+            return ResponseEntity.status(401).body(Map.of("error", "Invalid or expired token"));
+        }
+        return ResponseEntity.ok(Map.of("message", "Logged out"));
+    }
+
+    private ResponseEntity<?> loginUnavailable(ApiException e) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(e.getStatus());
+        if (e instanceof LoginRateLimiter.RateLimitedException limited) {
+            long seconds = Math.max(1, (limited.getRetryAfter().toMillis() + 999) / 1000);
+            response.header(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        }
+        return response.body(Map.of("error", e.getMessage()));
+    }
+}
@@ -1,10 +1,15 @@
 package com.digilibz.controller;
 
+import com.digilibz.dto.CursorPage;
 import com.digilibz.models.Book;
 import com.digilibz.service.BookService;
 import com.digilibz.service.ReviewService;
 import com.digilibz.dto.review.ReviewDTO;
 import com.digilibz.exception.ApiException;
+import com.digilibz.service.importer.BookImportJob;
+import com.digilibz.service.importer.BookImportService;
+import com.digilibz.service.importer.ImportFormat;
+import com.digilibz.service.rating.RatingAggregateService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +17,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -27,38 +33,104 @@ public class BookController {
     @Autowired
     private ReviewService reviewService;
 
-    @Operation(summary = "Get all books", description = "Retrieve all books with optional filters")
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private RatingAggregateService ratingAggregateService;
+
+    @Operation(summary = "Get books", description = "Retrieve one page of books with optional filters, sorted by title, year, rating or availability. A search without sort is ordered by relevance and pages through every hit; a search with sort orders only the 200 best hits. The next page cursor is returned in the X-Next-Cursor header. With facets=true the page is wrapped together with per-value counts for category, year, language and canBorrow")
     @GetMapping
-    public ResponseEntity<List<Book>> getAllBooks(
+    public ResponseEntity<?> getAllBooks(
             @RequestParam(value = "search", required = false) String search,
             @RequestParam(value = "category", required = false) String category,
-            @RequestParam(value = "years", required = false) Integer years
+            @RequestParam(value = "years", required = false) Integer years,
+            @RequestParam(value = "language", required = false) String language,
+            @RequestParam(value = "canBorrow", required = false) Boolean canBorrow,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "order", required = false) String order,
+            @RequestParam(value = "view", required = false) String view,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "facets", required = false, defaultValue = "false") boolean facets
     ) {
-        List<Book> books = bookService.getAllBooks(search, category, years);
-        return ResponseEntity.ok(books);
+        CursorPage<?> page = bookService.getBooks(search, category, years, language, canBorrow, sort, order, view, cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        if (facets) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("items", page.getItems());
+            body.put("nextCursor", page.getNextCursor());
+            body.put("facets", bookService.getFacetCounts(search, category, years, language, canBorrow));
+            return response.body(body);
+        }
+        return response.body(page.getItems());
     }
 
-    @Operation(summary = "Get recommended books", description = "Retrieve recommended books with max data filters")
+    @Operation(summary = "Get recommended books", description = "Retrieve recommended books, personalised when userId is given or randomly sampled when random=true")
     @GetMapping("/recommended")
     public ResponseEntity<List<Book>> getRecommendedBooks(
-            @RequestParam(value = "max", required = false) Integer max
+            @RequestParam(value = "max", required = false) Integer max,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "random", required = false, defaultValue = "false") boolean random
     ) {
-        List<Book> books = bookService.getRecommendedBooks(max);
+        List<Book> books = bookService.getRecommendedBooks(max, userId, random);
         return ResponseEntity.ok(books);
     }
 
+    @Operation(summary = "Get book cache statistics", description = "Retrieve hit, miss and eviction counters of the book cache")
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(bookService.getCacheStats());
+    }
+
+    @Operation(summary = "Import books in bulk", description = "Upload a CSV (with header row) or JSON array of books as the raw request body; the import runs in the background")
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/json", "application/octet-stream"})
+    public ResponseEntity<BookImportJob> importBooks(
+            @RequestParam(value = "format", required = false, defaultValue = "csv") String format,
+            InputStream body
+    ) {
+        BookImportJob job = bookImportService.submit(body, ImportFormat.from(format));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @Operation(summary = "Get book import progress", description = "Retrieve counters, throughput and the first validation errors of an import")
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<BookImportJob> getImport(@PathVariable String jobId) {
+        return bookImportService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ApiException("No value present", HttpStatus.NOT_FOUND));
+    }
+
+    @Operation(summary = "Resume a book import", description = "Restart a failed import from its last committed checkpoint")
+    @PostMapping("/import/{jobId}/resume")
+    public ResponseEntity<BookImportJob> resumeImport(@PathVariable String jobId) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(bookImportService.resume(jobId));
+    }
+
+    @Operation(summary = "Get book rating summary", description = "Retrieve the review count, average rating and star histogram of a book")
+    @GetMapping("/{id}/ratings")
+    public ResponseEntity<Map<String, Object>> getBookRating(@PathVariable String id) {
+        if (!bookService.existsById(id)) {
+            throw new ApiException("No value present", HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(ratingAggregateService.getBookRating(id));
+    }
+
     @Operation(summary = "Get book by ID", description = "Retrieve a book by its ID")
     @GetMapping("/{id}")
     public ResponseEntity<Map<String, Object>> getBookById(
             @Parameter(description = "ID of the book to retrieve", required = true) @PathVariable String id,
             @RequestParam(value = "max", required = false) Integer max
     ) {
-        Book book = bookService.getBookById(id)
+        Map<String, Object> book = bookService.getBookMapById(id)
                 .orElseThrow(() -> new ApiException("No value present", HttpStatus.NOT_FOUND));
 
         List<ReviewDTO> reviews = reviewService.getReview(id, max);
 
-        Map<String, Object> response = new HashMap<>(book.toMap());
+        Map<String, Object> response = new HashMap<>(book);
         response.put("reviews", reviews);
 
         return ResponseEntity.ok(response);
@@ -71,10 +143,13 @@ public class BookController {
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Book> updateBook(@PathVariable String id, @RequestBody Book book) {
+    public ResponseEntity<?> updateBook(@PathVariable String id, @RequestBody Book book) {
         try {
             Book updatedBook = bookService.updateBook(id, book);
             return ResponseEntity.ok(updatedBook);
+        } catch (IllegalArgumentException e) {
+            // A quota below the copies currently lent out.
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
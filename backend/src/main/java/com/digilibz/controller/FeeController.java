@@ -0,0 +1,59 @@
+package com.digilibz.controller;
+
+import com.digilibz.service.TransactionService;
+import com.digilibz.service.fee.FeeLedgerService;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/fees")
+public class FeeController {
+
+    private final FeeLedgerService feeLedgerService;
+    private final TransactionService transactionService;
+
+    public FeeController(FeeLedgerService feeLedgerService, TransactionService transactionService) {
+        this.feeLedgerService = feeLedgerService;
+        this.transactionService = transactionService;
+    }
+
+    @Operation(summary = "Ambil saldo denda user", description = "Mengambil total denda keterlambatan yang belum dibayar oleh user")
+    @GetMapping("/balance")
+    public ResponseEntity<Map<String, Object>> getBalance(
+            @RequestParam(value = "userId", required = true) String userId
+    ) {
+        return ResponseEntity.ok(feeLedgerService.getBalance(userId));
+    }
+
+    @Operation(summary = "Ambil riwayat denda transaksi", description = "Mengambil catatan denda harian berdasarkan kode invoice")
+    @GetMapping("/ledger")
+    public ResponseEntity<?> getLedger(
+            @RequestParam(value = "invoiceCode", required = true) String invoiceCode
+    ) {
+        try {
+            return ResponseEntity.ok(feeLedgerService.getLedger(transactionService.findIdByInvoiceCode(invoiceCode)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Jalankan perhitungan denda harian", description = "Menghitung denda transaksi OVERDUE sampai hari ini lalu merekonsiliasi saldo")
+    @PostMapping("/accrue")
+    public ResponseEntity<?> accrue() {
+        return feeLedgerService.accrueDaily()
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("message", "Perhitungan denda sedang berjalan di node lain")));
+    }
+
+    @Operation(summary = "Status perhitungan denda terakhir", description = "Ringkasan hasil perhitungan denda harian terakhir")
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats() {
+        Map<String, Object> lastRun = feeLedgerService.getLastRun();
+        return ResponseEntity.ok(lastRun != null ? lastRun : Map.of());
+    }
+}
@@ -1,11 +1,15 @@
 package com.digilibz.controller;
 
+import com.digilibz.dto.CursorPage;
+import com.digilibz.dto.notification.NotificationDTO;
 import com.digilibz.models.Notification;
 import com.digilibz.models.User;
 import com.digilibz.service.NotificationsService;
+import com.digilibz.service.notification.NotificationPipeline;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -25,10 +29,51 @@ public class NotificationController {
     public ResponseEntity<?> getNotif(
             @RequestParam(value = "userId", required = true) String userId
     ) {
-        List<Notification> notifications = notificationsService.getNotificationsByUserId(userId);
+        List<NotificationDTO> notifications = notificationsService.getNotificationsByUserId(userId);
         return ResponseEntity.ok().body(notifications);
     }
 
+    @Operation(summary = "Inbox notifikasi by userId", description = "Mengambil notifikasi terbaru per halaman dengan cursor, bisa difilter berdasarkan status read")
+    @GetMapping("/inbox")
+    public ResponseEntity<CursorPage<NotificationDTO>> getInbox(
+            @RequestParam(value = "userId", required = true) String userId,
+            @RequestParam(value = "read", required = false) Boolean read,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit
+    ) {
+        return ResponseEntity.ok(notificationsService.getInbox(userId, read, cursor, limit));
+    }
+
+    @Operation(summary = "Jumlah notifikasi belum dibaca", description = "Mengambil jumlah notifikasi yang belum dibaca oleh user")
+    @GetMapping("/unread-count")
+    public ResponseEntity<Map<String, Object>> getUnreadCount(
+            @RequestParam(value = "userId", required = true) String userId
+    ) {
+        return ResponseEntity.ok(Map.of("unread", notificationsService.getUnreadCount(userId)));
+    }
+
+    @Operation(summary = "Tandai semua notifikasi sudah dibaca", description = "Mengupdate semua notifikasi user menjadi read = true")
+    @PutMapping("/read-all")
+    public ResponseEntity<Map<String, Object>> markAllAsRead(
+            @RequestParam(value = "userId", required = true) String userId
+    ) {
+        return ResponseEntity.ok(Map.of("updated", notificationsService.markAllAsRead(userId)));
+    }
+
+    @Operation(summary = "Stream notifikasi by userId", description = "Server-Sent Events berisi notifikasi baru dan perubahan jumlah belum dibaca")
+    @GetMapping("/stream")
+    public SseEmitter streamNotif(
+            @RequestParam(value = "userId", required = true) String userId
+    ) {
+        return notificationsService.subscribe(userId);
+    }
+
+    @Operation(summary = "Statistik antrean notifikasi", description = "Kedalaman antrean, ukuran batch dan latensi flush penulis notifikasi")
+    @GetMapping("/pipeline/stats")
+    public ResponseEntity<NotificationPipeline.Stats> getPipelineStats() {
+        return ResponseEntity.ok(notificationsService.getPipelineStats());
+    }
+
     @Operation(summary = "Update status notifikasi by notifId", description = "Mengupdate status notifikasi read = true")
     @PutMapping()
     public ResponseEntity<?> updateStatusNotif(
@@ -36,7 +81,7 @@ public class NotificationController {
     ) {
         try {
             Notification updatedNotification = notificationsService.markAsRead(notifId);
-            return ResponseEntity.ok().body(updatedNotification);
+            return ResponseEntity.ok().body(NotificationDTO.from(updatedNotification));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -53,7 +98,7 @@ public class NotificationController {
         try {
             User user = notificationsService.getUserById(userId);
             Notification newNotification = notificationsService.addNotification(user, title, message, type);
-            return ResponseEntity.ok().body(newNotification);
+            return ResponseEntity.ok().body(NotificationDTO.from(newNotification));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -1,28 +1,48 @@
 package com.digilibz.controller;
 
 import com.digilibz.service.ReviewService;
+import com.digilibz.service.importer.ReviewImportResult;
+import com.digilibz.service.importer.ReviewImportService;
+import com.digilibz.service.rating.RatingAggregateService;
+import com.digilibz.dto.CursorPage;
 import com.digilibz.dto.review.ReviewDTO;
+import com.digilibz.dto.review.ReviewImportRequest;
 import com.digilibz.dto.review.ReviewRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/reviews")
 public class ReviewController {
+
     @Autowired
     private ReviewService reviewService;
 
-    @Operation(summary = "Ambil daftar review by bookId", description = "Mengambil daftar review buku berdasarkan bookId")
+    @Autowired
+    private RatingAggregateService ratingAggregateService;
+
+    @Autowired
+    private ReviewImportService reviewImportService;
+
+    @Operation(summary = "Ambil daftar review by bookId", description = "Mengambil daftar review terbaru (opsional per bookId); cursor halaman berikutnya dikirim di header X-Next-Cursor")
     @GetMapping()
-    public List<ReviewDTO> getNotif(
+    public ResponseEntity<List<ReviewDTO>> getNotif(
             @RequestParam(value = "bookId", required = false) String bookId,
-            @RequestParam(value = "max", required = false) Integer max
+            @RequestParam(value = "max", required = false) Integer max,
+            @RequestParam(value = "cursor", required = false) String cursor
     ) {
-        return reviewService.getReview(bookId, max);
+        CursorPage<ReviewDTO> page = reviewService.getReviewFeed(bookId, cursor, max);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(CursorPage.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
     }
 
     @Operation(summary = "Tambah review", description = "Menambah review untuk buku")
@@ -30,4 +50,26 @@ public class ReviewController {
     public ResponseEntity<?> postReview(@RequestBody ReviewRequest reviewRequest) {
         return reviewService.submitReview(reviewRequest);
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Tambah review secara batch", description = "Menyimpan hingga 5000 review sekaligus; review kedua dari user yang sama untuk buku yang sama menggantikan review sebelumnya")
+    @PostMapping("/batch")
+    public ResponseEntity<ReviewImportResult> postReviewBatch(@RequestBody List<ReviewImportRequest> reviews) {
+        return ResponseEntity.ok(reviewImportService.ingest(reviews));
+    }
+
+    @Operation(summary = "Rekonsiliasi agregat rating buku", description = "Menghitung ulang jumlah, total dan histogram rating per buku dari tabel review dan memperbaiki yang menyimpang")
+    @PostMapping("/ratings/reconcile")
+    public ResponseEntity<?> reconcileRatings() {
+        return ratingAggregateService.reconcile()
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("message", "Rekonsiliasi rating sedang berjalan di node lain")));
+    }
+
+    @Operation(summary = "Hasil rekonsiliasi rating terakhir", description = "Jumlah buku dan koreksi dari rekonsiliasi agregat rating terakhir")
+    @GetMapping("/ratings/reconcile")
+    public ResponseEntity<?> getLastRatingReconcile() {
+        Map<String, Object> lastRun = ratingAggregateService.getLastRun();
+        return ResponseEntity.ok(lastRun != null ? lastRun : Map.of());
+    }
+}
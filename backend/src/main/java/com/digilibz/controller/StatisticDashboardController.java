@@ -22,15 +22,7 @@ public class StatisticDashboardController {
         return ResponseEntity.ok().body(
                 Map.of(
                         "message", "Data statistik berhasil diambil",
-                        "data", Map.of(
-                                "totalBook", statisticservice.getStatisticBook(),
-                                "totalUser", statisticservice.getJumlahUserNow(),
-                                "totalTransaction", statisticservice.getJumlahTransaksi(),
-                                "totalNotifications", statisticservice.getJumlahNotifikasi(),
-                                "averageReview", statisticservice.getAverageReview(),
-                                "totalReview", statisticservice.getJumlahReview(),
-                                "recentReviews", statisticservice.getRecentReview(max)
-                        )
+                        "data", statisticservice.getSnapshot(max)
                 )
         );
     }
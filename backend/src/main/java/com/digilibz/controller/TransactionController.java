@@ -1,22 +1,30 @@
 package com.digilibz.controller;
 
 import com.digilibz.service.TransactionService;
+import com.digilibz.service.overdue.OverdueDetectionService;
+import com.digilibz.dto.CursorPage;
 import com.digilibz.dto.TransactionRequest;
+import com.digilibz.dto.transaction.TransactionResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/transactions")
 public class TransactionController {
+
     private final TransactionService transactionService;
+    private final OverdueDetectionService overdueDetectionService;
 
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, OverdueDetectionService overdueDetectionService) {
         this.transactionService = transactionService;
+        this.overdueDetectionService = overdueDetectionService;
     }
 
      @Operation(summary = "Tambah data transaksi", description = "Menambah data transaksi")
@@ -39,19 +47,79 @@ public class TransactionController {
      public ResponseEntity<?> getTransactionByInvoiceCode(
              @RequestParam(value = "invoiceCode", required = true) String invoiceCode
      ) {
-         Map<String, Object> response = transactionService.getTransactionByInvoiceCode(invoiceCode);
+         TransactionResponse response = transactionService.getTransactionByInvoiceCode(invoiceCode);
          return ResponseEntity.ok().body(response);
      }
 
      @Operation(summary = "Ambil data transaksi berdasarkan status & type (optional)", description = "Mengambil data transaksi berdasarkan status & type")
      @GetMapping()
      public ResponseEntity<?> getTransactionWithStatusType(
+             @RequestParam(value = "search", required = false) String search,
+             @RequestParam(value = "status", required = false) String status,
+             @RequestParam(value = "type", required = false) String type,
+             @RequestParam(value = "userId", required = false) String userId,
+             @RequestParam(value = "cursor", required = false) String cursor,
+             @RequestParam(value = "limit", required = false) Integer limit
+     ) {
+         CursorPage<TransactionResponse> page = transactionService.getTransactionsWithFilter(search, status, type, userId, cursor, limit);
+         ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+         if (page.getNextCursor() != null) {
+             response.header(CursorPage.NEXT_CURSOR_HEADER, page.getNextCursor());
+         }
+         return response.body(page.getItems());
+     }
+
+     @Operation(summary = "Ambil semua data transaksi sebagai stream JSON", description = "Menulis seluruh transaksi yang cocok dengan filter langsung ke response tanpa paginasi")
+     @GetMapping("/stream")
+     public ResponseEntity<StreamingResponseBody> streamTransactions(
              @RequestParam(value = "search", required = false) String search,
              @RequestParam(value = "status", required = false) String status,
              @RequestParam(value = "type", required = false) String type,
              @RequestParam(value = "userId", required = false) String userId
      ) {
-         return ResponseEntity.ok().body(transactionService.getTransactionsWithFilter(search, status, type, userId));
+         transactionService.validateFilters(status, type);
+         StreamingResponseBody body = out -> transactionService.writeTransactions(search, status, type, userId, out);
+         return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+     }
+
+     @Operation(summary = "Ambil reservasi buku berdasarkan kode invoice", description = "Mengambil daftar reservasi stok buku milik transaksi")
+     @GetMapping("/reservations")
+     public ResponseEntity<?> getReservations(
+             @RequestParam(value = "invoiceCode", required = true) String invoiceCode
+     ) {
+         try {
+             return ResponseEntity.ok().body(transactionService.getReservations(invoiceCode));
+         } catch (IllegalArgumentException e) {
+             return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+         }
+     }
+
+     @Operation(summary = "Perpanjang reservasi transaksi PENDING", description = "Memperpanjang masa berlaku reservasi stok buku untuk transaksi yang masih PENDING")
+     @PutMapping("/reservations")
+     public ResponseEntity<?> extendReservations(
+             @RequestParam(value = "invoiceCode", required = true) String invoiceCode
+     ) {
+         try {
+             int extended = transactionService.extendReservations(invoiceCode);
+             return ResponseEntity.ok().body(Map.of("message", "Reservasi berhasil diperpanjang", "extended", extended));
+         } catch (IllegalArgumentException e) {
+             return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+         }
+     }
+
+     @Operation(summary = "Statistik deteksi transaksi overdue", description = "Throughput dan lag dari proses terjadwal penandaan transaksi OVERDUE")
+     @GetMapping("/overdue/stats")
+     public ResponseEntity<Map<String, Object>> getOverdueStats() {
+         return ResponseEntity.ok(overdueDetectionService.getStats());
+     }
+
+     @Operation(summary = "Jalankan deteksi transaksi overdue", description = "Menjalankan satu kali proses penandaan transaksi BORROW yang melewati dateTo menjadi OVERDUE")
+     @PostMapping("/overdue/run")
+     public ResponseEntity<?> runOverdueDetection() {
+         return overdueDetectionService.detect()
+                 .<ResponseEntity<?>>map(ResponseEntity::ok)
+                 .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT)
+                         .body(Map.of("message", "Deteksi overdue sedang berjalan di node lain")));
      }
 
      @PutMapping
@@ -9,6 +9,7 @@ import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -61,9 +62,12 @@ public class UserController {
 
     @Operation(summary = "Update user data by id", description = "Update user data")
     @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable String id, @RequestBody User newUser) {
+    public ResponseEntity<User> updateUser(@PathVariable String id, @RequestBody User newUser, Authentication caller) {
+        // Only an admin may change a role.
+        boolean changeRole = caller != null && caller.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
         try {
-            User updatedUser = userService.updateUser(newUser, id);
+            User updatedUser = userService.updateUser(newUser, id, changeRole);
             return ResponseEntity.ok(updatedUser);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(null);
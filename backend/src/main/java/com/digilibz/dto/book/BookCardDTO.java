@@ -0,0 +1,38 @@
+package com.digilibz.dto.book;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * Listing projection of a book: what the catalogue grid shows, without the
+ * description text.
+ */
+@Setter
+@Getter
+public class BookCardDTO {
+
+    private String id;
+    private String title;
+    private String author;
+    private String category;
+    private int year;
+    private String image;
+    private BigDecimal rating;
+    private int availableCopies;
+    private boolean canBorrow;
+
+    public BookCardDTO(String id, String title, String author, String category, int year, String image,
+                       BigDecimal rating, int availableCopies, boolean canBorrow) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.category = category;
+        this.year = year;
+        this.image = image;
+        this.rating = rating;
+        this.availableCopies = availableCopies;
+        this.canBorrow = canBorrow;
+    }
+}
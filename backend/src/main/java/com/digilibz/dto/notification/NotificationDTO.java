@@ -0,0 +1,36 @@
+package com.digilibz.dto.notification;
+
+import com.digilibz.models.Notification;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Setter
+@Getter
+public class NotificationDTO {
+
+    private String id;
+    private String userId;
+    private String title;
+    private String message;
+    private Notification.NotificationType type;
+    private LocalDateTime date;
+    private boolean read;
+
+    public NotificationDTO(String id, String userId, String title, String message,
+                           Notification.NotificationType type, LocalDateTime date, boolean read) {
+        this.id = id;
+        this.userId = userId;
+        this.title = title;
+        this.message = message;
+        this.type = type;
+        this.date = date;
+        this.read = read;
+    }
+
+    public static NotificationDTO from(Notification notification) {
+        return new NotificationDTO(notification.getId(), notification.getUser().getId(), notification.getTitle(),
+                notification.getMessage(), notification.getType(), notification.getDate(), notification.isRead());
+    }
+}
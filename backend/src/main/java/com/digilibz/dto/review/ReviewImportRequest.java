@@ -0,0 +1,16 @@
+package com.digilibz.dto.review;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Setter
+@Getter
+public class ReviewImportRequest {
+    private String bookId;
+    private String authorId;
+    private Integer rating;
+    private String content;
+    private LocalDateTime date;
+}
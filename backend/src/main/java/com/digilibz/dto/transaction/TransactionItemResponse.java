@@ -0,0 +1,30 @@
+package com.digilibz.dto.transaction;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+@Setter
+@Getter
+public class TransactionItemResponse {
+
+    @JsonIgnore
+    private String transactionId;
+    private String id;
+    private String title;
+    private String author;
+    private String image;
+    private BigDecimal lateFee;
+
+    public TransactionItemResponse(String transactionId, String id, String title, String author, String image,
+                                   BigDecimal lateFee) {
+        this.transactionId = transactionId;
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.image = image;
+        this.lateFee = lateFee;
+    }
+}
@@ -0,0 +1,55 @@
+package com.digilibz.dto.transaction;
+
+import com.digilibz.models.Transaction;
+import com.digilibz.models.User;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read model for a transaction with its user and borrowed books, filled from a JPQL
+ * constructor projection plus one item query per page. Serializes to the same JSON
+ * shape the map-based responses used to produce.
+ */
+@Setter
+@Getter
+public class TransactionResponse {
+
+    private String id;
+    private String invoiceCode;
+    private DateRange dateRange;
+    private Transaction.TransactionStatus status;
+    private Transaction.TransactionType type;
+    private UserSummary user;
+    private double totalFee;
+    private BigDecimal lateFee;
+    private String paymentMethod;
+    private String paymentEvidence;
+    private List<TransactionItemResponse> items = new ArrayList<>();
+
+    public TransactionResponse(String id, String invoiceCode, LocalDate dateFrom, LocalDate dateTo,
+                               Transaction.TransactionStatus status, Transaction.TransactionType type,
+                               String userId, String userName, String userEmail, String userPhone, User.Role userRole,
+                               double totalFee, BigDecimal lateFee, String paymentMethod, String paymentEvidence) {
+        this.id = id;
+        this.invoiceCode = invoiceCode;
+        this.dateRange = new DateRange(dateFrom, dateTo);
+        this.status = status;
+        this.type = type;
+        this.user = new UserSummary(userId, userName, userEmail, userPhone, userRole);
+        this.totalFee = totalFee;
+        this.lateFee = lateFee;
+        this.paymentMethod = paymentMethod;
+        this.paymentEvidence = paymentEvidence;
+    }
+
+    public record DateRange(LocalDate from, LocalDate to) {
+    }
+
+    public record UserSummary(String id, String name, String email, String phone, User.Role role) {
+    }
+}
@@ -14,6 +14,10 @@ import java.util.Map;
 @Table(name = "books", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"title"}),
         @UniqueConstraint(columnNames = {"isbn"})
+}, indexes = {
+        @Index(name = "idx_books_year_id", columnList = "year, id"),
+        @Index(name = "idx_books_rating_id", columnList = "rating, id"),
+        @Index(name = "idx_books_available_copies_id", columnList = "available_copies, id")
 })
 public class Book {
 
@@ -52,7 +56,8 @@ public class Book {
     @Column(name = "language", length = 255)
     private String language;
 
-    @Column(name = "available_copies")
+    // Set on insert; afterwards only InventoryReservationService moves it, with conditional UPDATEs.
+    @Column(name = "available_copies", updatable = false)
     private int availableCopies;
 
     @Column(name = "late_fee", precision = 10, scale = 2)
@@ -61,7 +66,8 @@ public class Book {
     @Column(name = "can_borrow", nullable = false, columnDefinition = "BOOLEAN DEFAULT true")
     private boolean canBorrow = true;
 
-    @Column(name = "rating", precision = 3, scale = 2)
+    // Set on insert; afterwards only RatingAggregateService writes it, from the review totals.
+    @Column(name = "rating", precision = 3, scale = 2, updatable = false)
     private BigDecimal rating;
 
     public Map<String, Object> toMap() {
@@ -9,7 +9,10 @@ import java.time.LocalDateTime;
 @Setter
 @Getter
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+        @Index(name = "idx_notifications_user_read_date", columnList = "user_id, `read`, date"),
+        @Index(name = "idx_notifications_read_date", columnList = "`read`, date")
+})
 public class Notification {
 
     @Id
@@ -9,7 +9,12 @@ import java.time.LocalDateTime;
 @Setter
 @Getter
 @Entity
-@Table(name = "reviews")
+@Table(name = "reviews", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_reviews_book_author", columnNames = {"book_id", "author_id"})
+}, indexes = {
+        @Index(name = "idx_reviews_book_date", columnList = "book_id, date"),
+        @Index(name = "idx_reviews_date", columnList = "date")
+})
 public class Review {
 
     @Id
@@ -4,13 +4,17 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
 @Setter
 @Getter
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_status_type_date_to", columnList = "status, type, date_to"),
+        @Index(name = "idx_transactions_user_id", columnList = "user_id")
+})
 public class Transaction {
 
      @Id
@@ -33,6 +37,12 @@ public class Transaction {
      @Column(name = "total_fee", nullable = false)
      private double totalFee;
 
+     @Column(name = "late_fee", nullable = false, precision = 10, scale = 2)
+     private BigDecimal lateFee = BigDecimal.ZERO;
+
+     @Column(name = "fee_accrued_through")
+     private LocalDate feeAccruedThrough;
+
      @Enumerated(EnumType.STRING)
      @Column(name = "status", nullable = false)
      private TransactionStatus status;
@@ -106,6 +116,22 @@ public class Transaction {
          this.totalFee = totalFee;
      }
 
+     public BigDecimal getLateFee() {
+         return lateFee;
+     }
+
+     public void setLateFee(BigDecimal lateFee) {
+         this.lateFee = lateFee;
+     }
+
+     public LocalDate getFeeAccruedThrough() {
+         return feeAccruedThrough;
+     }
+
+     public void setFeeAccruedThrough(LocalDate feeAccruedThrough) {
+         this.feeAccruedThrough = feeAccruedThrough;
+     }
+
      public TransactionStatus getStatus() {
          return status;
      }
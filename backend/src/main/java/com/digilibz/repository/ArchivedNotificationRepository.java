@@ -0,0 +1,19 @@
+package com.digilibz.repository;
+
+import com.digilibz.models.ArchivedNotification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface ArchivedNotificationRepository extends JpaRepository<ArchivedNotification, String> {
+
+    @Modifying
+    @Query("INSERT INTO ArchivedNotification (id, user, title, message, type, date, archivedAt) " +
+            "SELECT n.id, n.user, n.title, n.message, n.type, n.date, :archivedAt " +
+            "FROM Notification n WHERE n.id IN :ids AND n.read = true")
+    int copyFromNotifications(@Param("ids") Collection<String> ids, @Param("archivedAt") LocalDateTime archivedAt);
+}
@@ -0,0 +1,24 @@
+package com.digilibz.repository;
+
+import com.digilibz.models.BookRatingAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface BookRatingAggregateRepository extends JpaRepository<BookRatingAggregate, String> {
+
+    @Modifying
+    @Query("UPDATE BookRatingAggregate a SET a.reviewCount = a.reviewCount + :count, a.ratingSum = a.ratingSum + :sum, " +
+            "a.stars1 = a.stars1 + :s1, a.stars2 = a.stars2 + :s2, a.stars3 = a.stars3 + :s3, " +
+            "a.stars4 = a.stars4 + :s4, a.stars5 = a.stars5 + :s5, a.updatedAt = :now WHERE a.bookId = :bookId")
+    int addDelta(@Param("bookId") String bookId, @Param("count") long count, @Param("sum") double sum,
+                 @Param("s1") long s1, @Param("s2") long s2, @Param("s3") long s3,
+                 @Param("s4") long s4, @Param("s5") long s5, @Param("now") LocalDateTime now);
+
+    @Query("SELECT a.reviewCount, a.ratingSum FROM BookRatingAggregate a WHERE a.bookId = :bookId")
+    List<Object[]> findTotals(@Param("bookId") String bookId);
+}
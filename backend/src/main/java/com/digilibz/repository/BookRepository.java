@@ -2,8 +2,38 @@ package com.digilibz.repository;
 
 import com.digilibz.models.Book;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface BookRepository extends JpaRepository<Book, String> {
+    Optional<Book> findByIsbn(String isbn);
+
+    @Modifying
+    @Query("UPDATE Book b SET b.availableCopies = b.availableCopies - :count " +
+            "WHERE b.id IN :ids AND b.canBorrow = true AND b.availableCopies >= :count")
+    int reserveCopies(@Param("ids") Collection<String> ids, @Param("count") int count);
+
+    @Modifying
+    @Query("UPDATE Book b SET b.availableCopies = b.availableCopies + :count WHERE b.id IN :ids")
+    int releaseCopies(@Param("ids") Collection<String> ids, @Param("count") int count);
+
+    @Modifying
+    @Query("UPDATE Book b SET b.availableCopies = b.availableCopies + :delta " +
+            "WHERE b.id = :id AND b.availableCopies + :delta >= 0")
+    int adjustCopies(@Param("id") String id, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE Book b SET b.rating = :rating WHERE b.id = :id")
+    int updateRating(@Param("id") String id, @Param("rating") BigDecimal rating);
+
+    @Query("SELECT b.title FROM Book b WHERE b.id IN :ids AND (b.canBorrow = false OR b.availableCopies < :count)")
+    List<String> findUnavailableTitles(@Param("ids") Collection<String> ids, @Param("count") int count);
 }
\ No newline at end of file
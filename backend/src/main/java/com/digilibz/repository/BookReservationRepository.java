@@ -0,0 +1,39 @@
+package com.digilibz.repository;
+
+import com.digilibz.models.BookReservation;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface BookReservationRepository extends JpaRepository<BookReservation, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM BookReservation r WHERE r.transaction.id = :transactionId AND r.status IN :statuses")
+    List<BookReservation> lockByTransactionId(@Param("transactionId") String transactionId,
+                                              @Param("statuses") Collection<BookReservation.ReservationStatus> statuses);
+
+    // Lock timeout -2 is SKIP LOCKED, so sweepers on several nodes take disjoint rows.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT r FROM BookReservation r WHERE r.status = :status AND r.expiresAt < :now ORDER BY r.expiresAt")
+    List<BookReservation> lockExpired(@Param("status") BookReservation.ReservationStatus status,
+                                      @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("SELECT r FROM BookReservation r JOIN FETCH r.book WHERE r.transaction.id = :transactionId")
+    List<BookReservation> findByTransactionIdWithBook(@Param("transactionId") String transactionId);
+
+    @Modifying
+    @Query("UPDATE BookReservation r SET r.expiresAt = :expiresAt WHERE r.transaction.id = :transactionId AND r.status = :status")
+    int extend(@Param("transactionId") String transactionId, @Param("status") BookReservation.ReservationStatus status,
+               @Param("expiresAt") LocalDateTime expiresAt);
+}
@@ -0,0 +1,21 @@
+package com.digilibz.repository;
+
+import com.digilibz.models.FeeLedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface FeeLedgerEntryRepository extends JpaRepository<FeeLedgerEntry, String> {
+
+    @Query("SELECT e FROM FeeLedgerEntry e WHERE e.transaction.id = :transactionId ORDER BY e.entryDate")
+    List<FeeLedgerEntry> findByTransactionId(@Param("transactionId") String transactionId);
+
+    @Query("SELECT t.id, t.lateFee, SUM(e.amount) FROM FeeLedgerEntry e JOIN e.transaction t " +
+            "GROUP BY t.id, t.lateFee HAVING t.lateFee <> SUM(e.amount)")
+    List<Object[]> findTransactionsOutOfBalance();
+
+    @Query("SELECT e.user.id, SUM(e.amount) FROM FeeLedgerEntry e GROUP BY e.user.id")
+    List<Object[]> sumByUser();
+}
@@ -1,9 +1,38 @@
 package com.digilibz.repository;
 
+import com.digilibz.dto.notification.NotificationDTO;
 import com.digilibz.models.Notification;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+
 public interface NotificationRepository extends JpaRepository<Notification, String> {
     List<Notification> findByUserId(String userId);
-}
\ No newline at end of file
+
+    @Query("SELECT new com.digilibz.dto.notification.NotificationDTO(n.id, n.user.id, n.title, n.message, n.type, n.date, n.read) " +
+            "FROM Notification n WHERE n.user.id = :userId ORDER BY n.date DESC, n.id DESC")
+    List<NotificationDTO> findDtosByUserId(@Param("userId") String userId);
+
+    long countByUserIdAndReadFalse(String userId);
+
+    @Query("SELECT n.user.id FROM Notification n WHERE n.id = :id")
+    Optional<String> findUserIdById(@Param("id") String id);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.read = true WHERE n.user.id = :userId AND n.read = false")
+    int markAllAsRead(@Param("userId") String userId);
+
+    @Query("SELECT n.id FROM Notification n WHERE n.read = true AND n.date < :cutoff ORDER BY n.date")
+    List<String> findArchivableIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.id IN :ids AND n.read = true")
+    int deleteReadByIds(@Param("ids") Collection<String> ids);
+}
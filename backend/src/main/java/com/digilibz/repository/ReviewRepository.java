@@ -1,17 +1,39 @@
 package com.digilibz.repository;
 
 import com.digilibz.models.Review;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ReviewRepository extends JpaRepository<Review, String> {
-    Page<Review> findByBookId(String bookId, Pageable pageable);
-    Page<Review> findAll(Pageable pageable);
+    Optional<Review> findByBookIdAndAuthorId(String bookId, String authorId);
+
+    // Replacing a review applies (new - old) to the aggregate, so two replacements must not read the same old rating.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Review r WHERE r.book.id = :bookId AND r.author.id = :authorId")
+    Optional<Review> lockByBookIdAndAuthorId(@Param("bookId") String bookId, @Param("authorId") String authorId);
+
+    @Query("SELECT r.book.id, r.rating FROM Review r WHERE r.author.id = :authorId")
+    List<Object[]> findBookRatingsByAuthorId(@Param("authorId") String authorId);
+
+    String AGGREGATE_BY_BOOK = "SELECT r.book.id, COUNT(r), SUM(r.rating), " +
+            "SUM(CASE WHEN r.rating < 1.5 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating >= 1.5 AND r.rating < 2.5 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating >= 2.5 AND r.rating < 3.5 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating >= 3.5 AND r.rating < 4.5 THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN r.rating >= 4.5 THEN 1 ELSE 0 END) FROM Review r ";
+
+    @Query(AGGREGATE_BY_BOOK + "GROUP BY r.book.id")
+    List<Object[]> aggregateByBook();
 
-    @Query("SELECT AVG(r.rating) FROM Review r")
-    Double findAverageRating();
+    @Query(AGGREGATE_BY_BOOK + "WHERE r.book.id IN :bookIds GROUP BY r.book.id")
+    List<Object[]> aggregateByBookIds(@Param("bookIds") Collection<String> bookIds);
 }
\ No newline at end of file
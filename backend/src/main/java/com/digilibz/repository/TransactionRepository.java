@@ -2,6 +2,8 @@ package com.digilibz.repository;
 
 import com.digilibz.models.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -9,5 +11,8 @@ import java.util.Optional;
 public interface TransactionRepository extends JpaRepository<Transaction, String> {
     Optional<Transaction> findByInvoiceCode(String invoiceCode);
 
+    @Query("SELECT t.user.id FROM Transaction t WHERE t.invoiceCode = :invoiceCode")
+    Optional<String> findUserIdByInvoiceCode(@Param("invoiceCode") String invoiceCode);
+
     List<Transaction> findByStatusAndType(String status, String type);
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.digilibz.repository;
+
+import com.digilibz.models.UserFeeBalance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public interface UserFeeBalanceRepository extends JpaRepository<UserFeeBalance, String> {
+
+    @Modifying
+    @Query("UPDATE UserFeeBalance b SET b.outstanding = b.outstanding + :amount, b.updatedAt = :now WHERE b.userId = :userId")
+    int addToOutstanding(@Param("userId") String userId, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+}
@@ -2,52 +2,84 @@ package com.digilibz.service;
 
 import com.digilibz.models.User;
 import com.digilibz.repository.UserRepository;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import com.digilibz.service.auth.TokenService;
+import com.digilibz.service.auth.CredentialVerifier;
+import com.digilibz.service.auth.LoginRateLimiter;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
 @Service
 public class AuthService {
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final CredentialVerifier credentialVerifier;
+    private final LoginRateLimiter loginRateLimiter;
+    private final TokenService tokenService;
 
-    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public AuthService(UserRepository userRepository, CredentialVerifier credentialVerifier,
+                       LoginRateLimiter loginRateLimiter, TokenService tokenService) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.credentialVerifier = credentialVerifier;
+        this.loginRateLimiter = loginRateLimiter;
+        this.tokenService = tokenService;
     }
 
-    public User login(String email, String password) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    public User login(String email, String password, String clientIp) {
+        User user = authenticate(email, password, clientIp);
 
         if (user.getRole() == User.Role.ADMIN) {
             throw new RuntimeException("Unauthorized: Use admin login page");
         }
 
-        if (!passwordEncoder.matches(password, user.getPassword())) {
-            throw new RuntimeException("Invalid password");
-        }
-
         user.setPassword(null);
         return user;
     }
 
-    public User loginAdmin(String email, String password) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("Admin not found"));
+    public User loginAdmin(String email, String password, String clientIp) {
+        User user = authenticate(email, password, clientIp);
 
         if (user.getRole() != User.Role.ADMIN) {
             throw new RuntimeException("Unauthorized: Admin access only");
         }
 
-        if (!passwordEncoder.matches(password, user.getPassword())) {
-            throw new RuntimeException("Invalid password");
-        }
-
         user.setPassword(null);
         return user;
     }
 
-    public String generateToken(User user) {
-        return java.util.UUID.randomUUID().toString();
+    /**
+     * Unknown emails and wrong passwords take the same path and get the same error; the
+     * role is only checked once the password is known to be right.
+     */
+    private User authenticate(String email, String password, String clientIp) {
+        loginRateLimiter.acquire(clientIp, email);
+
+        Optional<User> user = email == null ? Optional.empty() : userRepository.findByEmail(email);
+        if (!credentialVerifier.matches(password, user.map(User::getPassword).orElse(null))) {
+            throw new RuntimeException("Invalid email or password");
+        }
+        return user.get();
+    }
+
+    public Map<String, Object> getLoginStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("verifier", credentialVerifier.stats());
+        stats.put("rateLimiter", loginRateLimiter.stats());
+        return stats;
+    }
+
+    public TokenService.IssuedToken generateToken(User user) {
+        return tokenService.issue(user);
+    }
+
+    /**
+     * Revokes a valid token; returns false when it was already invalid.
+     */
+    public boolean logout(String token) {
+        return tokenService.verify(token).map(claims -> {
+            tokenService.revoke(claims);
+            return true;
+        }).orElse(false);
     }
 }
\ No newline at end of file
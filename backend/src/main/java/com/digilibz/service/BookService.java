@@ -1,31 +1,121 @@
 package com.digilibz.service;
 
+import com.digilibz.common.AfterCommit;
+import com.digilibz.common.CursorCodec;
+import com.digilibz.dto.CursorPage;
+import com.digilibz.dto.book.BookCardDTO;
+import com.digilibz.exception.ApiException;
 import com.digilibz.models.Book;
 import com.digilibz.repository.BookRepository;
+import com.digilibz.service.cache.BookCache;
+import com.digilibz.service.inventory.InventoryReservationService;
+import com.digilibz.service.recommendation.RecommendationEngine;
+import com.digilibz.service.search.BookFacetIndex;
+import com.digilibz.service.search.BookSearchIndex;
+import com.digilibz.service.statistic.StatisticAggregator;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Function;
 
 @Service
 public class BookService {
 
+    private static final int MAX_SEARCH_RESULTS = 200;
+    private static final int DEFAULT_RECOMMENDATIONS = 10;
+    private static final int DEFAULT_PAGE_SIZE = 24;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String CARD_SELECT = "new com.digilibz.dto.book.BookCardDTO(b.id, b.title, b.author, " +
+            "b.category, b.year, b.image, b.rating, b.availableCopies, b.canBorrow)";
+
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private BookFacetIndex bookFacetIndex;
+
+    @Autowired
+    private RecommendationEngine recommendationEngine;
+
+    @Autowired
+    private StatisticAggregator statisticAggregator;
+
+    @Autowired
+    private InventoryReservationService inventoryReservationService;
+
     @PersistenceContext
     private EntityManager entityManager;
 
-    public List<Book> getAllBooks(String search, String category, Integer years) {
-        StringBuilder jpql = new StringBuilder("SELECT b FROM Book b WHERE 1=1");
+    /**
+     * One page of the catalogue, ordered by the chosen sort key with the id as tie-breaker
+     * and continued with a keyset cursor over {@code (sort key, id)}, so every page is an
+     * index range scan no matter how deep the client pages. A null rating sorts as the
+     * lowest value, which is where MySQL puts it without a filesort.
+     * <p>
+     * A search without an explicit sort is ranked by relevance and pages through every hit
+     * with a cursor over {@code (score, id)}. A search with an explicit sort orders the
+     * best {@value #MAX_SEARCH_RESULTS} hits by that key; lower-ranked hits are not listed.
+     */
+    public CursorPage<?> getBooks(String search, String category, Integer years, String language, Boolean canBorrow,
+                                  String sort, String order, String view, String cursor, Integer limit) {
+        BookSort bookSort = BookSort.from(sort);
+        boolean descending = order == null || order.isEmpty() ? bookSort.descendingByDefault : parseOrder(order);
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+        Map<BookFacetIndex.Facet, String> filters = facetFilters(category, years, language, canBorrow);
+        boolean byRelevance = search != null && !search.isEmpty() && (sort == null || sort.isEmpty())
+                && bookSearchIndex.isReady() && (unfiltered(filters) || bookFacetIndex.isReady());
+
+        if (view == null || view.isEmpty() || view.equalsIgnoreCase("full")) {
+            if (byRelevance) {
+                return searchBooks(Book.class, "b", search, filters, cursor, pageSize, Book::getId);
+            }
+            return listBooks(Book.class, "b", search, category, years, language, canBorrow, bookSort, descending, cursor, pageSize,
+                    book -> bookSort.keyOf(book.getTitle(), book.getYear(), book.getRating(), book.getAvailableCopies()),
+                    Book::getId);
+        }
+        if (view.equalsIgnoreCase("card")) {
+            if (byRelevance) {
+                return searchBooks(BookCardDTO.class, CARD_SELECT, search, filters, cursor, pageSize, BookCardDTO::getId);
+            }
+            return listBooks(BookCardDTO.class, CARD_SELECT, search, category, years, language, canBorrow, bookSort, descending, cursor, pageSize,
+                    card -> bookSort.keyOf(card.getTitle(), card.getYear(), card.getRating(), card.getAvailableCopies()),
+                    BookCardDTO::getId);
+        }
+        throw new ApiException("Invalid view. Use 'full' or 'card'", HttpStatus.BAD_REQUEST);
+    }
+
+    private <T> CursorPage<T> listBooks(Class<T> type, String select, String search, String category, Integer years,
+                                        String language, Boolean canBorrow, BookSort sort, boolean descending, String cursor, int pageSize,
+                                        Function<T, String> sortKey, Function<T, String> id) {
+        StringBuilder jpql = new StringBuilder("SELECT " + select + " FROM Book b WHERE 1=1");
         Map<String, Object> parameters = new HashMap<>();
 
         if (search != null && !search.isEmpty()) {
-            jpql.append(" AND LOWER(b.title) LIKE :search");
-            parameters.put("search", "%" + search.toLowerCase() + "%");
+            if (bookSearchIndex.isReady()) {
+                List<String> ids = searchIds(search, facetFilters(category, years, language, canBorrow));
+                if (ids.isEmpty()) {
+                    return new CursorPage<>(List.of(), null);
+                }
+                jpql.append(" AND b.id IN :ids");
+                parameters.put("ids", ids);
+            } else {
+                jpql.append(" AND LOWER(b.title) LIKE :search");
+                parameters.put("search", "%" + search.toLowerCase() + "%");
+            }
         }
 
         if (category != null && !category.isEmpty()) {
@@ -38,23 +128,272 @@ public class BookService {
             parameters.put("year", years);
         }
 
-        TypedQuery<Book> query = entityManager.createQuery(jpql.toString(), Book.class);
+        if (language != null && !language.isEmpty()) {
+            jpql.append(" AND b.language = :language");
+            parameters.put("language", language);
+        }
+
+        if (canBorrow != null) {
+            jpql.append(" AND b.canBorrow = :canBorrow");
+            parameters.put("canBorrow", canBorrow);
+        }
+
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] keys = CursorCodec.decode(cursor, 2);
+            jpql.append(" AND ").append(sort.after(keys[0], descending));
+            Object value = sort.parseKey(keys[0]);
+            if (value != null) {
+                parameters.put("cursorKey", value);
+            }
+            parameters.put("cursorId", keys[1]);
+        }
+
+        String direction = descending ? " DESC" : " ASC";
+        jpql.append(" ORDER BY ").append(sort.column).append(direction).append(", b.id").append(direction);
 
+        TypedQuery<T> query = entityManager.createQuery(jpql.toString(), type);
         parameters.forEach(query::setParameter);
+        query.setMaxResults(pageSize + 1);
+
+        List<T> books = query.getResultList();
+        boolean hasNext = books.size() > pageSize;
+        if (hasNext) {
+            books = books.subList(0, pageSize);
+        }
+        T last = hasNext ? books.get(books.size() - 1) : null;
+        String nextCursor = last != null ? CursorCodec.encode(sortKey.apply(last), id.apply(last)) : null;
+        return new CursorPage<>(books, nextCursor);
+    }
+
+    /**
+     * One page of search hits in relevance order. The index ranks and filters the hits, so
+     * the query only loads the rows of this page; a book deleted since it was indexed is
+     * left out of the page.
+     */
+    private <T> CursorPage<T> searchBooks(Class<T> type, String select, String search,
+                                          Map<BookFacetIndex.Facet, String> filters, String cursor, int pageSize,
+                                          Function<T, String> id) {
+        BookSearchIndex.Hit after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] keys = CursorCodec.decode(cursor, 2);
+            try {
+                after = new BookSearchIndex.Hit(keys[1], Double.parseDouble(keys[0]));
+            } catch (NumberFormatException e) {
+                throw new ApiException("Invalid cursor", HttpStatus.BAD_REQUEST);
+            }
+        }
 
-        return query.getResultList();
+        List<BookSearchIndex.Hit> hits = bookSearchIndex.searchAfter(search, pageSize + 1,
+                unfiltered(filters) ? null : bookId -> bookFacetIndex.matches(bookId, filters), after);
+        boolean hasNext = hits.size() > pageSize;
+        if (hasNext) {
+            hits = hits.subList(0, pageSize);
+        }
+        if (hits.isEmpty()) {
+            return new CursorPage<>(List.of(), null);
+        }
+
+        Map<String, T> rows = new HashMap<>();
+        entityManager.createQuery("SELECT " + select + " FROM Book b WHERE b.id IN :ids", type)
+                .setParameter("ids", hits.stream().map(BookSearchIndex.Hit::id).toList())
+                .getResultList()
+                .forEach(row -> rows.put(id.apply(row), row));
+        List<T> books = new ArrayList<>(hits.size());
+        for (BookSearchIndex.Hit hit : hits) {
+            T row = rows.get(hit.id());
+            if (row != null) {
+                books.add(row);
+            }
+        }
+
+        BookSearchIndex.Hit last = hits.get(hits.size() - 1);
+        String nextCursor = hasNext ? CursorCodec.encode(Double.toString(last.score()), last.id()) : null;
+        return new CursorPage<>(books, nextCursor);
+    }
+
+    /**
+     * Counts per category, year, language and borrowability for the books matching the
+     * same filters as {@link #getBooks}, from the in-memory facet index.
+     */
+    public Map<String, Map<String, Integer>> getFacetCounts(String search, String category, Integer years,
+                                                            String language, Boolean canBorrow) {
+        if (!bookFacetIndex.isReady()) {
+            return Map.of();
+        }
+        List<String> candidates = null;
+        if (search != null && !search.isEmpty() && bookSearchIndex.isReady()) {
+            candidates = bookSearchIndex.search(search, Integer.MAX_VALUE);
+        }
+        return bookFacetIndex.counts(facetFilters(category, years, language, canBorrow), candidates);
+    }
+
+    /**
+     * Search hits that also pass the listing filters. The filters are applied before the
+     * hits are capped; capping first would drop matches of a narrow filter that rank
+     * below the unfiltered top hits.
+     */
+    private List<String> searchIds(String search, Map<BookFacetIndex.Facet, String> filters) {
+        if (unfiltered(filters)) {
+            return bookSearchIndex.search(search, MAX_SEARCH_RESULTS);
+        }
+        if (bookFacetIndex.isReady()) {
+            return bookSearchIndex.search(search, MAX_SEARCH_RESULTS, id -> bookFacetIndex.matches(id, filters));
+        }
+        // The facet index is still building: take every hit and let the query filter them.
+        return bookSearchIndex.search(search, Integer.MAX_VALUE);
+    }
+
+    private static boolean unfiltered(Map<BookFacetIndex.Facet, String> filters) {
+        return filters.values().stream().allMatch(Objects::isNull);
+    }
+
+    private static Map<BookFacetIndex.Facet, String> facetFilters(String category, Integer years, String language,
+                                                                 Boolean canBorrow) {
+        Map<BookFacetIndex.Facet, String> filters = new EnumMap<>(BookFacetIndex.Facet.class);
+        filters.put(BookFacetIndex.Facet.CATEGORY, category == null || category.isEmpty() ? null : category);
+        filters.put(BookFacetIndex.Facet.YEAR, years == null ? null : years.toString());
+        filters.put(BookFacetIndex.Facet.LANGUAGE, language == null || language.isEmpty() ? null : language);
+        filters.put(BookFacetIndex.Facet.CAN_BORROW, canBorrow == null ? null : canBorrow.toString());
+        return filters;
+    }
+
+    private static boolean parseOrder(String order) {
+        if (order.equalsIgnoreCase("asc")) {
+            return false;
+        }
+        if (order.equalsIgnoreCase("desc")) {
+            return true;
+        }
+        throw new ApiException("Invalid order. Use 'asc' or 'desc'", HttpStatus.BAD_REQUEST);
+    }
+
+    private enum BookSort {
+        TITLE("b.title", false, false),
+        YEAR("b.year", true, false),
+        RATING("b.rating", true, true),
+        AVAILABILITY("b.availableCopies", true, false);
+
+        private final String column;
+        private final boolean descendingByDefault;
+        private final boolean nullable;
+
+        BookSort(String column, boolean descendingByDefault, boolean nullable) {
+            this.column = column;
+            this.descendingByDefault = descendingByDefault;
+            this.nullable = nullable;
+        }
+
+        static BookSort from(String sort) {
+            if (sort == null || sort.isEmpty()) {
+                return TITLE;
+            }
+            try {
+                return valueOf(sort.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ApiException("Invalid sort. Use 'title', 'year', 'rating' or 'availability'", HttpStatus.BAD_REQUEST);
+            }
+        }
+
+        String keyOf(String title, int year, BigDecimal rating, int availableCopies) {
+            return switch (this) {
+                case TITLE -> title;
+                case YEAR -> Integer.toString(year);
+                case RATING -> rating == null ? "" : rating.toPlainString();
+                case AVAILABILITY -> Integer.toString(availableCopies);
+            };
+        }
+
+        Object parseKey(String key) {
+            try {
+                return switch (this) {
+                    case TITLE -> key;
+                    case YEAR, AVAILABILITY -> Integer.parseInt(key);
+                    case RATING -> key.isEmpty() ? null : new BigDecimal(key);
+                };
+            } catch (NumberFormatException e) {
+                throw new ApiException("Invalid cursor", HttpStatus.BAD_REQUEST);
+            }
+        }
+
+        /**
+         * Rows strictly after the cursor row in the page order. For the nullable rating,
+         * nulls are the lowest values: last when descending, first when ascending.
+         */
+        String after(String key, boolean descending) {
+            String beyond = descending ? " < " : " > ";
+            if (nullable && key.isEmpty()) {
+                String nullRange = column + " IS NULL AND b.id" + beyond + ":cursorId";
+                return descending ? "(" + nullRange + ")" : "(" + column + " IS NOT NULL OR (" + nullRange + "))";
+            }
+            String range = column + beyond + ":cursorKey OR (" + column + " = :cursorKey AND b.id" + beyond + ":cursorId)";
+            return nullable && descending ? "(" + range + " OR " + column + " IS NULL)" : "(" + range + ")";
+        }
     }
 
     public Optional<Book> getBookById(String id) {
-        return Optional.ofNullable(bookRepository.findById(id).orElse(null));
+        return bookCache.get(id, () -> bookRepository.findById(id));
+    }
+
+    /**
+     * Loads books in the order of the given ids, reading cached entries first and
+     * fetching the rest with a single primary-key query.
+     */
+    public List<Book> getBooksByIds(List<String> ids) {
+        Map<String, Book> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            bookCache.getIfPresent(id).ifPresentOrElse(book -> found.put(id, book), () -> missing.add(id));
+        }
+        if (!missing.isEmpty()) {
+            for (Book book : bookRepository.findAllById(missing)) {
+                bookCache.put(book);
+                found.put(book.getId(), book);
+            }
+        }
+        List<Book> books = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Book book = found.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    public Optional<Map<String, Object>> getBookMapById(String id) {
+        return bookCache.getMap(id, () -> bookRepository.findById(id));
+    }
+
+    public Optional<Book> getBookByIsbn(String isbn) {
+        return bookCache.getByIsbn(isbn, () -> bookRepository.findByIsbn(isbn));
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return bookCache.stats();
     }
 
     public Book addBook(Book book) {
-        return bookRepository.save(book);
+        Book savedBook = bookRepository.save(book);
+        bookCache.invalidate(savedBook.getId());
+        bookCache.invalidateIsbn(savedBook.getIsbn());
+        bookSearchIndex.index(savedBook);
+        bookFacetIndex.index(savedBook);
+        statisticAggregator.bookCreated();
+        return savedBook;
     }
 
+    /**
+     * Copies the editable columns. Available copies are not among them: a change of
+     * quota moves them by the same amount through the reservation service, so copies
+     * that are lent out or held stay accounted for. Neither is the rating, which is
+     * derived from the reviews.
+     */
+    @Transactional
     public Book updateBook(String id, Book updatedBook) {
         return bookRepository.findById(id).map(existingBook -> {
+            int addedCopies = updatedBook.getQuota() - existingBook.getQuota();
+            bookCache.invalidate(id);
+            bookCache.invalidateIsbn(existingBook.getIsbn());
             existingBook.setTitle(updatedBook.getTitle());
             existingBook.setAuthor(updatedBook.getAuthor());
             existingBook.setCategory(updatedBook.getCategory());
@@ -65,31 +404,39 @@ public class BookService {
             existingBook.setRackNumber(updatedBook.getRackNumber());
             existingBook.setIsbn(updatedBook.getIsbn());
             existingBook.setLanguage(updatedBook.getLanguage());
-            existingBook.setAvailableCopies(updatedBook.getAvailableCopies());
             existingBook.setLateFee(updatedBook.getLateFee());
             existingBook.setCanBorrow(updatedBook.isCanBorrow());
-            existingBook.setRating(updatedBook.getRating());
-            return bookRepository.save(existingBook);
+            bookRepository.saveAndFlush(existingBook);
+            inventoryReservationService.adjustStock(id, addedCopies);
+            Book savedBook = bookRepository.findById(id).orElseThrow();
+            // The indexes only see the edit once it is committed; a rollback leaves them as they were.
+            AfterCommit.run(() -> {
+                bookCache.invalidate(id);
+                bookSearchIndex.index(savedBook);
+                bookFacetIndex.index(savedBook);
+            });
+            return savedBook;
         }).orElseThrow(() -> new RuntimeException("Book not found"));
     }
 
     public void deleteById(String id) {
+        StatisticAggregator.CascadedRows cascaded = statisticAggregator.cascadedByBook(id);
         bookRepository.deleteById(id);
+        bookCache.invalidate(id);
+        bookSearchIndex.remove(id);
+        bookFacetIndex.remove(id);
+        statisticAggregator.bookDeleted(cascaded);
     }
 
     public boolean existsById(String id) {
         return bookRepository.existsById(id);
     }
 
-    public List<Book> getRecommendedBooks(Integer max) {
-        String jpql = "SELECT b FROM Book b ORDER BY FUNCTION('RAND')";
-
-        TypedQuery<Book> query = entityManager.createQuery(jpql, Book.class);
-
-        if (max != null && max > 0) {
-            query.setMaxResults(max);
-        }
-
-        return query.getResultList();
+    public List<Book> getRecommendedBooks(Integer max, String userId, boolean random) {
+        int limit = (max != null && max > 0) ? max : DEFAULT_RECOMMENDATIONS;
+        List<String> ids = random
+                ? recommendationEngine.sample(limit)
+                : recommendationEngine.recommend(userId, limit);
+        return getBooksByIds(ids);
     }
 }
\ No newline at end of file
@@ -1,28 +1,116 @@
 package com.digilibz.service;
 
+import com.digilibz.common.CursorCodec;
+import com.digilibz.dto.CursorPage;
+import com.digilibz.dto.notification.NotificationDTO;
+import com.digilibz.exception.ApiException;
 import com.digilibz.models.Notification;
 import com.digilibz.models.User;
 import com.digilibz.repository.NotificationRepository;
 import com.digilibz.repository.UserRepository;
+import com.digilibz.service.notification.NotificationPipeline;
+import com.digilibz.service.notification.NotificationPushService;
+import com.digilibz.service.notification.UnreadCounter;
+import com.digilibz.service.statistic.StatisticAggregator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Transactional;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class NotificationsService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
+    private final StatisticAggregator statisticAggregator;
+    private final NotificationPipeline notificationPipeline;
+    private final NotificationPushService notificationPushService;
+    private final UnreadCounter unreadCounter;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
-    public NotificationsService(NotificationRepository notificationRepository, UserRepository userRepository) {
+    public NotificationsService(NotificationRepository notificationRepository, UserRepository userRepository,
+                                StatisticAggregator statisticAggregator, NotificationPipeline notificationPipeline,
+                                NotificationPushService notificationPushService, UnreadCounter unreadCounter) {
         this.notificationRepository = notificationRepository;
         this.userRepository = userRepository;
+        this.statisticAggregator = statisticAggregator;
+        this.notificationPipeline = notificationPipeline;
+        this.notificationPushService = notificationPushService;
+        this.unreadCounter = unreadCounter;
+    }
+
+    public List<NotificationDTO> getNotificationsByUserId(String userId) {
+        return notificationRepository.findDtosByUserId(userId);
+    }
+
+    public CursorPage<NotificationDTO> getInbox(String userId, Boolean read, String cursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+        StringBuilder jpql = new StringBuilder("SELECT new com.digilibz.dto.notification.NotificationDTO(" +
+                "n.id, n.user.id, n.title, n.message, n.type, n.date, n.read) " +
+                "FROM Notification n WHERE n.user.id = :userId");
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("userId", userId);
+
+        if (read != null) {
+            jpql.append(" AND n.read = :read");
+            parameters.put("read", read);
+        }
+
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] keys = CursorCodec.decode(cursor, 2);
+            jpql.append(" AND (n.date < :cursorDate OR (n.date = :cursorDate AND n.id < :cursorId))");
+            try {
+                parameters.put("cursorDate", LocalDateTime.parse(keys[0]));
+            } catch (DateTimeParseException e) {
+                throw new ApiException("Invalid cursor", HttpStatus.BAD_REQUEST);
+            }
+            parameters.put("cursorId", keys[1]);
+        }
+
+        jpql.append(" ORDER BY n.date DESC, n.id DESC");
+
+        TypedQuery<NotificationDTO> query = entityManager.createQuery(jpql.toString(), NotificationDTO.class);
+        parameters.forEach(query::setParameter);
+        query.setMaxResults(pageSize + 1);
+
+        List<NotificationDTO> notifications = query.getResultList();
+        boolean hasNext = notifications.size() > pageSize;
+        if (hasNext) {
+            notifications = notifications.subList(0, pageSize);
+        }
+        NotificationDTO last = hasNext ? notifications.get(notifications.size() - 1) : null;
+        String nextCursor = last != null ? CursorCodec.encode(last.getDate().toString(), last.getId()) : null;
+        return new CursorPage<>(notifications, nextCursor);
     }
 
-    public List<Notification> getNotificationsByUserId(String userId) {
-        return notificationRepository.findByUserId(userId);
+    public long getUnreadCount(String userId) {
+        return unreadCounter.get(userId);
+    }
+
+    @Transactional
+    public int markAllAsRead(String userId) {
+        int updated = notificationRepository.markAllAsRead(userId);
+        if (updated > 0) {
+            unreadCounter.reset(userId);
+            notificationPushService.allNotificationsRead(userId, updated);
+        }
+        return updated;
     }
 
     public Notification addNotification(User user, String title, String message, Notification.NotificationType type) {
@@ -34,7 +122,24 @@ public class NotificationsService {
         notification.setDate(LocalDateTime.now());
         notification.setRead(false);
 
-        return notificationRepository.save(notification);
+        Notification savedNotification = notificationRepository.save(notification);
+        statisticAggregator.notificationsCreated(1);
+        unreadCounter.adjust(user.getId(), 1);
+        notificationPushService.notificationsCreated(List.of(savedNotification));
+        return savedNotification;
+    }
+
+    public void publishNotification(User user, String title, String message, Notification.NotificationType type) {
+        notificationPipeline.publish(user, title, message, type);
+    }
+
+    public SseEmitter subscribe(String userId) {
+        getUserById(userId);
+        return notificationPushService.subscribe(userId);
+    }
+
+    public NotificationPipeline.Stats getPipelineStats() {
+        return notificationPipeline.stats();
     }
 
     public Notification markAsRead(String notificationId) {
@@ -42,8 +147,14 @@ public class NotificationsService {
 
         if (optionalNotification.isPresent()) {
             Notification notification = optionalNotification.get();
+            boolean wasUnread = !notification.isRead();
             notification.setRead(true);
-            return notificationRepository.save(notification);
+            Notification savedNotification = notificationRepository.save(notification);
+            if (wasUnread) {
+                unreadCounter.adjust(savedNotification.getUser().getId(), -1);
+                notificationPushService.notificationRead(savedNotification);
+            }
+            return savedNotification;
         } else {
             throw new IllegalArgumentException("Notification with ID " + notificationId + " not found");
         }
@@ -55,8 +166,14 @@ public class NotificationsService {
     }
 
     public void deleteNotification(String notifId) {
-        if (notificationRepository.existsById(notifId)) {
-            notificationRepository.deleteById(notifId);
+        Optional<Notification> notification = notificationRepository.findById(notifId);
+        if (notification.isPresent()) {
+            notificationRepository.delete(notification.get());
+            statisticAggregator.notificationDeleted();
+            if (!notification.get().isRead()) {
+                unreadCounter.adjust(notification.get().getUser().getId(), -1);
+            }
+            notificationPushService.notificationDeleted(notification.get());
         } else {
             throw new IllegalArgumentException("Notification with ID " + notifId + " not found");
         }
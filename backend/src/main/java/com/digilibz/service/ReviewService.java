@@ -1,5 +1,8 @@
 package com.digilibz.service;
 
+import com.digilibz.common.CursorCodec;
+import com.digilibz.dto.CursorPage;
+import com.digilibz.exception.ApiException;
 import com.digilibz.service.user.UserService;
 import com.digilibz.dto.review.ReviewDTO;
 import com.digilibz.dto.review.ReviewRequest;
@@ -8,23 +11,32 @@ import com.digilibz.models.Book;
 import com.digilibz.models.Review;
 import com.digilibz.models.User;
 import com.digilibz.repository.ReviewRepository;
+import com.digilibz.service.analytics.AnalyticsEngine;
+import com.digilibz.service.rating.RatingAggregateService;
+import com.digilibz.service.statistic.StatisticAggregator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.data.domain.Page;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class ReviewService {
 
+    private static final int DEFAULT_PAGE_SIZE = 5;
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private BookService bookService;
 
@@ -34,33 +46,94 @@ public class ReviewService {
     @Autowired
     private ReviewRepository reviewRepository;
 
+    @Autowired
+    private StatisticAggregator statisticAggregator;
+
+    @Autowired
+    private AnalyticsEngine analyticsEngine;
+
+    @Autowired
+    private RatingAggregateService ratingAggregateService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     public List<ReviewDTO> getReview(String bookId, Integer max) {
-        if (max == null) {
-            max = 5;
+        return getReviewFeed(bookId, null, max).getItems();
+    }
+
+    /**
+     * Newest reviews first, optionally for one book, continued with a keyset cursor on
+     * {@code (date, id)}. Rows are projected straight into {@link ReviewDTO}, so neither
+     * the book nor the author entity is loaded, and no count query is run.
+     */
+    public CursorPage<ReviewDTO> getReviewFeed(String bookId, String cursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+        StringBuilder jpql = new StringBuilder("SELECT new com.digilibz.dto.review.ReviewDTO(" +
+                "r.id, b.title, a.name, r.date, r.rating, r.content) " +
+                "FROM Review r JOIN r.book b JOIN r.author a WHERE 1=1");
+        Map<String, Object> parameters = new HashMap<>();
+
+        if (bookId != null && !bookId.isEmpty()) {
+            jpql.append(" AND r.book.id = :bookId");
+            parameters.put("bookId", bookId);
         }
 
-        PageRequest pageRequest = PageRequest.of(0, max);
-
-        Page<Review> reviewPage = (bookId != null)
-                ? reviewRepository.findByBookId(bookId, pageRequest)
-                : reviewRepository.findAll(pageRequest);
-
-        return reviewPage.getContent().stream()
-                .map(review -> new ReviewDTO(
-                        review.getId(),
-                        review.getBook().getTitle(),
-                        review.getAuthor().getName(),
-                        review.getDate(),
-                        review.getRating(),
-                        review.getContent()
-                ))
-                .collect(Collectors.toList());
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] keys = CursorCodec.decode(cursor, 2);
+            jpql.append(" AND (r.date < :cursorDate OR (r.date = :cursorDate AND r.id < :cursorId))");
+            try {
+                parameters.put("cursorDate", LocalDateTime.parse(keys[0]));
+            } catch (DateTimeParseException e) {
+                throw new ApiException("Invalid cursor", HttpStatus.BAD_REQUEST);
+            }
+            parameters.put("cursorId", keys[1]);
+        }
+
+        jpql.append(" ORDER BY r.date DESC, r.id DESC");
+
+        TypedQuery<ReviewDTO> query = entityManager.createQuery(jpql.toString(), ReviewDTO.class);
+        parameters.forEach(query::setParameter);
+        query.setMaxResults(pageSize + 1);
+
+        List<ReviewDTO> reviews = query.getResultList();
+        boolean hasNext = reviews.size() > pageSize;
+        if (hasNext) {
+            reviews = reviews.subList(0, pageSize);
+        }
+        ReviewDTO last = hasNext ? reviews.get(reviews.size() - 1) : null;
+        String nextCursor = last != null ? CursorCodec.encode(last.getDate().toString(), last.getId()) : null;
+        return new CursorPage<>(reviews, nextCursor);
     }
 
+    /**
+     * Adds the user's review of a book, or replaces it when they reviewed it before. Two
+     * first submissions racing each other both miss the lookup; the loser hits the unique
+     * (book, author) key and is retried, which then finds the winner's row and updates it.
+     */
     public ResponseEntity<?> submitReview(ReviewRequest reviewRequest) {
+        try {
+            return transactionTemplate.execute(status -> saveReview(reviewRequest));
+        } catch (DataIntegrityViolationException e) {
+            return transactionTemplate.execute(status -> saveReview(reviewRequest));
+        }
+    }
+
+    private ResponseEntity<?> saveReview(ReviewRequest reviewRequest) {
         String bookId = reviewRequest.getBookId();
         String userId = reviewRequest.getReview().getAuthorId();
 
+        int requestedRating = reviewRequest.getReview().getRating();
+        if (requestedRating < RatingAggregateService.MIN_STARS || requestedRating > RatingAggregateService.MAX_STARS) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                    Map.of("message", "Rating must be between 1 and 5")
+            );
+        }
+
         Optional<Book> bookOptional = bookService.getBookById(bookId);
         if (bookOptional.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
@@ -80,20 +153,54 @@ public class ReviewService {
         double rating = reviewContent.getRating();
         String content = reviewContent.getContent();
 
-        Review review = new Review();
-        review.setBook(bookOptional.get());
-        review.setAuthor(userOptional.get());
-        review.setDate(LocalDateTime.now());
-        review.setRating(rating);
-        review.setContent(content);
-
-        reviewRepository.save(review);
+        // One review per user and book: a second submission replaces the first.
+        Optional<Review> existing = reviewRepository.lockByBookIdAndAuthorId(bookId, userId);
+        if (existing.isPresent()) {
+            Review review = existing.get();
+            double previousRating = review.getRating();
+            LocalDateTime previousDate = review.getDate();
+            review.setDate(LocalDateTime.now());
+            review.setRating(rating);
+            review.setContent(content);
+            reviewRepository.save(review);
+            ratingAggregateService.reviewReplaced(bookId, previousRating, rating);
+            analyticsEngine.reviewReplaced(bookId, previousDate, previousRating, rating);
+            statisticAggregator.reviewReplaced(new ReviewDTO(
+                    review.getId(),
+                    bookOptional.get().getTitle(),
+                    userOptional.get().getName(),
+                    review.getDate(),
+                    review.getRating(),
+                    review.getContent()
+            ), previousRating);
+        } else {
+            Review review = new Review();
+            review.setBook(bookOptional.get());
+            review.setAuthor(userOptional.get());
+            review.setDate(LocalDateTime.now());
+            review.setRating(rating);
+            review.setContent(content);
+
+            // Flushed here so a clash with a concurrent first submission reaches submitReview.
+            Review savedReview = reviewRepository.saveAndFlush(review);
+            ratingAggregateService.reviewAdded(bookId, savedReview.getRating());
+            analyticsEngine.reviewCreated(bookId, savedReview.getRating());
+            statisticAggregator.reviewCreated(new ReviewDTO(
+                    savedReview.getId(),
+                    bookOptional.get().getTitle(),
+                    userOptional.get().getName(),
+                    savedReview.getDate(),
+                    savedReview.getRating(),
+                    savedReview.getContent()
+            ));
+        }
 
         Map<String, Object> response = new HashMap<>();
         response.put("bookId", bookId);
         response.put("author", authorId);
         response.put("rating", rating);
         response.put("content", content);
+        response.put("updated", existing.isPresent());
 
         return ResponseEntity.ok().body(response);
     }
@@ -1,67 +1,72 @@
 package com.digilibz.service;
 
-import com.digilibz.repository.*;
 import com.digilibz.dto.review.ReviewDTO;
-import com.digilibz.models.User;
+import com.digilibz.service.statistic.StatisticAggregator;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class StatisticService {
 
-  private final ReviewRepository reviewrepository;
-  private final UserRepository userRepository;
-  private final BookRepository bookRepository;
-  private final ReviewService reviewService;
-  private final TransactionRepository transactionRepository;
-  private final NotificationRepository notificationRepository;
-
-  public StatisticService(
-          ReviewRepository reviewrepository,
-          UserRepository userRepository,
-          BookRepository bookRepository,
-          ReviewService reviewService,
-          TransactionRepository transactionRepository,
-          NotificationRepository notificationRepository
-  ) {
-    this.reviewrepository = reviewrepository;
-    this.userRepository = userRepository;
-    this.bookRepository = bookRepository;
-    this.reviewService = reviewService;
-    this.transactionRepository = transactionRepository;
-    this.notificationRepository = notificationRepository;
+  private static final int DEFAULT_RECENT_REVIEWS = 5;
+
+  private final StatisticAggregator statisticAggregator;
+
+  public StatisticService(StatisticAggregator statisticAggregator) {
+    this.statisticAggregator = statisticAggregator;
+  }
+
+  public Map<String, Object> getSnapshot(Integer max) {
+    StatisticAggregator.Snapshot snapshot = statisticAggregator.snapshot(recentLimit(max));
+
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("totalBook", snapshot.totalBook());
+    data.put("totalUser", snapshot.totalUser());
+    data.put("totalTransaction", snapshot.totalTransaction());
+    data.put("totalNotifications", snapshot.totalNotifications());
+    data.put("averageReview", snapshot.averageReview());
+    data.put("totalReview", snapshot.totalReview());
+    data.put("recentReviews", snapshot.recentReviews());
+    data.put("generatedAt", snapshot.generatedAt());
+    data.put("reconciledAt", snapshot.reconciledAt());
+    return data;
   }
 
   public Long getJumlahUserNow() {
-    return userRepository.countByRole(User.Role.USER); // hanya USER
+    return statisticAggregator.snapshot(0).totalUser(); // hanya USER
   }
 
   public long getStatisticBook() {
-    return bookRepository.count();
+    return statisticAggregator.snapshot(0).totalBook();
   }
 
   public Long getJumlahReview() {
-    return reviewrepository.count();
+    return statisticAggregator.snapshot(0).totalReview();
   }
 
   public Double getAverageReview() {
-    Double averageRating = reviewrepository.findAverageRating();
-    if (averageRating == null) {
-      return 0.0;
-    }
-    return Math.round(averageRating * 100.0) / 100.0;
+    return statisticAggregator.snapshot(0).averageReview();
   }
 
   public List<ReviewDTO> getRecentReview(Integer max) {
-    return reviewService.getReview(null, max);
+    return statisticAggregator.snapshot(recentLimit(max)).recentReviews();
   }
 
   public Long getJumlahTransaksi() {
-    return transactionRepository.count();
+    return statisticAggregator.snapshot(0).totalTransaction();
   }
 
   public Long getJumlahNotifikasi() {
-    return notificationRepository.count();
+    return statisticAggregator.snapshot(0).totalNotifications();
+  }
+
+  private int recentLimit(Integer max) {
+    if (max == null || max < 0) {
+      return DEFAULT_RECENT_REVIEWS;
+    }
+    return Math.min(max, StatisticAggregator.RECENT_REVIEW_CAPACITY);
   }
-}
\ No newline at end of file
+}
@@ -1,27 +1,57 @@
 package com.digilibz.service;
 
+import com.digilibz.common.CursorCodec;
+import com.digilibz.exception.ApiException;
 import com.digilibz.models.*;
+import com.digilibz.dto.CursorPage;
 import com.digilibz.dto.TransactionRequest;
+import com.digilibz.dto.transaction.TransactionItemResponse;
+import com.digilibz.dto.transaction.TransactionResponse;
 import com.digilibz.repository.TransactionRepository;
-import com.digilibz.repository.TransactionItemRepository;
 import com.digilibz.repository.BookRepository;
 import com.digilibz.repository.UserRepository;
+import com.digilibz.service.analytics.AnalyticsEngine;
+import com.digilibz.service.inventory.InventoryReservationService;
+import com.digilibz.service.invoice.InvoiceCodeGenerator;
+import com.digilibz.service.statistic.StatisticAggregator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
 public class TransactionService {
 
-    @Autowired
-    private TransactionRepository transactionRepository;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    private static final String TRANSACTION_PROJECTION =
+            "SELECT new com.digilibz.dto.transaction.TransactionResponse(" +
+                    "t.id, t.invoiceCode, t.dateFrom, t.dateTo, t.status, t.type, " +
+                    "u.id, u.name, u.email, u.phone, u.role, " +
+                    "t.totalFee, t.lateFee, t.paymentMethod, t.paymentEvidence) " +
+                    "FROM Transaction t JOIN t.user u";
 
     @Autowired
-    private TransactionItemRepository transactionItemRepository;
+    private TransactionRepository transactionRepository;
 
     @Autowired
     private BookRepository bookRepository;
@@ -32,11 +62,38 @@ public class TransactionService {
     @Autowired
     private NotificationsService notificationService;
 
+    @Autowired
+    private StatisticAggregator statisticAggregator;
+
+    @Autowired
+    private AnalyticsEngine analyticsEngine;
+
+    @Autowired
+    private InventoryReservationService inventoryReservationService;
+
+    @Autowired
+    private InvoiceCodeGenerator invoiceCodeGenerator;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
      @Transactional
      public String createTransaction(TransactionRequest transactionRequest) {
+         if (transactionRequest.getItems() == null || transactionRequest.getItems().isEmpty()) {
+             throw new IllegalArgumentException("Transaction must contain at least one book");
+         }
+
          User user = userRepository.findById(transactionRequest.getUserId())
                  .orElseThrow(() -> new RuntimeException("User not found"));
 
+         Map<String, Book> books = resolveBorrowableBooks(transactionRequest.getItems());
+
          Transaction transaction = new Transaction();
          transaction.setUser(user);
          transaction.setTotalFee(transactionRequest.getTotalFee());
@@ -47,135 +104,203 @@ public class TransactionService {
          transaction.setStatus(Transaction.TransactionStatus.PENDING);
          transaction.setType(Transaction.TransactionType.BORROW);
 
-         String randomHex = generateRandomHex(3);
-         String currentDate = getCurrentDate();
-         String invoiceCode = "INV-" + currentDate + "-" + randomHex;
+         String invoiceCode = invoiceCodeGenerator.next();
 
          transaction.setInvoiceCode(invoiceCode);
 
+         List<TransactionItem> transactionItems = new ArrayList<>(transactionRequest.getItems().size());
+         for (TransactionRequest.Item itemRequest : transactionRequest.getItems()) {
+             TransactionItem transactionItem = new TransactionItem();
+             transactionItem.setTransaction(transaction);
+             transactionItem.setBook(books.get(itemRequest.getId()));
+             transactionItems.add(transactionItem);
+         }
+         transaction.setItems(transactionItems);
+
+         // Items cascade from the transaction; all inserts are flushed together at commit as JDBC batches.
          Transaction savedTransaction = transactionRepository.save(transaction);
+         inventoryReservationService.reserve(savedTransaction,
+                 transactionItems.stream().map(TransactionItem::getBook).toList());
 
          String title = "Transaction Pending";
          String message = "Your transaction with invoice code " + invoiceCode + " is pending and will be reviewed by an admin until approved.";
-         notificationService.addNotification(user, title, message, Notification.NotificationType.INFO);
+         notificationService.publishNotification(user, title, message, Notification.NotificationType.INFO);
 
-         List<TransactionItem> transactionItems = transactionRequest.getItems().stream()
-                 .map(itemRequest -> {
-                     Book book = bookRepository.findById(itemRequest.getId())
-                             .orElseThrow(() -> new RuntimeException("Book not found"));
+         statisticAggregator.transactionCreated();
+         analyticsEngine.transactionCreated(savedTransaction.getStatus(), savedTransaction.getType(),
+                 transactionItems.stream().map(item -> item.getBook().getCategory()).toList());
 
-                     TransactionItem transactionItem = new TransactionItem();
-                     transactionItem.setTransaction(savedTransaction);
-                     transactionItem.setBook(book);
+         return savedTransaction.getInvoiceCode();
+     }
 
-                     return transactionItem;
-                 }).toList();
+     /**
+      * Loads every requested book with one query and checks that each can be lent.
+      */
+     private Map<String, Book> resolveBorrowableBooks(List<TransactionRequest.Item> items) {
+         Set<String> bookIds = new LinkedHashSet<>();
+         for (TransactionRequest.Item item : items) {
+             bookIds.add(item.getId());
+         }
 
-         transactionItemRepository.saveAll(transactionItems);
+         Map<String, Book> books = new HashMap<>();
+         for (Book book : bookRepository.findAllById(bookIds)) {
+             books.put(book.getId(), book);
+         }
 
-         return savedTransaction.getInvoiceCode();
+         for (String bookId : bookIds) {
+             Book book = books.get(bookId);
+             if (book == null) {
+                 throw new RuntimeException("Book not found");
+             }
+             if (!book.isCanBorrow()) {
+                 throw new IllegalArgumentException("Book '" + book.getTitle() + "' cannot be borrowed");
+             }
+             if (book.getAvailableCopies() <= 0) {
+                 throw new IllegalArgumentException("Book '" + book.getTitle() + "' has no available copies");
+             }
+         }
+         return books;
      }
 
-     private String generateRandomHex(int length) {
-         StringBuilder hexString = new StringBuilder();
-         String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-         for (int i = 0; i < length; i++) {
-             int randomIndex = (int) (Math.random() * characters.length());
-             hexString.append(characters.charAt(randomIndex));
+     @Transactional
+     public TransactionResponse getTransactionByInvoiceCode(String invoiceCode) {
+         List<TransactionResponse> transactions = entityManager.createQuery(
+                         TRANSACTION_PROJECTION + " WHERE t.invoiceCode = :invoiceCode", TransactionResponse.class)
+                 .setParameter("invoiceCode", invoiceCode)
+                 .getResultList();
+         if (transactions.isEmpty()) {
+             throw new RuntimeException("Transaction not found");
          }
-         return hexString.toString();
+         attachItems(transactions);
+         return transactions.get(0);
      }
 
-     private String getCurrentDate() {
-         java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyyMMdd");
-         return sdf.format(new java.util.Date());
+     @Transactional
+     public CursorPage<TransactionResponse> getTransactionsWithFilter(String search, String status, String type, String userId,
+                                                                      String cursor, Integer limit) {
+         int pageSize = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+         TypedQuery<TransactionResponse> query = buildFilterQuery(search, status, type, userId, cursor);
+         query.setMaxResults(pageSize + 1);
+
+         List<TransactionResponse> transactions = query.getResultList();
+         boolean hasNext = transactions.size() > pageSize;
+         if (hasNext) {
+             transactions = new ArrayList<>(transactions.subList(0, pageSize));
+         }
+         attachItems(transactions);
+
+         String nextCursor = hasNext ? CursorCodec.encode(transactions.get(transactions.size() - 1).getInvoiceCode()) : null;
+         return new CursorPage<>(transactions, nextCursor);
      }
 
-     @Transactional
-     public Map<String, Object> getTransactionByInvoiceCode(String invoiceCode) {
-         Transaction transaction = transactionRepository.findByInvoiceCode(invoiceCode)
-                 .orElseThrow(() -> new RuntimeException("Transaction not found"));
-
-         transaction.getUser().getName();
-         transaction.getItems().size();
-
-         return Map.of(
-                 "id", transaction.getId(),
-                 "invoiceCode", transaction.getInvoiceCode(),
-                 "dateRange", Map.of(
-                         "from", transaction.getDateFrom(),
-                         "to", transaction.getDateTo()
-                 ),
-                 "status", transaction.getStatus(),
-                 "type", transaction.getType(),
-                 "user", Map.of(
-                         "id", transaction.getUser().getId(),
-                         "name", transaction.getUser().getName(),
-                         "email", transaction.getUser().getEmail(),
-                         "phone", transaction.getUser().getPhone(),
-                         "role", transaction.getUser().getRole()
-                 ),
-                 "totalFee", transaction.getTotalFee(),
-                 "paymentMethod", transaction.getPaymentMethod(),
-                 "paymentEvidence", transaction.getPaymentEvidence(),
-                 "items", transaction.getItems().stream()
-                         .map(this::mapTransactionItemToResponse)
-                         .collect(Collectors.toList())
-         );
+     /**
+      * Writes every matching transaction as one JSON array straight to {@code out}.
+      * Header rows are read through a forward-only result stream and completed with
+      * items a chunk at a time, so memory does not grow with the number of rows. On
+      * MySQL this needs {@code useCursorFetch=true} on the connection URL; without it the
+      * driver ignores the fetch size and buffers the whole result before the first row.
+      */
+     public void writeTransactions(String search, String status, String type, String userId, OutputStream out) {
+         TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+         readOnly.setReadOnly(true);
+         readOnly.executeWithoutResult(txStatus -> {
+             TypedQuery<TransactionResponse> query = buildFilterQuery(search, status, type, userId, null);
+             query.setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_CHUNK_SIZE);
+             try (JsonGenerator generator = jsonMapper.createGenerator(out);
+                  Stream<TransactionResponse> rows = query.getResultStream()) {
+                 generator.writeStartArray();
+                 List<TransactionResponse> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+                 rows.forEach(row -> {
+                     chunk.add(row);
+                     if (chunk.size() == STREAM_CHUNK_SIZE) {
+                         writeChunk(generator, chunk);
+                     }
+                 });
+                 writeChunk(generator, chunk);
+                 generator.writeEndArray();
+             }
+         });
      }
 
-     private Map<String, Object> mapTransactionItemToResponse(TransactionItem transactionItem) {
-         return Map.of(
-                 "id", transactionItem.getBook().getId(),
-                 "title", transactionItem.getBook().getTitle(),
-                 "author", transactionItem.getBook().getAuthor(),
-                 "image", transactionItem.getBook().getImage(),
-                 "lateFee", transactionItem.getBook().getLateFee()
-         );
+     // Called before a stream starts so bad filters still get a 400 instead of a cut-off body.
+     public void validateFilters(String status, String type) {
+         if (status != null && !status.equalsIgnoreCase("all")) {
+             parseEnum(Transaction.TransactionStatus.class, status, "Status");
+         }
+         if (type != null && !type.equalsIgnoreCase("all")) {
+             parseEnum(Transaction.TransactionType.class, type, "Tipe transaksi");
+         }
      }
 
-     @Transactional
-     public List<Map<String, Object>> getTransactionsWithFilter(String search, String status, String type, String userId) {
-         List<Transaction> transactions = transactionRepository.findAll().stream()
-                 .filter(transaction ->
-                          (status == null || status.equalsIgnoreCase("all") || transaction.getStatus().toString().equalsIgnoreCase(status)) &&
-                                 (type == null || type.equalsIgnoreCase("all") || transaction.getType().toString().equalsIgnoreCase(type)) &&
-                                 (userId == null || transaction.getUser().getId().equals(userId)) &&
-                                 (search == null ||
-                                         transaction.getInvoiceCode().contains(search) ||
-                                         transaction.getUser().getName().toLowerCase().contains(search.toLowerCase()))
-                 )
-                 .toList();
-
-         return transactions.stream()
-                 .map(this::mapTransactionToResponse)
-                 .collect(Collectors.toList());
+     private void writeChunk(JsonGenerator generator, List<TransactionResponse> chunk) {
+         attachItems(chunk);
+         chunk.forEach(generator::writePOJO);
+         generator.flush();
+         chunk.clear();
+     }
+
+     private TypedQuery<TransactionResponse> buildFilterQuery(String search, String status, String type, String userId,
+                                                              String cursor) {
+         StringBuilder jpql = new StringBuilder(TRANSACTION_PROJECTION + " WHERE 1=1");
+         Map<String, Object> parameters = new HashMap<>();
+
+         if (status != null && !status.equalsIgnoreCase("all")) {
+             jpql.append(" AND t.status = :status");
+             parameters.put("status", parseEnum(Transaction.TransactionStatus.class, status, "Status"));
+         }
+
+         if (type != null && !type.equalsIgnoreCase("all")) {
+             jpql.append(" AND t.type = :type");
+             parameters.put("type", parseEnum(Transaction.TransactionType.class, type, "Tipe transaksi"));
+         }
+
+         if (userId != null) {
+             jpql.append(" AND u.id = :userId");
+             parameters.put("userId", userId);
+         }
+
+         if (search != null && !search.isEmpty()) {
+             jpql.append(" AND (t.invoiceCode LIKE :invoiceSearch OR LOWER(u.name) LIKE :nameSearch)");
+             parameters.put("invoiceSearch", "%" + search + "%");
+             parameters.put("nameSearch", "%" + search.toLowerCase() + "%");
+         }
+
+         if (cursor != null && !cursor.isEmpty()) {
+             jpql.append(" AND t.invoiceCode < :cursor");
+             parameters.put("cursor", CursorCodec.decode(cursor, 1)[0]);
+         }
+
+         jpql.append(" ORDER BY t.invoiceCode DESC");
+
+         TypedQuery<TransactionResponse> query = entityManager.createQuery(jpql.toString(), TransactionResponse.class);
+         parameters.forEach(query::setParameter);
+         return query;
+     }
+
+     // One query fills the items of every transaction in the list.
+     private void attachItems(List<TransactionResponse> transactions) {
+         if (transactions.isEmpty()) {
+             return;
+         }
+         Map<String, TransactionResponse> byId = new HashMap<>();
+         transactions.forEach(transaction -> byId.put(transaction.getId(), transaction));
+         entityManager.createQuery(
+                         "SELECT new com.digilibz.dto.transaction.TransactionItemResponse(" +
+                                 "i.transaction.id, b.id, b.title, b.author, b.image, b.lateFee) " +
+                                 "FROM TransactionItem i JOIN i.book b WHERE i.transaction.id IN :ids",
+                         TransactionItemResponse.class)
+                 .setParameter("ids", byId.keySet())
+                 .getResultList()
+                 .forEach(item -> byId.get(item.getTransactionId()).getItems().add(item));
      }
 
-     private Map<String, Object> mapTransactionToResponse(Transaction transaction) {
-         return Map.of(
-                 "id", transaction.getId(),
-                 "invoiceCode", transaction.getInvoiceCode(),
-                 "dateRange", Map.of(
-                         "from", transaction.getDateFrom(),
-                         "to", transaction.getDateTo()
-                 ),
-                 "status", transaction.getStatus(),
-                 "type", transaction.getType(),
-                 "user", Map.of(
-                         "id", transaction.getUser().getId(),
-                         "name", transaction.getUser().getName(),
-                         "email", transaction.getUser().getEmail(),
-                         "phone", transaction.getUser().getPhone(),
-                         "role", transaction.getUser().getRole()
-                 ),
-                 "totalFee", transaction.getTotalFee(),
-                 "paymentMethod", transaction.getPaymentMethod(),
-                 "paymentEvidence", transaction.getPaymentEvidence(),
-                 "items", transaction.getItems().stream()
-                         .map(this::mapTransactionItemToResponse)
-                         .collect(Collectors.toList())
-         );
+     private <E extends Enum<E>> E parseEnum(Class<E> enumType, String value, String label) {
+         try {
+             return Enum.valueOf(enumType, value.toUpperCase());
+         } catch (IllegalArgumentException e) {
+             throw new ApiException(label + " tidak valid: " + value, HttpStatus.BAD_REQUEST);
+         }
      }
 
     @Transactional
@@ -197,6 +322,13 @@ public class TransactionService {
         }
 
         transactionRepository.save(transaction);
+        applyInventoryChange(transaction);
+        analyticsEngine.transactionStatusChanged(transaction.getStatus(),
+                entityManager.createQuery(
+                                "SELECT b.category FROM TransactionItem i JOIN i.book b WHERE i.transaction.id = :id",
+                                String.class)
+                        .setParameter("id", transaction.getId())
+                        .getResultList());
 
         User user = transaction.getUser();
         String currentType = transaction.getType().toString().toLowerCase();
@@ -252,6 +384,40 @@ public class TransactionService {
                     break;
             }
         }
-        notificationService.addNotification(user, title, message, notificationType);
+        notificationService.publishNotification(user, title, message, notificationType);
+    }
+
+    private void applyInventoryChange(Transaction transaction) {
+        boolean approved = transaction.getStatus() == Transaction.TransactionStatus.APPROVED;
+        if (transaction.getType() == Transaction.TransactionType.BORROW) {
+            if (approved) {
+                inventoryReservationService.confirm(transaction.getId());
+            } else if (transaction.getStatus() == Transaction.TransactionStatus.DECLINED) {
+                inventoryReservationService.release(transaction.getId());
+            }
+        } else if (approved) {
+            inventoryReservationService.release(transaction.getId());
+        }
+    }
+
+    @Transactional
+    public List<Map<String, Object>> getReservations(String invoiceCode) {
+        return inventoryReservationService.getReservations(findIdByInvoiceCode(invoiceCode));
+    }
+
+    @Transactional
+    public int extendReservations(String invoiceCode) {
+        Transaction transaction = transactionRepository.findByInvoiceCode(invoiceCode)
+                .orElseThrow(() -> new IllegalArgumentException("Transaksi dengan kode invoice tidak ditemukan"));
+        if (transaction.getStatus() != Transaction.TransactionStatus.PENDING) {
+            throw new IllegalArgumentException("Hanya transaksi PENDING yang reservasinya dapat diperpanjang");
+        }
+        return inventoryReservationService.extend(transaction.getId());
+    }
+
+    public String findIdByInvoiceCode(String invoiceCode) {
+        return transactionRepository.findByInvoiceCode(invoiceCode)
+                .map(Transaction::getId)
+                .orElseThrow(() -> new IllegalArgumentException("Transaksi dengan kode invoice tidak ditemukan"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,265 @@
+package com.digilibz.service.analytics;
+
+import com.digilibz.common.AfterCommit;
+import com.digilibz.models.Transaction;
+import com.digilibz.models.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Pre-aggregated time series for transactions, reviews and new users.
+ * Services report events after commit. Range queries read only the buckets
+ * that cover the range, never the raw rows.
+ *
+ * <p>Dimensions per metric:
+ * <ul>
+ *     <li>transactions: {@code created}, {@code status:<STATUS>}, {@code type:<TYPE>},
+ *     {@code category:<name>} for every borrowed item and {@code overdue.category:<name>}
+ *     when a transaction turns OVERDUE</li>
+ *     <li>reviews: {@code count}, {@code rating:<1-5>} and {@code book:<id>}, with the matching
+ *     rating totals in the sums under {@code rating} and {@code book:<id>}</li>
+ *     <li>users: {@code role:<ROLE>}</li>
+ * </ul>
+ */
+@Component
+public class AnalyticsEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsEngine.class);
+
+    public static final String TRANSACTIONS = "transactions";
+    public static final String REVIEWS = "reviews";
+    public static final String USERS = "users";
+
+    private final Map<String, TimeSeries> series = Map.of(
+            TRANSACTIONS, new TimeSeries(),
+            REVIEWS, new TimeSeries(),
+            USERS, new TimeSeries()
+    );
+
+    private final Duration hourlyRetention;
+    private final Duration dailyRetention;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public AnalyticsEngine(
+            @Value("${digilibz.analytics.hourly-retention:P2D}") Duration hourlyRetention,
+            @Value("${digilibz.analytics.daily-retention:P90D}") Duration dailyRetention
+    ) {
+        this.hourlyRetention = hourlyRetention;
+        this.dailyRetention = dailyRetention;
+    }
+
+    /**
+     * Seeds the buckets once from the dated rows that already exist. Transactions are
+     * placed on their {@code date_from} with their current status; users carry no
+     * creation date, so their series starts empty. Every query is grouped by bucket
+     * and dimension in the database, so the heap holds one row per bucket and value
+     * rather than one per transaction, item or review.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        long start = System.currentTimeMillis();
+        TimeSeries transactions = series.get(TRANSACTIONS);
+        long transactionCount = 0;
+        for (Object[] row : entityManager.createQuery(
+                "SELECT t.dateFrom, t.status, t.type, COUNT(t) FROM Transaction t " +
+                        "GROUP BY t.dateFrom, t.status, t.type", Object[].class).getResultList()) {
+            LocalDateTime at = ((LocalDate) row[0]).atStartOfDay();
+            Granularity tier = tierFor(at);
+            long count = ((Number) row[3]).longValue();
+            transactions.increment(tier, at, "created", count);
+            transactions.increment(tier, at, "status:" + row[1], count);
+            transactions.increment(tier, at, "type:" + row[2], count);
+            transactionCount += count;
+        }
+        long itemCount = 0;
+        for (Object[] row : entityManager.createQuery(
+                "SELECT t.dateFrom, t.status, b.category, COUNT(i) FROM TransactionItem i JOIN i.transaction t JOIN i.book b " +
+                        "GROUP BY t.dateFrom, t.status, b.category", Object[].class).getResultList()) {
+            LocalDateTime at = ((LocalDate) row[0]).atStartOfDay();
+            Granularity tier = tierFor(at);
+            long count = ((Number) row[3]).longValue();
+            transactions.increment(tier, at, "category:" + row[2], count);
+            if (row[1] == Transaction.TransactionStatus.OVERDUE) {
+                transactions.increment(tier, at, "overdue.category:" + row[2], count);
+            }
+            itemCount += count;
+        }
+
+        // Reviews carry a timestamp, so each tier is grouped at its own resolution.
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime hourlyCutoff = now.minus(hourlyRetention);
+        LocalDateTime dailyCutoff = now.minus(dailyRetention);
+        long reviewCount = seedReviews(Granularity.HOUR, "cast(r.date as LocalDate), hour(r.date)",
+                "r.date >= :from", hourlyCutoff, null)
+                + seedReviews(Granularity.DAY, "cast(r.date as LocalDate)",
+                "r.date >= :from AND r.date < :to", dailyCutoff, hourlyCutoff)
+                + seedReviews(Granularity.MONTH, "year(r.date), month(r.date)",
+                "r.date < :to", null, dailyCutoff);
+        log.info("Analytics seeded from {} transactions, {} items and {} reviews in {} ms",
+                transactionCount, itemCount, reviewCount, System.currentTimeMillis() - start);
+    }
+
+    private long seedReviews(Granularity tier, String bucket, String range, LocalDateTime from, LocalDateTime to) {
+        TypedQuery<Object[]> query = entityManager.createQuery(
+                "SELECT " + bucket + ", r.book.id, r.rating, COUNT(r) FROM Review r WHERE " + range +
+                        " GROUP BY " + bucket + ", r.book.id, r.rating", Object[].class);
+        if (from != null) {
+            query.setParameter("from", from);
+        }
+        if (to != null) {
+            query.setParameter("to", to);
+        }
+        int keys = tier == Granularity.DAY ? 1 : 2;
+        long total = 0;
+        for (Object[] row : query.getResultList()) {
+            LocalDateTime at = switch (tier) {
+                case HOUR -> ((LocalDate) row[0]).atTime(((Number) row[1]).intValue(), 0);
+                case DAY -> ((LocalDate) row[0]).atStartOfDay();
+                case MONTH -> LocalDate.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue(), 1).atStartOfDay();
+            };
+            long count = ((Number) row[keys + 2]).longValue();
+            recordReviews(tier, at, (String) row[keys], ((Number) row[keys + 1]).doubleValue(), count);
+            total += count;
+        }
+        return total;
+    }
+
+    public void transactionCreated(Transaction.TransactionStatus status, Transaction.TransactionType type,
+                                   Collection<String> categories) {
+        List<String> snapshot = List.copyOf(categories);
+        AfterCommit.run(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            TimeSeries transactions = series.get(TRANSACTIONS);
+            transactions.increment(Granularity.HOUR, now, "created");
+            transactions.increment(Granularity.HOUR, now, "status:" + status);
+            transactions.increment(Granularity.HOUR, now, "type:" + type);
+            snapshot.forEach(category -> transactions.increment(Granularity.HOUR, now, "category:" + category));
+        });
+    }
+
+    /**
+     * Records a status transition. The type and categories were counted once when the
+     * transaction was created; only the overdue breakdown is kept per transition.
+     */
+    public void transactionStatusChanged(Transaction.TransactionStatus status, Collection<String> categories) {
+        List<String> snapshot = List.copyOf(categories);
+        AfterCommit.run(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            TimeSeries transactions = series.get(TRANSACTIONS);
+            transactions.increment(Granularity.HOUR, now, "status:" + status);
+            if (status == Transaction.TransactionStatus.OVERDUE) {
+                snapshot.forEach(category -> transactions.increment(Granularity.HOUR, now, "overdue.category:" + category));
+            }
+        });
+    }
+
+    public void reviewCreated(String bookId, double rating) {
+        AfterCommit.run(() -> recordReview(LocalDateTime.now(), bookId, rating));
+    }
+
+    /**
+     * Moves a replaced review from its old date and rating to its new ones, so the series
+     * keeps one entry per review as the seed does.
+     */
+    public void reviewReplaced(String bookId, LocalDateTime previousDate, double previousRating, double rating) {
+        reviewsChanged(List.of(
+                new ReviewCount(previousDate, bookId, previousRating, -1),
+                new ReviewCount(LocalDateTime.now(), bookId, rating, 1)
+        ));
+    }
+
+    /**
+     * Records a batch of review changes after commit: a positive count for each review
+     * written at its date and rating, a negative one for each rating it replaced. Changes
+     * that fall in the same hour, book and rating are summed before they are recorded.
+     */
+    public void reviewsChanged(Collection<ReviewCount> changes) {
+        List<ReviewCount> snapshot = List.copyOf(changes);
+        AfterCommit.run(() -> {
+            Map<ReviewBucket, Long> merged = new HashMap<>();
+            for (ReviewCount change : snapshot) {
+                merged.merge(new ReviewBucket(Granularity.HOUR.truncate(change.at()), change.bookId(), change.rating()),
+                        change.count(), Long::sum);
+            }
+            merged.forEach((bucket, count) -> {
+                if (count != 0) {
+                    recordReviews(tierFor(bucket.hour()), bucket.hour(), bucket.bookId(), bucket.rating(), count);
+                }
+            });
+        });
+    }
+
+    public void userCreated(User.Role role) {
+        AfterCommit.run(() -> series.get(USERS).increment(Granularity.HOUR, LocalDateTime.now(), "role:" + role));
+    }
+
+    public NavigableMap<LocalDateTime, Map<String, Object>> query(String metric, Granularity granularity,
+                                                                  LocalDateTime from, LocalDateTime to,
+                                                                  String dimensionPrefix) {
+        TimeSeries timeSeries = series.get(metric);
+        if (timeSeries == null) {
+            throw new IllegalArgumentException("Unknown metric: " + metric);
+        }
+        return timeSeries.query(granularity, from, to, dimensionPrefix);
+    }
+
+    @Scheduled(cron = "${digilibz.analytics.compaction-cron:0 5 * * * *}")
+    public void compact() {
+        LocalDateTime now = LocalDateTime.now();
+        int moved = 0;
+        for (TimeSeries timeSeries : series.values()) {
+            moved += timeSeries.compact(Granularity.HOUR, Granularity.DAY, now.minus(hourlyRetention));
+            moved += timeSeries.compact(Granularity.DAY, Granularity.MONTH, now.minus(dailyRetention));
+        }
+        log.debug("Analytics compaction folded {} buckets", moved);
+    }
+
+    private void recordReview(LocalDateTime at, String bookId, double rating) {
+        recordReviews(tierFor(at), at, bookId, rating, 1);
+    }
+
+    private void recordReviews(Granularity tier, LocalDateTime at, String bookId, double rating, long count) {
+        TimeSeries reviews = series.get(REVIEWS);
+        reviews.increment(tier, at, "count", count);
+        reviews.increment(tier, at, "rating:" + Math.round(rating), count);
+        reviews.add(tier, at, "rating", rating * count);
+        reviews.increment(tier, at, "book:" + bookId, count);
+        reviews.add(tier, at, "book:" + bookId, rating * count);
+    }
+
+    private Granularity tierFor(LocalDateTime at) {
+        LocalDateTime now = LocalDateTime.now();
+        if (at.isBefore(now.minus(dailyRetention))) {
+            return Granularity.MONTH;
+        }
+        if (at.isBefore(now.minus(hourlyRetention))) {
+            return Granularity.DAY;
+        }
+        return Granularity.HOUR;
+    }
+
+    /**
+     * {@code count} reviews of one book with one rating, dated {@code at}; negative when
+     * they were replaced.
+     */
+    public record ReviewCount(LocalDateTime at, String bookId, double rating, long count) {
+    }
+
+    private record ReviewBucket(LocalDateTime hour, String bookId, double rating) {
+    }
+}
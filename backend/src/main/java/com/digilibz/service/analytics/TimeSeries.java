@@ -0,0 +1,132 @@
+package com.digilibz.service.analytics;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Counters and sums per named dimension, kept in hourly, daily and monthly tiers.
+ * New events land in the finest tier their age allows; {@link #compact} folds aged
+ * buckets into the next tier so memory grows with the time span, not the event count.
+ */
+class TimeSeries {
+
+    private final Map<Granularity, ConcurrentSkipListMap<LocalDateTime, Bucket>> tiers = new EnumMap<>(Granularity.class);
+
+    TimeSeries() {
+        for (Granularity granularity : Granularity.values()) {
+            tiers.put(granularity, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    void increment(Granularity tier, LocalDateTime at, String dimension) {
+        update(tier, at, bucket -> bucket.counts.computeIfAbsent(dimension, key -> new LongAdder()).increment());
+    }
+
+    void increment(Granularity tier, LocalDateTime at, String dimension, long count) {
+        update(tier, at, bucket -> bucket.counts.computeIfAbsent(dimension, key -> new LongAdder()).add(count));
+    }
+
+    void add(Granularity tier, LocalDateTime at, String dimension, double value) {
+        update(tier, at, bucket -> bucket.sums.computeIfAbsent(dimension, key -> new DoubleAdder()).add(value));
+    }
+
+    /**
+     * Writes to the current hour go straight to their bucket: {@link #compact} never moves it.
+     * Older buckets can be in the middle of a move, so writes to them take the same monitor
+     * as {@code compact}; they land either before the copy or in a fresh bucket that the
+     * next compaction folds in.
+     */
+    private void update(Granularity tier, LocalDateTime at, Consumer<Bucket> change) {
+        if (tier == Granularity.HOUR && !at.isBefore(Granularity.HOUR.truncate(LocalDateTime.now()))) {
+            change.accept(bucket(tier, at));
+            return;
+        }
+        synchronized (this) {
+            change.accept(bucket(tier, at));
+        }
+    }
+
+    /**
+     * Moves every bucket of {@code from} that starts before {@code cutoff} into the next coarser tier.
+     * Live events write to the current hour, which is never moved. Late writes, such as a
+     * replaced review taken out of the hour it was first counted in, hold the same monitor,
+     * so none of them is dropped while its bucket is copied and removed.
+     */
+    synchronized int compact(Granularity from, Granularity to, LocalDateTime cutoff) {
+        ConcurrentSkipListMap<LocalDateTime, Bucket> source = tiers.get(from);
+        int moved = 0;
+        for (Map.Entry<LocalDateTime, Bucket> entry : source.headMap(to.truncate(cutoff)).entrySet()) {
+            Bucket target = bucket(to, entry.getKey());
+            entry.getValue().counts.forEach((dimension, count) ->
+                    target.counts.computeIfAbsent(dimension, key -> new LongAdder()).add(count.sum()));
+            entry.getValue().sums.forEach((dimension, sum) ->
+                    target.sums.computeIfAbsent(dimension, key -> new DoubleAdder()).add(sum.sum()));
+            source.remove(entry.getKey());
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * Aggregates the buckets overlapping [from, to) into buckets of the requested
+     * granularity. Data already compacted to a coarser tier is reported at the start
+     * of that coarser bucket.
+     */
+    NavigableMap<LocalDateTime, Map<String, Object>> query(Granularity granularity, LocalDateTime from,
+                                                           LocalDateTime to, String dimensionPrefix) {
+        TreeMap<LocalDateTime, Map<String, Long>> counts = new TreeMap<>();
+        TreeMap<LocalDateTime, Map<String, Double>> sums = new TreeMap<>();
+
+        for (Map.Entry<Granularity, ConcurrentSkipListMap<LocalDateTime, Bucket>> tier : tiers.entrySet()) {
+            Granularity target = tier.getKey().compareTo(granularity) > 0 ? tier.getKey() : granularity;
+            for (Map.Entry<LocalDateTime, Bucket> entry
+                    : tier.getValue().subMap(tier.getKey().truncate(from), true, to, false).entrySet()) {
+                LocalDateTime key = target.truncate(entry.getKey());
+                entry.getValue().counts.forEach((dimension, count) -> {
+                    if (dimensionPrefix == null || dimension.startsWith(dimensionPrefix)) {
+                        counts.computeIfAbsent(key, k -> new TreeMap<>()).merge(dimension, count.sum(), Long::sum);
+                    }
+                });
+                entry.getValue().sums.forEach((dimension, sum) -> {
+                    if (dimensionPrefix == null || dimension.startsWith(dimensionPrefix)) {
+                        sums.computeIfAbsent(key, k -> new TreeMap<>()).merge(dimension, sum.sum(), Double::sum);
+                    }
+                });
+            }
+        }
+
+        TreeMap<LocalDateTime, Map<String, Object>> result = new TreeMap<>();
+        counts.forEach((key, values) -> result.computeIfAbsent(key, k -> newPoint()).put("counts", values));
+        sums.forEach((key, values) -> result.computeIfAbsent(key, k -> newPoint()).put("sums", values));
+        return result;
+    }
+
+    int bucketCount(Granularity tier) {
+        return tiers.get(tier).size();
+    }
+
+    private Bucket bucket(Granularity tier, LocalDateTime at) {
+        return tiers.get(tier).computeIfAbsent(tier.truncate(at), key -> new Bucket());
+    }
+
+    private static Map<String, Object> newPoint() {
+        Map<String, Object> point = new LinkedHashMap<>();
+        point.put("counts", Map.of());
+        point.put("sums", Map.of());
+        return point;
+    }
+
+    private static class Bucket {
+        final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, DoubleAdder> sums = new ConcurrentHashMap<>();
+    }
+}
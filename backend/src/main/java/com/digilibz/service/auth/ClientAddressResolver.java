@@ -0,0 +1,36 @@
+package com.digilibz.service.auth;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The address login rate limits are keyed on. Behind a reverse proxy every request
+ * comes from the proxy, so {@code digilibz.auth.client-ip-header} names the header it
+ * forwards the client in, e.g. {@code X-Forwarded-For}. The last entry is used: it is
+ * the one the nearest proxy added, while earlier entries come from the client and can
+ * be forged. Only set it when a proxy always writes that header; without it the
+ * connection's remote address is used.
+ */
+@Component
+public class ClientAddressResolver {
+
+    private final String header;
+
+    public ClientAddressResolver(@Value("${digilibz.auth.client-ip-header:}") String header) {
+        this.header = header == null || header.isBlank() ? null : header.trim();
+    }
+
+    public String resolve(HttpServletRequest request) {
+        if (header != null) {
+            String forwarded = request.getHeader(header);
+            if (forwarded != null) {
+                String last = forwarded.substring(forwarded.lastIndexOf(',') + 1).trim();
+                if (!last.isEmpty()) {
+                    return last;
+                }
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
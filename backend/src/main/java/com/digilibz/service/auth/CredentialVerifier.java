@@ -0,0 +1,154 @@
+package com.digilibz.service.auth;
+
+import com.digilibz.exception.ApiException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs password hash checks on a small, bounded pool instead of the request thread, so
+ * a login burst can only ever occupy {@code verify-threads} cores and the rest of the
+ * API keeps its workers. When the queue is full the caller gets a 503 straight away
+ * rather than waiting behind hundreds of hashes.
+ * <p>
+ * Unknown accounts are checked against a dummy hash made with the same encoder, so a
+ * miss costs as much as a wrong password and response times do not reveal which
+ * emails are registered.
+ */
+@Service
+public class CredentialVerifier {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor pool;
+    private final int threads;
+    private final int queueCapacity;
+    private final long timeoutNanos;
+    private final String dummyHash;
+
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxHashNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAccumulator maxRunning = new LongAccumulator(Math::max, 0);
+
+    public CredentialVerifier(
+            PasswordEncoder passwordEncoder,
+            @Value("${digilibz.auth.verify-threads:0}") int threads,
+            @Value("${digilibz.auth.verify-queue:64}") int queueCapacity,
+            @Value("${digilibz.auth.verify-timeout:PT5S}") Duration timeout
+    ) {
+        this.passwordEncoder = passwordEncoder;
+        this.threads = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.queueCapacity = queueCapacity;
+        this.timeoutNanos = timeout.toNanos();
+        AtomicInteger threadIds = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "credential-verifier-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        this.dummyHash = passwordEncoder.encode(Base64.getEncoder().encodeToString(random));
+    }
+
+    /**
+     * Checks a password against a stored hash on the verification pool. A null hash
+     * stands for an unknown account: the dummy hash is checked instead and the result
+     * is always false.
+     *
+     * @throws ApiException 503 when the pool is saturated or the check times out
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        String raw = rawPassword == null ? "" : rawPassword;
+        boolean known = encodedPassword != null && !encodedPassword.isEmpty();
+        String hash = known ? encodedPassword : dummyHash;
+
+        long submittedAt = System.nanoTime();
+        Future<Boolean> result;
+        try {
+            result = pool.submit(() -> verify(raw, hash, submittedAt));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ApiException("Too many login attempts in progress, try again shortly", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        try {
+            return result.get(timeoutNanos, TimeUnit.NANOSECONDS) && known;
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            timedOut.increment();
+            throw new ApiException("Login timed out, try again shortly", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ApiException("Login interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password verification failed", e.getCause());
+        }
+    }
+
+    private boolean verify(String raw, String hash, long submittedAt) {
+        long startedAt = System.nanoTime();
+        long waited = startedAt - submittedAt;
+        queueWaitNanos.add(waited);
+        maxQueueWaitNanos.accumulate(waited);
+        maxRunning.accumulate(running.incrementAndGet());
+        try {
+            return passwordEncoder.matches(raw, hash);
+        } finally {
+            running.decrementAndGet();
+            long hashed = System.nanoTime() - startedAt;
+            hashNanos.add(hashed);
+            maxHashNanos.accumulate(hashed);
+            verifications.increment();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long count = verifications.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queued", pool.getQueue().size());
+        stats.put("active", running.get());
+        stats.put("maxActive", maxRunning.get());
+        stats.put("verifications", count);
+        stats.put("rejected", rejected.sum());
+        stats.put("timedOut", timedOut.sum());
+        stats.put("avgQueueWaitMs", count == 0 ? 0.0 : queueWaitNanos.sum() / 1_000_000.0 / count);
+        stats.put("maxQueueWaitMs", maxQueueWaitNanos.get() / 1_000_000.0);
+        stats.put("avgHashMs", count == 0 ? 0.0 : hashNanos.sum() / 1_000_000.0 / count);
+        stats.put("maxHashMs", maxHashNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
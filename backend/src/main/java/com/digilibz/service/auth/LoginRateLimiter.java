@@ -0,0 +1,145 @@
+package com.digilibz.service.auth;
+
+import com.digilibz.exception.ApiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets for login attempts, one per client address and one per account. The
+ * address bucket stops a single client from flooding the verification pool; the
+ * account bucket stops password guessing against one email spread over many
+ * addresses. Buckets live in memory on each node and are dropped once they have
+ * refilled, so idle clients cost nothing.
+ */
+@Component
+public class LoginRateLimiter {
+
+    /**
+     * Thrown when a bucket is empty; carries how long until the next attempt is allowed.
+     */
+    public static class RateLimitedException extends ApiException {
+        private final Duration retryAfter;
+
+        RateLimitedException(Duration retryAfter) {
+            super("Too many login attempts, try again later", HttpStatus.TOO_MANY_REQUESTS);
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+
+    private final int ipCapacity;
+    private final double ipTokensPerNano;
+    private final int accountCapacity;
+    private final double accountTokensPerNano;
+
+    private final Map<String, Bucket> ipBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> accountBuckets = new ConcurrentHashMap<>();
+    private final LongAdder ipRejections = new LongAdder();
+    private final LongAdder accountRejections = new LongAdder();
+
+    public LoginRateLimiter(
+            @Value("${digilibz.auth.rate-limit.ip.capacity:30}") int ipCapacity,
+            @Value("${digilibz.auth.rate-limit.ip.per-minute:60}") int ipPerMinute,
+            @Value("${digilibz.auth.rate-limit.account.capacity:5}") int accountCapacity,
+            @Value("${digilibz.auth.rate-limit.account.per-minute:5}") int accountPerMinute
+    ) {
+        this.ipCapacity = ipCapacity;
+        this.ipTokensPerNano = ipPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.accountCapacity = accountCapacity;
+        this.accountTokensPerNano = accountPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+    }
+
+    /**
+     * Takes one token from the client's bucket and one from the account's bucket.
+     *
+     * @throws RateLimitedException when either bucket is empty
+     */
+    public void acquire(String clientIp, String email) {
+        acquire(clientIp, email, System.nanoTime());
+    }
+
+    void acquire(String clientIp, String email, long nowNanos) {
+        String ip = clientIp == null ? "" : clientIp;
+        long ipWait = ipBuckets.computeIfAbsent(ip, key -> new Bucket(ipCapacity, nowNanos))
+                .tryConsume(ipCapacity, ipTokensPerNano, nowNanos);
+        if (ipWait > 0) {
+            ipRejections.increment();
+            throw new RateLimitedException(Duration.ofNanos(ipWait));
+        }
+
+        String account = email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+        long accountWait = accountBuckets.computeIfAbsent(account, key -> new Bucket(accountCapacity, nowNanos))
+                .tryConsume(accountCapacity, accountTokensPerNano, nowNanos);
+        if (accountWait > 0) {
+            accountRejections.increment();
+            throw new RateLimitedException(Duration.ofNanos(accountWait));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${digilibz.auth.rate-limit.purge-interval:PT5M}")
+    public void purgeIdleBuckets() {
+        purgeIdleBuckets(System.nanoTime());
+    }
+
+    void purgeIdleBuckets(long nowNanos) {
+        ipBuckets.values().removeIf(bucket -> bucket.isFull(ipCapacity, ipTokensPerNano, nowNanos));
+        accountBuckets.values().removeIf(bucket -> bucket.isFull(accountCapacity, accountTokensPerNano, nowNanos));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ipBuckets", ipBuckets.size());
+        stats.put("accountBuckets", accountBuckets.size());
+        stats.put("ipRejections", ipRejections.sum());
+        stats.put("accountRejections", accountRejections.sum());
+        return stats;
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long refilledAt;
+
+        Bucket(int capacity, long nowNanos) {
+            this.tokens = capacity;
+            this.refilledAt = nowNanos;
+        }
+
+        /**
+         * Returns 0 when a token was taken, otherwise the nanoseconds until one is available.
+         */
+        synchronized long tryConsume(int capacity, double tokensPerNano, long nowNanos) {
+            refill(capacity, tokensPerNano, nowNanos);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+        }
+
+        synchronized boolean isFull(int capacity, double tokensPerNano, long nowNanos) {
+            refill(capacity, tokensPerNano, nowNanos);
+            return tokens >= capacity;
+        }
+
+        private void refill(int capacity, double tokensPerNano, long nowNanos) {
+            long elapsed = nowNanos - refilledAt;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+                refilledAt = nowNanos;
+            }
+        }
+    }
+}
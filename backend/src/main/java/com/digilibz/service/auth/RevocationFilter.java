@@ -0,0 +1,70 @@
+package com.digilibz.service.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free bloom filter over revoked token ids. A miss proves the token was never
+ * revoked, which is the answer for almost every request; a hit is confirmed against
+ * the exact set kept next to it.
+ */
+class RevocationFilter {
+
+    private final AtomicLongArray words;
+    private final int bits;
+    private final int hashes;
+
+    /**
+     * Sized for {@code expectedEntries} with roughly a 1% false-positive rate.
+     */
+    RevocationFilter(int expectedEntries) {
+        int size = Math.max(1024, (int) Math.ceil(-expectedEntries * Math.log(0.01) / (Math.log(2) * Math.log(2))));
+        this.words = new AtomicLongArray((size + 63) / 64);
+        this.bits = words.length() * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedEntries * Math.log(2)));
+    }
+
+    void add(String tokenId) {
+        long hash = hash(tokenId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bits);
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(word);
+            } while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String tokenId) {
+        long hash = hash(tokenId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 64-bit FNV-1a followed by a murmur finalizer; split into the two halves used for
+    // double hashing.
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
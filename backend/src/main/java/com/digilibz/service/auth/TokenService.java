@@ -0,0 +1,203 @@
+package com.digilibz.service.auth;
+
+import com.digilibz.models.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stateless session tokens: {@code v1.<payload>.<signature>}, where the payload carries
+ * the key id, token id, user id, role, issue and expiry times, and the signature is an
+ * HMAC-SHA256 over it. Signing keys rotate every {@code key-rotation} period and are
+ * derived from {@code digilibz.auth.secret}, so every node derives the same keys and
+ * no key has to be stored or looked up. Verifying a token is one HMAC and a bloom
+ * filter probe for revoked ids; it never touches the database.
+ */
+@Service
+public class TokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String VERSION = "v1";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int TOKEN_ID_BYTES = 12;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public record TokenClaims(String tokenId, String userId, User.Role role, Instant issuedAt, Instant expiresAt) {
+    }
+
+    public record IssuedToken(String token, Instant expiresAt) {
+    }
+
+    private final byte[] secret;
+    private final Duration ttl;
+    private final long rotationSeconds;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<Long, SecretKeySpec> keys = new ConcurrentHashMap<>();
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final int revocationCapacity;
+    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+    private volatile RevocationFilter revocationFilter;
+
+    @Autowired
+    public TokenService(
+            @Value("${digilibz.auth.secret:}") String secret,
+            @Value("${digilibz.auth.token-ttl:PT12H}") Duration ttl,
+            @Value("${digilibz.auth.key-rotation:PT24H}") Duration keyRotation,
+            @Value("${digilibz.auth.revocation-capacity:100000}") int revocationCapacity
+    ) {
+        if (secret == null || secret.isEmpty()) {
+            log.warn("digilibz.auth.secret is not set; using a random secret, so tokens do not survive a restart " +
+                    "and are not accepted by other nodes");
+            this.secret = new byte[32];
+            random.nextBytes(this.secret);
+        } else {
+            this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.ttl = ttl;
+        this.rotationSeconds = Math.max(1, keyRotation.toSeconds());
+        this.revocationCapacity = revocationCapacity;
+        this.revocationFilter = new RevocationFilter(revocationCapacity);
+    }
+
+    public IssuedToken issue(User user) {
+        return issue(user.getId(), user.getRole(), Instant.now());
+    }
+
+    IssuedToken issue(String userId, User.Role role, Instant now) {
+        byte[] id = new byte[TOKEN_ID_BYTES];
+        random.nextBytes(id);
+        long issuedAt = now.getEpochSecond();
+        long expiresAt = issuedAt + ttl.toSeconds();
+        long keyId = issuedAt / rotationSeconds;
+
+        String payload = keyId + "|" + ENCODER.encodeToString(id) + "|" + userId + "|" + role.name()
+                + "|" + issuedAt + "|" + expiresAt;
+        String encodedPayload = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        String signature = ENCODER.encodeToString(sign(keyId, encodedPayload));
+        return new IssuedToken(VERSION + "." + encodedPayload + "." + signature, Instant.ofEpochSecond(expiresAt));
+    }
+
+    /**
+     * Claims of a well-formed, correctly signed, unexpired and unrevoked token.
+     */
+    public Optional<TokenClaims> verify(String token) {
+        return verify(token, Instant.now());
+    }
+
+    Optional<TokenClaims> verify(String token, Instant now) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int first = token.indexOf('.');
+        int second = token.indexOf('.', first + 1);
+        if (first < 0 || second < 0 || !VERSION.equals(token.substring(0, first))) {
+            return Optional.empty();
+        }
+        String encodedPayload = token.substring(first + 1, second);
+        try {
+            String[] fields = new String(DECODER.decode(encodedPayload), StandardCharsets.UTF_8).split("\\|", -1);
+            if (fields.length != 6) {
+                return Optional.empty();
+            }
+            long keyId = Long.parseLong(fields[0]);
+            // Only keys that can still have live tokens are accepted.
+            long currentKey = now.getEpochSecond() / rotationSeconds;
+            long oldestKey = (now.getEpochSecond() - ttl.toSeconds()) / rotationSeconds;
+            if (keyId > currentKey || keyId < oldestKey) {
+                return Optional.empty();
+            }
+            byte[] signature = DECODER.decode(token.substring(second + 1));
+            if (!MessageDigest.isEqual(signature, sign(keyId, encodedPayload))) {
+                return Optional.empty();
+            }
+
+            Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(fields[5]));
+            if (!now.isBefore(expiresAt)) {
+                return Optional.empty();
+            }
+            String tokenId = fields[1];
+            if (revocationFilter.mightContain(tokenId) && revoked.containsKey(tokenId)) {
+                return Optional.empty();
+            }
+            return Optional.of(new TokenClaims(tokenId, fields[2], User.Role.valueOf(fields[3]),
+                    Instant.ofEpochSecond(Long.parseLong(fields[4])), expiresAt));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Rejects the token from now on, on this node, until it would have expired anyway.
+     */
+    public void revoke(TokenClaims claims) {
+        revoked.put(claims.tokenId(), claims.expiresAt());
+        revocationFilter.add(claims.tokenId());
+    }
+
+    /**
+     * Drops revocations of tokens that have expired since and rebuilds the bloom filter
+     * from the rest, so it stays small and sparse.
+     */
+    @Scheduled(fixedDelayString = "${digilibz.auth.revocation-purge-interval:PT10M}")
+    public void purgeRevocations() {
+        Instant now = Instant.now();
+        if (!revoked.values().removeIf(expiresAt -> !now.isBefore(expiresAt))) {
+            return;
+        }
+        RevocationFilter rebuilt = new RevocationFilter(revocationCapacity);
+        revoked.keySet().forEach(rebuilt::add);
+        revocationFilter = rebuilt;
+        // Revocations that raced with the rebuild may have gone to the old filter.
+        revoked.keySet().forEach(rebuilt::add);
+        long currentKey = now.getEpochSecond() / rotationSeconds;
+        long oldestKey = (now.getEpochSecond() - ttl.toSeconds()) / rotationSeconds;
+        keys.keySet().removeIf(keyId -> keyId < oldestKey || keyId > currentKey + 1);
+    }
+
+    private byte[] sign(long keyId, String encodedPayload) {
+        SecretKeySpec key = keys.computeIfAbsent(keyId, this::deriveKey);
+        Mac mac = macs.get();
+        try {
+            mac.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        return mac.doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private SecretKeySpec deriveKey(long keyId) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret, ALGORITHM));
+            byte[] derived = mac.doFinal(("digilibz-token-key:" + keyId).getBytes(StandardCharsets.US_ASCII));
+            return new SecretKeySpec(derived, ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.digilibz.service.cache;
+
+import com.digilibz.models.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of catalog entries with a time-to-live. Each entry keeps an
+ * immutable {@link BookSnapshot} and its {@link Book#toMap()} projection so detail
+ * responses do not rebuild the map on every hit. Book reads return a new detached copy
+ * of the snapshot, never a shared entity. Loaders run outside the lock; misses are not
+ * cached.
+ */
+@Component
+public class BookCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, String> idByIsbn = new HashMap<>();
+    private final LinkedHashMap<String, Entry> entries;
+    // Bumped by every invalidation so a load that raced with a write is not stored.
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BookCache(
+            @Value("${digilibz.cache.books.max-size:5000}") int maxSize,
+            @Value("${digilibz.cache.books.ttl:PT10M}") Duration ttl
+    ) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > BookCache.this.maxSize) {
+                    idByIsbn.remove(eldest.getValue().book.isbn());
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Optional<Book> get(String id, Supplier<Optional<Book>> loader) {
+        return lookup(id, loader).map(entry -> entry.book.toBook());
+    }
+
+    public Optional<Map<String, Object>> getMap(String id, Supplier<Optional<Book>> loader) {
+        return lookup(id, loader).map(entry -> entry.projection);
+    }
+
+    public Optional<Book> getByIsbn(String isbn, Supplier<Optional<Book>> loader) {
+        String id;
+        lock.lock();
+        try {
+            id = idByIsbn.get(isbn);
+        } finally {
+            lock.unlock();
+        }
+        if (id != null) {
+            Entry entry = getLive(id);
+            if (entry != null) {
+                hits.increment();
+                return Optional.of(entry.book.toBook());
+            }
+        }
+        misses.increment();
+        return load(loader).map(entry -> entry.book.toBook());
+    }
+
+    public Optional<Book> getIfPresent(String id) {
+        Entry entry = getLive(id);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry.book.toBook());
+    }
+
+    public void put(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        store(newEntry(book), -1);
+    }
+
+    public void invalidate(String id) {
+        if (id == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            generation++;
+            Entry removed = entries.remove(id);
+            if (removed != null && removed.book.isbn() != null) {
+                idByIsbn.remove(removed.book.isbn());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateIsbn(String isbn) {
+        if (isbn == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            generation++;
+            String id = idByIsbn.remove(isbn);
+            if (id != null) {
+                entries.remove(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+            idByIsbn.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.sum());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        return stats;
+    }
+
+    private Optional<Entry> lookup(String id, Supplier<Optional<Book>> loader) {
+        Entry entry = getLive(id);
+        if (entry != null) {
+            hits.increment();
+            return Optional.of(entry);
+        }
+        misses.increment();
+        return load(loader);
+    }
+
+    private Optional<Entry> load(Supplier<Optional<Book>> loader) {
+        long expectedGeneration;
+        lock.lock();
+        try {
+            expectedGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+        Optional<Book> loaded = loader.get();
+        if (loaded.isEmpty() || loaded.get().getId() == null) {
+            return Optional.empty();
+        }
+        Entry entry = newEntry(loaded.get());
+        store(entry, expectedGeneration);
+        return Optional.of(entry);
+    }
+
+    private Entry getLive(String id) {
+        if (id == null) {
+            return null;
+        }
+        lock.lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - System.nanoTime() < 0) {
+                entries.remove(id);
+                if (entry.book.isbn() != null) {
+                    idByIsbn.remove(entry.book.isbn());
+                }
+                evictions.increment();
+                return null;
+            }
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry newEntry(Book book) {
+        return new Entry(BookSnapshot.of(book), Collections.unmodifiableMap(book.toMap()), System.nanoTime() + ttlNanos);
+    }
+
+    private void store(Entry entry, long expectedGeneration) {
+        BookSnapshot book = entry.book;
+        lock.lock();
+        try {
+            if (expectedGeneration >= 0 && expectedGeneration != generation) {
+                return;
+            }
+            Entry previous = entries.put(book.id(), entry);
+            if (previous != null && previous.book.isbn() != null) {
+                idByIsbn.remove(previous.book.isbn());
+            }
+            if (book.isbn() != null) {
+                idByIsbn.put(book.isbn(), book.id());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Entry(BookSnapshot book, Map<String, Object> projection, long expiresAt) {
+    }
+}
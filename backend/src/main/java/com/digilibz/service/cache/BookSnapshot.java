@@ -0,0 +1,42 @@
+package com.digilibz.service.cache;
+
+import com.digilibz.models.Book;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable copy of a book's columns as they were when it was cached. The cache never
+ * holds the entity itself: each read gets a fresh, detached {@link Book}, so a caller
+ * changing its copy cannot affect other threads or leak into another persistence
+ * context.
+ */
+record BookSnapshot(String id, String title, String author, String category, int year, String description,
+                    String image, int quota, String rackNumber, String isbn, String language, int availableCopies,
+                    BigDecimal lateFee, boolean canBorrow, BigDecimal rating) {
+
+    static BookSnapshot of(Book book) {
+        return new BookSnapshot(book.getId(), book.getTitle(), book.getAuthor(), book.getCategory(), book.getYear(),
+                book.getDescription(), book.getImage(), book.getQuota(), book.getRackNumber(), book.getIsbn(),
+                book.getLanguage(), book.getAvailableCopies(), book.getLateFee(), book.isCanBorrow(), book.getRating());
+    }
+
+    Book toBook() {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setCategory(category);
+        book.setYear(year);
+        book.setDescription(description);
+        book.setImage(image);
+        book.setQuota(quota);
+        book.setRackNumber(rackNumber);
+        book.setIsbn(isbn);
+        book.setLanguage(language);
+        book.setAvailableCopies(availableCopies);
+        book.setLateFee(lateFee);
+        book.setCanBorrow(canBorrow);
+        book.setRating(rating);
+        return book;
+    }
+}
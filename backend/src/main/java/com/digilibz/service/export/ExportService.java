@@ -0,0 +1,174 @@
+package com.digilibz.service.export;
+
+import com.digilibz.exception.ApiException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Streams whole tables to admins as CSV or NDJSON. Rows are read as scalar
+ * projections through a forward-only result stream with a JDBC fetch size, so nothing
+ * is attached to the persistence context and memory stays flat however many rows
+ * there are. On MySQL the driver only honours the fetch size with
+ * {@code useCursorFetch=true} on the connection URL.
+ */
+@Service
+public class ExportService {
+
+    private static final Map<String, Dataset> DATASETS = Map.of(
+            "transactions", new Dataset(
+                    "SELECT t.id, t.invoiceCode, t.dateFrom, t.dateTo, t.status, t.type, u.id, u.name, u.email, " +
+                            "t.totalFee, t.lateFee, t.paymentMethod, b.id, b.title " +
+                            "FROM Transaction t JOIN t.user u LEFT JOIN t.items i LEFT JOIN i.book b ORDER BY t.id",
+                    List.of("id", "invoiceCode", "dateFrom", "dateTo", "status", "type", "userId", "userName", "userEmail",
+                            "totalFee", "lateFee", "paymentMethod", "bookId", "bookTitle")),
+            "books", new Dataset(
+                    "SELECT b.id, b.title, b.author, b.category, b.year, b.isbn, b.language, b.rackNumber, b.quota, " +
+                            "b.availableCopies, b.canBorrow, b.lateFee, b.rating FROM Book b ORDER BY b.id",
+                    List.of("id", "title", "author", "category", "year", "isbn", "language", "rackNumber", "quota",
+                            "availableCopies", "canBorrow", "lateFee", "rating")),
+            "users", new Dataset(
+                    "SELECT u.id, u.name, u.email, u.phone, u.role FROM User u ORDER BY u.id",
+                    List.of("id", "name", "email", "phone", "role"))
+    );
+
+    private final PlatformTransactionManager transactionManager;
+    private final JsonMapper jsonMapper;
+    private final int fetchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ExportService(
+            PlatformTransactionManager transactionManager,
+            JsonMapper jsonMapper,
+            @Value("${digilibz.export.fetch-size:1000}") int fetchSize
+    ) {
+        this.transactionManager = transactionManager;
+        this.jsonMapper = jsonMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    public void checkDataset(String name) {
+        dataset(name);
+    }
+
+    public ExportFormat parseFormat(String format) {
+        try {
+            return ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException("Format tidak valid. Gunakan 'csv' atau 'ndjson'", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    public void export(String name, ExportFormat format, OutputStream out) {
+        Dataset dataset = dataset(name);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = entityManager.createQuery(dataset.jpql(), Object[].class)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .getResultStream()) {
+                if (format == ExportFormat.CSV) {
+                    writeCsv(dataset.columns(), rows.iterator(), out);
+                } else {
+                    writeNdjson(dataset.columns(), rows.iterator(), out);
+                }
+            }
+        });
+    }
+
+    private void writeCsv(List<String> columns, Iterator<Object[]> rows, OutputStream out) {
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            writeCsvLine(writer, columns.toArray());
+            while (rows.hasNext()) {
+                writeCsvLine(writer, rows.next());
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCsvLine(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvField(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+        // Keep spreadsheet apps from evaluating user-supplied text as a formula.
+        if (!text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0 && !(value instanceof Number)) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    private void writeNdjson(List<String> columns, Iterator<Object[]> rows, OutputStream out) {
+        try (JsonGenerator generator = jsonMapper.writer()
+                .without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .createGenerator(out)) {
+            boolean any = false;
+            while (rows.hasNext()) {
+                Object[] row = rows.next();
+                any = true;
+                generator.writeStartObject();
+                for (int i = 0; i < columns.size(); i++) {
+                    generator.writeName(columns.get(i));
+                    generator.writePOJO(row[i]);
+                }
+                generator.writeEndObject();
+            }
+            if (any) {
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    private static Dataset dataset(String name) {
+        Dataset dataset = DATASETS.get(name);
+        if (dataset == null) {
+            throw new ApiException("Data export tidak dikenal: " + name, HttpStatus.NOT_FOUND);
+        }
+        return dataset;
+    }
+
+    private record Dataset(String jpql, List<String> columns) {
+    }
+}
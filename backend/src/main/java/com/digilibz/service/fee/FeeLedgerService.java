@@ -0,0 +1,274 @@
+package com.digilibz.service.fee;
+
+import com.digilibz.models.FeeLedgerEntry;
+import com.digilibz.models.Transaction;
+import com.digilibz.models.UserFeeBalance;
+import com.digilibz.repository.FeeLedgerEntryRepository;
+import com.digilibz.repository.TransactionRepository;
+import com.digilibz.repository.UserFeeBalanceRepository;
+import com.digilibz.service.scheduling.SchedulerLeaseService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Late-fee ledger. Overdue borrows accrue {@code sum(Book.lateFee)} per day late; each
+ * accrual is appended to {@code fee_ledger_entries} (at most one entry per transaction
+ * per day) and added to the transaction's {@code late_fee} and the user's row in
+ * {@code user_fee_balances}, so balances are read by primary key instead of being
+ * recomputed. A daily job accrues the days since the last run and then reconciles the
+ * running totals against the ledger.
+ */
+@Service
+public class FeeLedgerService {
+
+    private static final Logger log = LoggerFactory.getLogger(FeeLedgerService.class);
+
+    static final String LEASE_NAME = "fee-accrual";
+
+    private final FeeLedgerEntryRepository ledgerRepository;
+    private final UserFeeBalanceRepository balanceRepository;
+    private final TransactionRepository transactionRepository;
+    private final SchedulerLeaseService leaseService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration leaseDuration;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Map<String, Object> lastRun;
+
+    public FeeLedgerService(
+            FeeLedgerEntryRepository ledgerRepository,
+            UserFeeBalanceRepository balanceRepository,
+            TransactionRepository transactionRepository,
+            SchedulerLeaseService leaseService,
+            TransactionTemplate transactionTemplate,
+            @Value("${digilibz.fees.chunk-size:200}") int chunkSize,
+            @Value("${digilibz.fees.lease-duration:PT30M}") Duration leaseDuration
+    ) {
+        this.ledgerRepository = ledgerRepository;
+        this.balanceRepository = balanceRepository;
+        this.transactionRepository = transactionRepository;
+        this.leaseService = leaseService;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.leaseDuration = leaseDuration;
+    }
+
+    /**
+     * Accrues late fees for the given overdue transactions up to {@code today}. Must be
+     * called inside a transaction that holds the rows; returns the amount accrued.
+     */
+    public BigDecimal accrue(List<Transaction> transactions, LocalDate today) {
+        if (transactions.isEmpty()) {
+            return BigDecimal.ZERO;
+        }
+        Map<String, BigDecimal> feePerDay = new HashMap<>();
+        entityManager.createQuery(
+                        "SELECT i.transaction.id, SUM(b.lateFee) FROM TransactionItem i JOIN i.book b " +
+                                "WHERE i.transaction.id IN :ids GROUP BY i.transaction.id", Object[].class)
+                .setParameter("ids", transactions.stream().map(Transaction::getId).toList())
+                .getResultList()
+                .forEach(row -> {
+                    if (row[1] != null) {
+                        feePerDay.put((String) row[0], (BigDecimal) row[1]);
+                    }
+                });
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, BigDecimal> perUser = new HashMap<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (Transaction transaction : transactions) {
+            LocalDate from = transaction.getFeeAccruedThrough() != null
+                    ? transaction.getFeeAccruedThrough() : transaction.getDateTo();
+            long days = ChronoUnit.DAYS.between(from, today);
+            if (days <= 0) {
+                continue;
+            }
+            transaction.setFeeAccruedThrough(today);
+            BigDecimal amount = feePerDay.getOrDefault(transaction.getId(), BigDecimal.ZERO)
+                    .multiply(BigDecimal.valueOf(days))
+                    .setScale(2, RoundingMode.HALF_UP);
+            if (amount.signum() == 0) {
+                continue;
+            }
+
+            FeeLedgerEntry entry = new FeeLedgerEntry();
+            entry.setTransaction(transaction);
+            entry.setUser(transaction.getUser());
+            entry.setEntryDate(today);
+            entry.setDays((int) days);
+            entry.setAmount(amount);
+            entry.setCreatedAt(now);
+            entityManager.persist(entry);
+
+            applyToTransaction(transaction, amount);
+            perUser.merge(transaction.getUser().getId(), amount, BigDecimal::add);
+            total = total.add(amount);
+        }
+        perUser.forEach((userId, amount) -> addToBalance(userId, amount, now));
+        return total;
+    }
+
+    @Scheduled(cron = "${digilibz.fees.cron:0 10 0 * * *}")
+    public void accrueDailyScheduled() {
+        accrueDaily();
+    }
+
+    /**
+     * Accrues every overdue borrow up to today, then reconciles. Returns empty when
+     * another node holds the lease.
+     */
+    public Optional<Map<String, Object>> accrueDaily() {
+        if (!leaseService.tryAcquire(LEASE_NAME, leaseDuration)) {
+            return Optional.empty();
+        }
+        try {
+            LocalDate today = LocalDate.now();
+            long start = System.nanoTime();
+            int transactions = 0;
+            BigDecimal accrued = BigDecimal.ZERO;
+            while (true) {
+                Object[] chunk = transactionTemplate.execute(status -> accrueChunk(today));
+                int processed = chunk == null ? 0 : (int) chunk[0];
+                if (processed == 0) {
+                    break;
+                }
+                transactions += processed;
+                accrued = accrued.add((BigDecimal) chunk[1]);
+                if (processed < chunkSize) {
+                    break;
+                }
+                leaseService.tryAcquire(LEASE_NAME, leaseDuration);
+            }
+            int corrected = reconcile();
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("date", today);
+            report.put("transactions", transactions);
+            report.put("accrued", accrued);
+            report.put("corrections", corrected);
+            report.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+            lastRun = report;
+            log.info("Accrued {} in late fees over {} overdue transactions, {} ledger corrections",
+                    accrued, transactions, corrected);
+            return Optional.of(report);
+        } finally {
+            leaseService.release(LEASE_NAME);
+        }
+    }
+
+    private Object[] accrueChunk(LocalDate today) {
+        List<Transaction> due = entityManager.createQuery(
+                        "SELECT t FROM Transaction t WHERE t.status = :status AND t.type = :type " +
+                                "AND (t.feeAccruedThrough IS NULL OR t.feeAccruedThrough < :today) ORDER BY t.id",
+                        Transaction.class)
+                .setParameter("status", Transaction.TransactionStatus.OVERDUE)
+                .setParameter("type", Transaction.TransactionType.BORROW)
+                .setParameter("today", today)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setMaxResults(chunkSize)
+                .getResultList();
+        // Transactions due today accrue nothing but are still stamped, so the loop ends.
+        due.forEach(transaction -> {
+            if (transaction.getFeeAccruedThrough() == null && !transaction.getDateTo().isBefore(today)) {
+                transaction.setFeeAccruedThrough(today);
+            }
+        });
+        return new Object[]{due.size(), accrue(due, today)};
+    }
+
+    /**
+     * Brings transaction late fees, total fees and user balances back in line with the
+     * ledger, which is the source of truth. Returns the number of rows corrected.
+     */
+    public int reconcile() {
+        Integer corrected = transactionTemplate.execute(status -> {
+            int fixes = 0;
+            for (Object[] row : ledgerRepository.findTransactionsOutOfBalance()) {
+                Transaction transaction = transactionRepository.findById((String) row[0]).orElse(null);
+                if (transaction == null) {
+                    continue;
+                }
+                BigDecimal ledgerTotal = (BigDecimal) row[2];
+                applyToTransaction(transaction, ledgerTotal.subtract(transaction.getLateFee()));
+                fixes++;
+            }
+
+            Map<String, BigDecimal> balances = new HashMap<>();
+            balanceRepository.findAll().forEach(balance -> balances.put(balance.getUserId(), balance.getOutstanding()));
+            LocalDateTime now = LocalDateTime.now();
+            for (Object[] row : ledgerRepository.sumByUser()) {
+                String userId = (String) row[0];
+                BigDecimal ledgerTotal = ((BigDecimal) row[1]).setScale(2, RoundingMode.HALF_UP);
+                BigDecimal current = balances.getOrDefault(userId, BigDecimal.ZERO);
+                if (current.compareTo(ledgerTotal) != 0) {
+                    addToBalance(userId, ledgerTotal.subtract(current), now);
+                    fixes++;
+                }
+            }
+            return fixes;
+        });
+        return corrected == null ? 0 : corrected;
+    }
+
+    public Map<String, Object> getBalance(String userId) {
+        UserFeeBalance balance = balanceRepository.findById(userId).orElse(null);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("userId", userId);
+        result.put("outstanding", balance != null ? balance.getOutstanding() : BigDecimal.ZERO.setScale(2));
+        result.put("updatedAt", balance != null ? balance.getUpdatedAt() : null);
+        return result;
+    }
+
+    public List<Map<String, Object>> getLedger(String transactionId) {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (FeeLedgerEntry entry : ledgerRepository.findByTransactionId(transactionId)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("date", entry.getEntryDate());
+            item.put("days", entry.getDays());
+            item.put("amount", entry.getAmount());
+            entries.add(item);
+        }
+        return entries;
+    }
+
+    public Map<String, Object> getLastRun() {
+        return lastRun;
+    }
+
+    // totalFee is still a double column; do the arithmetic in decimal and round to cents.
+    private static void applyToTransaction(Transaction transaction, BigDecimal amount) {
+        transaction.setLateFee(transaction.getLateFee().add(amount));
+        transaction.setTotalFee(BigDecimal.valueOf(transaction.getTotalFee())
+                .add(amount)
+                .setScale(2, RoundingMode.HALF_UP)
+                .doubleValue());
+    }
+
+    private void addToBalance(String userId, BigDecimal amount, LocalDateTime now) {
+        if (balanceRepository.addToOutstanding(userId, amount, now) == 0) {
+            UserFeeBalance balance = new UserFeeBalance();
+            balance.setUserId(userId);
+            balance.setOutstanding(amount);
+            balance.setUpdatedAt(now);
+            entityManager.persist(balance);
+        }
+    }
+}
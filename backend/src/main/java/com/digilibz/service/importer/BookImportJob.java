@@ -0,0 +1,149 @@
+package com.digilibz.service.importer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one bulk import. Counters are updated by the import thread and read by
+ * the status endpoint.
+ */
+public class BookImportJob {
+
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    public enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final Path source;
+    private final ImportFormat format;
+    private volatile State state = State.RUNNING;
+    private volatile LocalDateTime startedAt = LocalDateTime.now();
+    private volatile LocalDateTime finishedAt;
+    private volatile String failure;
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private volatile long checkpoint;
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+    BookImportJob(String id, Path source, ImportFormat format, long checkpoint) {
+        this.id = id;
+        this.source = source;
+        this.format = format;
+        this.checkpoint = checkpoint;
+    }
+
+    void restart() {
+        state = State.RUNNING;
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        failure = null;
+        read.set(0);
+        inserted.set(0);
+        duplicates.set(0);
+        invalid.set(0);
+        errors.clear();
+    }
+
+    void recordError(long record, String message) {
+        invalid.incrementAndGet();
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add("Record " + record + ": " + message);
+        }
+    }
+
+    void complete() {
+        state = State.COMPLETED;
+        finishedAt = LocalDateTime.now();
+    }
+
+    void fail(String message) {
+        state = State.FAILED;
+        failure = message;
+        finishedAt = LocalDateTime.now();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    Path getSource() {
+        return source;
+    }
+
+    public ImportFormat getFormat() {
+        return format;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public long getRead() {
+        return read.get();
+    }
+
+    AtomicLong readCounter() {
+        return read;
+    }
+
+    public long getInserted() {
+        return inserted.get();
+    }
+
+    AtomicLong insertedCounter() {
+        return inserted;
+    }
+
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    AtomicLong duplicatesCounter() {
+        return duplicates;
+    }
+
+    public long getInvalid() {
+        return invalid.get();
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    void setCheckpoint(long checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return List.copyOf(errors);
+        }
+    }
+
+    public double getRowsPerSecond() {
+        LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+        long millis = Duration.between(startedAt, end).toMillis();
+        return millis == 0 ? 0 : read.get() * 1000.0 / millis;
+    }
+}
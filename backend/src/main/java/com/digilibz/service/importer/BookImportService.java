@@ -0,0 +1,434 @@
+package com.digilibz.service.importer;
+
+import com.digilibz.exception.ApiException;
+import com.digilibz.models.Book;
+import com.digilibz.service.search.BookFacetIndex;
+import com.digilibz.service.search.BookSearchIndex;
+import com.digilibz.service.statistic.StatisticAggregator;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk book import. The source file is read sequentially and cut into chunks, chunks
+ * are parsed and validated on a worker pool, and a single writer takes them back in
+ * file order, drops titles and ISBNs that already exist (checked against in-memory
+ * sets loaded once from the table) and inserts the rest with JDBC batches, one
+ * transaction per chunk. After each chunk the last committed record number is written
+ * to a checkpoint file, so a failed or interrupted import resumes where it stopped.
+ */
+@Service
+public class BookImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookImportService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO books (id, title, author, category, year, description, image, " +
+            "quota, rack_number, isbn, language, available_copies, late_fee, can_borrow, rating) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonMapper jsonMapper;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookFacetIndex bookFacetIndex;
+    private final StatisticAggregator statisticAggregator;
+    private final Path importDir;
+    private final int chunkSize;
+    private final int workers;
+    private final ExecutorService parsePool;
+    private final ExecutorService jobRunner;
+
+    private final Map<String, BookImportJob> jobs = new ConcurrentHashMap<>();
+
+    public BookImportService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            JsonMapper jsonMapper,
+            BookSearchIndex bookSearchIndex,
+            BookFacetIndex bookFacetIndex,
+            StatisticAggregator statisticAggregator,
+            @Value("${digilibz.import.dir:${java.io.tmpdir}/digilibz-imports}") Path importDir,
+            @Value("${digilibz.import.chunk-size:1000}") int chunkSize,
+            @Value("${digilibz.import.workers:0}") int workers
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.jsonMapper = jsonMapper;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookFacetIndex = bookFacetIndex;
+        this.statisticAggregator = statisticAggregator;
+        this.importDir = importDir;
+        this.chunkSize = chunkSize;
+        this.workers = workers > 0 ? workers : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.parsePool = Executors.newFixedThreadPool(this.workers, daemonThreads("book-import-parser"));
+        this.jobRunner = Executors.newSingleThreadExecutor(daemonThreads("book-import"));
+    }
+
+    /**
+     * Stores the uploaded file and imports it in the background.
+     */
+    public BookImportJob submit(InputStream upload, ImportFormat format) {
+        String jobId = UUID.randomUUID().toString();
+        Path source = importDir.resolve(jobId + "." + format.name().toLowerCase(Locale.ROOT));
+        try {
+            Files.createDirectories(importDir);
+            Files.copy(upload, source, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new ApiException("Gagal menyimpan file import: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        BookImportJob job = new BookImportJob(jobId, source, format, 0);
+        jobs.put(jobId, job);
+        jobRunner.execute(() -> run(job));
+        return job;
+    }
+
+    /**
+     * Restarts a failed import from its last checkpoint.
+     */
+    public BookImportJob resume(String jobId) {
+        BookImportJob job = jobs.get(jobId);
+        if (job == null) {
+            job = findOnDisk(jobId);
+            job.fail("Interrupted by restart");
+        }
+        if (job.getState() == BookImportJob.State.RUNNING) {
+            throw new ApiException("Import masih berjalan", HttpStatus.CONFLICT);
+        }
+        job.restart();
+        job.setCheckpoint(readCheckpoint(jobId));
+        jobs.put(jobId, job);
+        BookImportJob resumed = job;
+        jobRunner.execute(() -> run(resumed));
+        return job;
+    }
+
+    /**
+     * Imports a local file on the calling thread, resuming from an earlier checkpoint
+     * of the same file if there is one. Used by the command-line runner.
+     */
+    public BookImportJob importFile(Path file, ImportFormat format) {
+        String jobId = "file-" + UUID.nameUUIDFromBytes(file.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+        BookImportJob job = new BookImportJob(jobId, file, format, readCheckpoint(jobId));
+        jobs.put(jobId, job);
+        run(job);
+        return job;
+    }
+
+    public Optional<BookImportJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void run(BookImportJob job) {
+        if (job.getCheckpoint() > 0) {
+            log.info("Resuming book import {} after record {}", job.getId(), job.getCheckpoint());
+        }
+        try (RecordSource source = RecordSource.open(job.getSource(), job.getFormat(), jsonMapper)) {
+            Set<String> titles = new HashSet<>();
+            Set<String> isbns = new HashSet<>();
+            jdbcTemplate.query("SELECT title, isbn FROM books", (rs) -> {
+                titles.add(normalize(rs.getString(1)));
+                isbns.add(normalize(rs.getString(2)));
+            });
+
+            Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+            List<RawRecord> chunk = new ArrayList<>(chunkSize);
+            long recordNumber = 0;
+            Map<String, String> fields;
+            while ((fields = source.next()) != null) {
+                recordNumber++;
+                if (recordNumber <= job.getCheckpoint()) {
+                    continue;
+                }
+                chunk.add(new RawRecord(recordNumber, fields));
+                if (chunk.size() == chunkSize) {
+                    List<RawRecord> toParse = chunk;
+                    inFlight.add(parsePool.submit(() -> parse(toParse)));
+                    chunk = new ArrayList<>(chunkSize);
+                    // Bounded read-ahead keeps memory flat when parsing outpaces inserts.
+                    while (inFlight.size() >= workers * 2) {
+                        write(job, inFlight.poll().get(), titles, isbns);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                List<RawRecord> toParse = chunk;
+                inFlight.add(parsePool.submit(() -> parse(toParse)));
+            }
+            while (!inFlight.isEmpty()) {
+                write(job, inFlight.poll().get(), titles, isbns);
+            }
+
+            job.complete();
+            Files.deleteIfExists(checkpointFile(job.getId()));
+            log.info("Book import {} finished: {} read, {} inserted, {} duplicates, {} invalid ({} rows/s)",
+                    job.getId(), job.getRead(), job.getInserted(), job.getDuplicates(), job.getInvalid(),
+                    String.format("%.0f", job.getRowsPerSecond()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail("Interrupted");
+        } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            log.error("Book import {} failed after record {}", job.getId(), job.getCheckpoint(), cause);
+            job.fail(cause.getMessage());
+        } finally {
+            statisticAggregator.markStale();
+        }
+    }
+
+    private ParsedChunk parse(List<RawRecord> records) {
+        List<ParsedBook> books = new ArrayList<>(records.size());
+        List<String> errors = new ArrayList<>();
+        List<Long> errorRecords = new ArrayList<>();
+        for (RawRecord record : records) {
+            try {
+                books.add(new ParsedBook(record.number(), toBook(record.fields())));
+            } catch (IllegalArgumentException e) {
+                errorRecords.add(record.number());
+                errors.add(e.getMessage());
+            }
+        }
+        return new ParsedChunk(records.size(), records.get(records.size() - 1).number(), books, errorRecords, errors);
+    }
+
+    private void write(BookImportJob job, ParsedChunk chunk, Set<String> titles, Set<String> isbns) throws IOException {
+        job.readCounter().addAndGet(chunk.size());
+        for (int i = 0; i < chunk.errors().size(); i++) {
+            job.recordError(chunk.errorRecords().get(i), chunk.errors().get(i));
+        }
+
+        List<ParsedBook> fresh = new ArrayList<>(chunk.books().size());
+        for (ParsedBook parsed : chunk.books()) {
+            String title = normalize(parsed.book().getTitle());
+            String isbn = normalize(parsed.book().getIsbn());
+            if (titles.contains(title) || isbns.contains(isbn)) {
+                job.duplicatesCounter().incrementAndGet();
+                continue;
+            }
+            titles.add(title);
+            isbns.add(isbn);
+            fresh.add(parsed);
+        }
+
+        List<Book> inserted = insert(job, fresh);
+        job.insertedCounter().addAndGet(inserted.size());
+        for (Book book : inserted) {
+            bookSearchIndex.index(book);
+            bookFacetIndex.index(book);
+        }
+
+        job.setCheckpoint(chunk.lastRecord());
+        Files.writeString(checkpointFile(job.getId()), Long.toString(chunk.lastRecord()));
+    }
+
+    private List<Book> insert(BookImportJob job, List<ParsedBook> parsed) {
+        List<Book> books = parsed.stream().map(ParsedBook::book).toList();
+        if (books.isEmpty()) {
+            return books;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, books, books.size(), BookImportService::bind));
+            return books;
+        } catch (DataIntegrityViolationException e) {
+            // Some row was rejected: a clash with a book added outside the import since the
+            // key sets were loaded, or a value the table refuses. Retry this chunk row by row;
+            // only unique-key clashes count as duplicates, anything else is the row's error.
+            List<Book> inserted = new ArrayList<>(books.size());
+            for (ParsedBook row : parsed) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, row.book()));
+                    inserted.add(row.book());
+                } catch (DuplicateKeyException duplicate) {
+                    log.debug("Skipping book {} during import: {}", row.book().getIsbn(), duplicate.getMessage());
+                    job.duplicatesCounter().incrementAndGet();
+                } catch (DataIntegrityViolationException rejected) {
+                    job.recordError(row.number(), "rejected by the database: " + rootMessage(rejected));
+                }
+            }
+            return inserted;
+        }
+    }
+
+    static String rootMessage(DataIntegrityViolationException e) {
+        Throwable cause = e.getMostSpecificCause();
+        return cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+    }
+
+    private static void bind(PreparedStatement ps, Book book) throws SQLException {
+        ps.setString(1, book.getId());
+        ps.setString(2, book.getTitle());
+        ps.setString(3, book.getAuthor());
+        ps.setString(4, book.getCategory());
+        ps.setInt(5, book.getYear());
+        ps.setString(6, book.getDescription());
+        ps.setString(7, book.getImage());
+        ps.setInt(8, book.getQuota());
+        ps.setString(9, book.getRackNumber());
+        ps.setString(10, book.getIsbn());
+        ps.setString(11, book.getLanguage());
+        ps.setInt(12, book.getAvailableCopies());
+        ps.setObject(13, book.getLateFee(), Types.DECIMAL);
+        ps.setBoolean(14, book.isCanBorrow());
+        ps.setObject(15, book.getRating(), Types.DECIMAL);
+    }
+
+    static Book toBook(Map<String, String> fields) {
+        Book book = new Book();
+        book.setId(UUID.randomUUID().toString());
+        book.setTitle(text(fields, "title", true));
+        book.setAuthor(text(fields, "author", true));
+        book.setCategory(text(fields, "category", true));
+        book.setIsbn(text(fields, "isbn", true));
+        book.setYear(integer(fields, "year", 0));
+        book.setDescription(blankToNull(fields.get("description")));
+        book.setImage(text(fields, "image", false));
+        book.setQuota(integer(fields, "quota", 0));
+        book.setRackNumber(text(fields, "rackNumber", false));
+        book.setLanguage(text(fields, "language", false));
+        book.setAvailableCopies(integer(fields, "availableCopies", 0));
+        book.setLateFee(decimal(fields, "lateFee", new BigDecimal("99999999.99")));
+        book.setRating(decimal(fields, "rating", new BigDecimal("5")));
+        String canBorrow = blankToNull(fields.get("canBorrow"));
+        if (canBorrow != null) {
+            if (!canBorrow.equalsIgnoreCase("true") && !canBorrow.equalsIgnoreCase("false")) {
+                throw new IllegalArgumentException("canBorrow must be true or false");
+            }
+            book.setCanBorrow(Boolean.parseBoolean(canBorrow));
+        }
+        return book;
+    }
+
+    private static String text(Map<String, String> fields, String name, boolean required) {
+        String value = blankToNull(fields.get(name));
+        if (value == null) {
+            if (required) {
+                throw new IllegalArgumentException(name + " is required");
+            }
+            return null;
+        }
+        if (value.length() > 255) {
+            throw new IllegalArgumentException(name + " is longer than 255 characters");
+        }
+        return value;
+    }
+
+    private static int integer(Map<String, String> fields, String name, int defaultValue) {
+        String value = blankToNull(fields.get(name));
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0) {
+                throw new IllegalArgumentException(name + " must not be negative");
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a whole number");
+        }
+    }
+
+    private static BigDecimal decimal(Map<String, String> fields, String name, BigDecimal max) {
+        String value = blankToNull(fields.get(name));
+        if (value == null) {
+            return null;
+        }
+        try {
+            BigDecimal parsed = new BigDecimal(value);
+            if (parsed.signum() < 0 || parsed.compareTo(max) > 0) {
+                throw new IllegalArgumentException(name + " must be between 0 and " + max.toPlainString());
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not a number");
+        }
+    }
+
+    private static String blankToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    // Mirrors the case-insensitive collation of the unique keys in MySQL.
+    private static String normalize(String key) {
+        return key == null ? "" : key.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private BookImportJob findOnDisk(String jobId) {
+        for (ImportFormat format : ImportFormat.values()) {
+            Path source = importDir.resolve(jobId + "." + format.name().toLowerCase(Locale.ROOT));
+            if (!jobId.contains("/") && !jobId.contains("\\") && Files.exists(source)) {
+                return new BookImportJob(jobId, source, format, readCheckpoint(jobId));
+            }
+        }
+        throw new ApiException("Import tidak ditemukan", HttpStatus.NOT_FOUND);
+    }
+
+    private long readCheckpoint(String jobId) {
+        Path file = checkpointFile(jobId);
+        try {
+            return Files.exists(file) ? Long.parseLong(Files.readString(file).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Ignoring unreadable checkpoint {}", file);
+            return 0;
+        }
+    }
+
+    private Path checkpointFile(String jobId) {
+        try {
+            Files.createDirectories(importDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return importDir.resolve(jobId + ".checkpoint");
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger ids = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + ids.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobRunner.shutdownNow();
+        parsePool.shutdownNow();
+    }
+
+    private record RawRecord(long number, Map<String, String> fields) {
+    }
+
+    private record ParsedChunk(int size, long lastRecord, List<ParsedBook> books, List<Long> errorRecords,
+                               List<String> errors) {
+    }
+
+    private record ParsedBook(long number, Book book) {
+    }
+}
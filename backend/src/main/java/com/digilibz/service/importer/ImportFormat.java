@@ -0,0 +1,18 @@
+package com.digilibz.service.importer;
+
+import com.digilibz.exception.ApiException;
+import org.springframework.http.HttpStatus;
+
+import java.util.Locale;
+
+public enum ImportFormat {
+    CSV, JSON;
+
+    public static ImportFormat from(String format) {
+        try {
+            return valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException("Format tidak valid. Gunakan 'csv' atau 'json'", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
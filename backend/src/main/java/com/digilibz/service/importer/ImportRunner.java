@@ -0,0 +1,84 @@
+package com.digilibz.service.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs an import from the command line and exits, e.g.
+ * {@code java -jar digilibz.jar --import-books=/data/books.csv [--import-format=json]} or
+ * {@code java -jar digilibz.jar --import-reviews=/data/reviews.json}.
+ * Running the same book file again after a failure resumes from its checkpoint;
+ * review imports are upserts, so rerunning one is safe.
+ */
+@Component
+public class ImportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportRunner.class);
+
+    private final BookImportService bookImportService;
+    private final ReviewImportService reviewImportService;
+    private final ConfigurableApplicationContext context;
+
+    public ImportRunner(BookImportService bookImportService, ReviewImportService reviewImportService,
+                        ConfigurableApplicationContext context) {
+        this.bookImportService = bookImportService;
+        this.reviewImportService = reviewImportService;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Path books = file(args, "import-books");
+        Path reviews = file(args, "import-reviews");
+        if (books == null && reviews == null) {
+            return;
+        }
+
+        int exitCode = 0;
+        if (books != null) {
+            BookImportJob job = bookImportService.importFile(books, format(args, books));
+            job.getErrors().forEach(error -> log.warn("{}", error));
+            if (job.getState() != BookImportJob.State.COMPLETED) {
+                exitCode = 1;
+            }
+        }
+        // Books first, so reviews of books in the same run find their ids.
+        if (reviews != null && exitCode == 0) {
+            ReviewImportResult result = reviewImportService.importFile(reviews, format(args, reviews));
+            result.getErrors().forEach(error -> log.warn("{}", error));
+        }
+        int status = exitCode;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+
+    private Path file(ApplicationArguments args, String option) {
+        List<String> values = args.getOptionValues(option);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        Path file = Path.of(values.get(0));
+        if (!Files.isReadable(file)) {
+            log.error("Import file {} is not readable", file);
+            System.exit(SpringApplication.exit(context, () -> 2));
+        }
+        return file;
+    }
+
+    private static ImportFormat format(ApplicationArguments args, Path file) {
+        List<String> formats = args.getOptionValues("import-format");
+        if (formats != null && !formats.isEmpty()) {
+            return ImportFormat.from(formats.get(0));
+        }
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json") ? ImportFormat.JSON : ImportFormat.CSV;
+    }
+}
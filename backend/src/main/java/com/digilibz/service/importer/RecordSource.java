@@ -0,0 +1,87 @@
+package com.digilibz.service.importer;
+
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sequential reader of import records as field-name to value maps: CSV rows keyed by
+ * the header row, or the objects of a JSON array or newline-delimited JSON file.
+ */
+interface RecordSource extends Closeable {
+
+    RecordSource EMPTY = new RecordSource() {
+        @Override
+        public Map<String, String> next() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * The next record, or null at the end of the file.
+     */
+    Map<String, String> next() throws IOException;
+
+    static RecordSource open(Path path, ImportFormat format, JsonMapper jsonMapper) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8), 64 * 1024);
+        if (format == ImportFormat.CSV) {
+            CsvRecordReader csv = new CsvRecordReader(reader);
+            List<String> header = csv.next();
+            if (header == null) {
+                reader.close();
+                return EMPTY;
+            }
+            if (!header.isEmpty() && header.get(0).startsWith("﻿")) {
+                header.set(0, header.get(0).substring(1));
+            }
+            List<String> columns = header.stream().map(String::trim).toList();
+            return new RecordSource() {
+                @Override
+                public Map<String, String> next() throws IOException {
+                    List<String> values = csv.next();
+                    if (values == null) {
+                        return null;
+                    }
+                    Map<String, String> fields = new HashMap<>(columns.size() * 2);
+                    for (int i = 0; i < columns.size() && i < values.size(); i++) {
+                        fields.put(columns.get(i), values.get(i));
+                    }
+                    return fields;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    reader.close();
+                }
+            };
+        }
+        MappingIterator<Map<String, Object>> iterator = jsonMapper.readerFor(Map.class).readValues(reader);
+        return new RecordSource() {
+            @Override
+            public Map<String, String> next() {
+                if (!iterator.hasNextValue()) {
+                    return null;
+                }
+                Map<String, String> fields = new HashMap<>();
+                iterator.nextValue().forEach((key, value) -> fields.put(key, value == null ? null : value.toString()));
+                return fields;
+            }
+
+            @Override
+            public void close() {
+                iterator.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package com.digilibz.service.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a review import: rows inserted as new reviews, rows that replaced a
+ * user's earlier review of the same book, rows folded into a later row of the same
+ * import, and rows rejected by validation.
+ */
+public class ReviewImportResult {
+
+    private long received;
+    private long inserted;
+    private long updated;
+    private long duplicates;
+    private long invalid;
+    private long elapsedMillis;
+    private final List<String> errors = new ArrayList<>();
+
+    void received(long count) {
+        received += count;
+    }
+
+    void inserted(long count) {
+        inserted += count;
+    }
+
+    void updated(long count) {
+        updated += count;
+    }
+
+    void duplicates(long count) {
+        duplicates += count;
+    }
+
+    void recordError(long record, String message) {
+        invalid++;
+        if (errors.size() < BookImportJob.MAX_REPORTED_ERRORS) {
+            errors.add("Record " + record + ": " + message);
+        }
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
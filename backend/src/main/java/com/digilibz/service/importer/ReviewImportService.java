@@ -0,0 +1,317 @@
+package com.digilibz.service.importer;
+
+import com.digilibz.dto.review.ReviewImportRequest;
+import com.digilibz.exception.ApiException;
+import com.digilibz.service.analytics.AnalyticsEngine;
+import com.digilibz.service.rating.RatingAggregateService;
+import com.digilibz.service.rating.RatingDelta;
+import com.digilibz.service.statistic.StatisticAggregator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Bulk review ingestion for the batch endpoint and the command-line importer. Book and
+ * author ids are checked against in-memory id sets, a user's review of a book replaces
+ * their earlier one, rows are written with JDBC batches, and the rating aggregate of
+ * each touched book and the review analytics are updated once per batch with the
+ * summed change.
+ */
+@Service
+public class ReviewImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReviewImportService.class);
+
+    public static final int MAX_BATCH_SIZE = 5000;
+
+    // A row that clashes with a concurrent first review is tried once more as an update.
+    private static final int ROW_ATTEMPTS = 2;
+
+    private static final String INSERT_SQL = "INSERT INTO reviews (id, book_id, author_id, date, rating, content) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE reviews SET date = ?, rating = ?, content = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonMapper jsonMapper;
+    private final RatingAggregateService ratingAggregateService;
+    private final StatisticAggregator statisticAggregator;
+    private final AnalyticsEngine analyticsEngine;
+    private final int chunkSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ReviewImportService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            JsonMapper jsonMapper,
+            RatingAggregateService ratingAggregateService,
+            StatisticAggregator statisticAggregator,
+            AnalyticsEngine analyticsEngine,
+            @Value("${digilibz.import.review-chunk-size:1000}") int chunkSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.jsonMapper = jsonMapper;
+        this.ratingAggregateService = ratingAggregateService;
+        this.statisticAggregator = statisticAggregator;
+        this.analyticsEngine = analyticsEngine;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Ingests one batch from the API. Only the ids the batch refers to are looked up.
+     */
+    public ReviewImportResult ingest(List<ReviewImportRequest> reviews) {
+        if (reviews.size() > MAX_BATCH_SIZE) {
+            throw new ApiException("Maksimal " + MAX_BATCH_SIZE + " review per batch", HttpStatus.BAD_REQUEST);
+        }
+        long start = System.nanoTime();
+        Set<String> bookIds = existingIds("Book", reviews.stream().map(ReviewImportRequest::getBookId));
+        Set<String> userIds = existingIds("User", reviews.stream().map(ReviewImportRequest::getAuthorId));
+
+        ReviewImportResult result = new ReviewImportResult();
+        List<NumberedReview> numbered = new ArrayList<>(reviews.size());
+        for (int i = 0; i < reviews.size(); i++) {
+            numbered.add(new NumberedReview(i + 1, reviews.get(i)));
+        }
+        for (int from = 0; from < numbered.size(); from += chunkSize) {
+            write(numbered.subList(from, Math.min(from + chunkSize, numbered.size())), bookIds, userIds, result);
+        }
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Imports a CSV or JSON file of reviews on the calling thread, with every book and
+     * user id loaded up front.
+     */
+    public ReviewImportResult importFile(Path file, ImportFormat format) {
+        long start = System.nanoTime();
+        Set<String> bookIds = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM books", String.class));
+        Set<String> userIds = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM users", String.class));
+
+        ReviewImportResult result = new ReviewImportResult();
+        try (RecordSource source = RecordSource.open(file, format, jsonMapper)) {
+            List<NumberedReview> chunk = new ArrayList<>(chunkSize);
+            long recordNumber = 0;
+            Map<String, String> fields;
+            while ((fields = source.next()) != null) {
+                recordNumber++;
+                try {
+                    chunk.add(new NumberedReview(recordNumber, toRequest(fields)));
+                } catch (IllegalArgumentException e) {
+                    result.received(1);
+                    result.recordError(recordNumber, e.getMessage());
+                }
+                if (chunk.size() == chunkSize) {
+                    write(chunk, bookIds, userIds, result);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                write(chunk, bookIds, userIds, result);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        log.info("Review import of {} finished: {} received, {} inserted, {} updated, {} duplicates, {} invalid in {} ms",
+                file, result.getReceived(), result.getInserted(), result.getUpdated(), result.getDuplicates(),
+                result.getInvalid(), result.getElapsedMillis());
+        return result;
+    }
+
+    private void write(List<NumberedReview> chunk, Set<String> bookIds, Set<String> userIds, ReviewImportResult result) {
+        result.received(chunk.size());
+
+        // Validate, then keep only the last row per (book, author) within the chunk.
+        Map<String, ReviewRow> rows = new LinkedHashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (NumberedReview numbered : chunk) {
+            ReviewImportRequest review = numbered.review();
+            String error = validate(review, bookIds, userIds);
+            if (error != null) {
+                result.recordError(numbered.number(), error);
+                continue;
+            }
+            ReviewRow row = new ReviewRow(numbered.number(), review.getBookId(), review.getAuthorId(),
+                    review.getRating(), review.getContent().trim(), review.getDate() != null ? review.getDate() : now);
+            if (rows.put(row.key(), row) != null) {
+                result.duplicates(1);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            int[] written = transactionTemplate.execute(status -> upsert(rows.values()));
+            result.inserted(written[0]);
+            result.updated(written[1]);
+        } catch (DataIntegrityViolationException e) {
+            // Some row was rejected: a review of one of the pairs committed since the lookup,
+            // or a value the table refuses. Write this chunk row by row; a clash becomes an
+            // update of the review that won, anything else is the row's error.
+            log.debug("Writing review batch row by row after a rejected batch: {}", e.getMessage());
+            for (ReviewRow row : rows.values()) {
+                writeRow(row, result);
+            }
+        }
+    }
+
+    private void writeRow(ReviewRow row, ReviewImportResult result) {
+        for (int attempt = 1; attempt <= ROW_ATTEMPTS; attempt++) {
+            try {
+                int[] written = transactionTemplate.execute(status -> upsert(List.of(row)));
+                result.inserted(written[0]);
+                result.updated(written[1]);
+                return;
+            } catch (DuplicateKeyException duplicate) {
+                log.debug("Review of book {} by {} clashed with a concurrent one: {}",
+                        row.bookId(), row.authorId(), duplicate.getMessage());
+            } catch (DataIntegrityViolationException rejected) {
+                result.recordError(row.number(), "rejected by the database: " + BookImportService.rootMessage(rejected));
+                return;
+            }
+        }
+        result.duplicates(1);
+    }
+
+    private int[] upsert(Collection<ReviewRow> rows) {
+        Set<String> books = new HashSet<>();
+        Set<String> authors = new HashSet<>();
+        rows.forEach(row -> {
+            books.add(row.bookId());
+            authors.add(row.authorId());
+        });
+        Map<String, Object[]> existing = new HashMap<>();
+        entityManager.createQuery("SELECT r.id, r.book.id, r.author.id, r.rating, r.date FROM Review r " +
+                        "WHERE r.book.id IN :books AND r.author.id IN :authors", Object[].class)
+                .setParameter("books", books)
+                .setParameter("authors", authors)
+                .getResultList()
+                .forEach(review -> existing.put(review[1] + "\u001F" + review[2], review));
+
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        Map<String, RatingDelta> deltas = new HashMap<>();
+        List<AnalyticsEngine.ReviewCount> counts = new ArrayList<>();
+        for (ReviewRow row : rows) {
+            RatingDelta delta = deltas.computeIfAbsent(row.bookId(), id -> new RatingDelta());
+            Object[] previous = existing.get(row.key());
+            if (previous == null) {
+                inserts.add(new Object[]{UUID.randomUUID().toString(), row.bookId(), row.authorId(),
+                        Timestamp.valueOf(row.date()), (double) row.rating(), row.content()});
+                delta.add(row.rating());
+                counts.add(new AnalyticsEngine.ReviewCount(row.date(), row.bookId(), row.rating(), 1));
+            } else {
+                updates.add(new Object[]{Timestamp.valueOf(row.date()), (double) row.rating(), row.content(), previous[0]});
+                double previousRating = ((Number) previous[3]).doubleValue();
+                delta.remove(previousRating).add(row.rating());
+                counts.add(new AnalyticsEngine.ReviewCount((LocalDateTime) previous[4], row.bookId(), previousRating, -1));
+                counts.add(new AnalyticsEngine.ReviewCount(row.date(), row.bookId(), row.rating(), 1));
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+        deltas.forEach(ratingAggregateService::apply);
+        analyticsEngine.reviewsChanged(counts);
+        statisticAggregator.markStale();
+        return new int[]{inserts.size(), updates.size()};
+    }
+
+    private static String validate(ReviewImportRequest review, Set<String> bookIds, Set<String> userIds) {
+        if (review.getBookId() == null || !bookIds.contains(review.getBookId())) {
+            return "Unknown bookId " + review.getBookId();
+        }
+        if (review.getAuthorId() == null || !userIds.contains(review.getAuthorId())) {
+            return "Unknown authorId " + review.getAuthorId();
+        }
+        if (review.getRating() == null
+                || review.getRating() < RatingAggregateService.MIN_STARS
+                || review.getRating() > RatingAggregateService.MAX_STARS) {
+            return "rating must be between 1 and 5";
+        }
+        if (review.getContent() == null || review.getContent().isBlank()) {
+            return "content is required";
+        }
+        return null;
+    }
+
+    private static ReviewImportRequest toRequest(Map<String, String> fields) {
+        ReviewImportRequest review = new ReviewImportRequest();
+        review.setBookId(blankToNull(fields.get("bookId")));
+        review.setAuthorId(blankToNull(fields.get("authorId")));
+        review.setContent(fields.get("content"));
+        String rating = blankToNull(fields.get("rating"));
+        if (rating != null) {
+            try {
+                review.setRating(Integer.parseInt(rating));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("rating is not a whole number");
+            }
+        }
+        String date = blankToNull(fields.get("date"));
+        if (date != null) {
+            try {
+                review.setDate(LocalDateTime.parse(date));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("date is not an ISO date-time");
+            }
+        }
+        return review;
+    }
+
+    private Set<String> existingIds(String entity, Stream<String> ids) {
+        List<String> distinct = ids.filter(Objects::nonNull).distinct().toList();
+        if (distinct.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(entityManager.createQuery("SELECT e.id FROM " + entity + " e WHERE e.id IN :ids", String.class)
+                .setParameter("ids", distinct)
+                .getResultList());
+    }
+
+    private static String blankToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private record NumberedReview(long number, ReviewImportRequest review) {
+    }
+
+    private record ReviewRow(long number, String bookId, String authorId, int rating, String content,
+                             LocalDateTime date) {
+        String key() {
+            return bookId + "\u001F" + authorId;
+        }
+    }
+}
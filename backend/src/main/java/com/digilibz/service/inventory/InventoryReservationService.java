@@ -0,0 +1,238 @@
+package com.digilibz.service.inventory;
+
+import com.digilibz.common.AfterCommit;
+import com.digilibz.models.Book;
+import com.digilibz.models.BookReservation;
+import com.digilibz.models.BookReservation.ReservationStatus;
+import com.digilibz.models.Transaction;
+import com.digilibz.repository.BookRepository;
+import com.digilibz.repository.BookReservationRepository;
+import com.digilibz.service.cache.BookCache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Keeps {@code books.available_copies} in step with borrows. Copies are taken with a
+ * conditional {@code UPDATE ... WHERE available_copies >= n}, so concurrent borrows of
+ * the last copy cannot both succeed, and each taken copy is recorded as a reservation.
+ * Reservations of PENDING transactions expire and give their copies back; approving
+ * the borrow confirms them, and declining it or approving the return releases them.
+ * Nothing else writes the column: the entity maps it as not updatable, and the books
+ * a bulk UPDATE touched are detached so later reads in the same transaction see the
+ * new count instead of the managed copy loaded before it.
+ */
+@Service
+public class InventoryReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryReservationService.class);
+
+    private static final Set<ReservationStatus> ACTIVE = EnumSet.of(ReservationStatus.HELD, ReservationStatus.CONFIRMED);
+
+    private final BookReservationRepository reservationRepository;
+    private final BookRepository bookRepository;
+    private final BookCache bookCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration holdDuration;
+    private final int sweepBatchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public InventoryReservationService(
+            BookReservationRepository reservationRepository,
+            BookRepository bookRepository,
+            BookCache bookCache,
+            TransactionTemplate transactionTemplate,
+            @Value("${digilibz.inventory.hold-duration:PT48H}") Duration holdDuration,
+            @Value("${digilibz.inventory.sweep-batch-size:200}") int sweepBatchSize
+    ) {
+        this.reservationRepository = reservationRepository;
+        this.bookRepository = bookRepository;
+        this.bookCache = bookCache;
+        this.transactionTemplate = transactionTemplate;
+        this.holdDuration = holdDuration;
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    /**
+     * Takes one copy per item and records the holds. The whole transaction rolls
+     * back if any title has run out.
+     */
+    @Transactional
+    public void reserve(Transaction transaction, List<Book> items) {
+        Map<String, Integer> counts = countByBook(items.stream().map(Book::getId).toList());
+        takeCopies(counts);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<BookReservation> reservations = new ArrayList<>(items.size());
+        for (Book book : items) {
+            BookReservation reservation = new BookReservation();
+            reservation.setTransaction(transaction);
+            reservation.setBook(book);
+            reservation.setStatus(ReservationStatus.HELD);
+            reservation.setCreatedAt(now);
+            reservation.setExpiresAt(now.plus(holdDuration));
+            reservations.add(reservation);
+        }
+        reservationRepository.saveAll(reservations);
+        invalidateAfterCommit(counts.keySet());
+    }
+
+    /**
+     * Confirms the copies of an approved borrow. Holds that already expired are
+     * taken again, which fails if the title ran out in the meantime.
+     */
+    @Transactional
+    public void confirm(String transactionId) {
+        List<BookReservation> reservations = reservationRepository.lockByTransactionId(
+                transactionId, EnumSet.of(ReservationStatus.HELD, ReservationStatus.RELEASED));
+
+        List<String> expiredBookIds = new ArrayList<>();
+        for (BookReservation reservation : reservations) {
+            if (reservation.getStatus() == ReservationStatus.RELEASED) {
+                expiredBookIds.add(reservation.getBook().getId());
+            }
+            reservation.setStatus(ReservationStatus.CONFIRMED);
+        }
+        Map<String, Integer> counts = countByBook(expiredBookIds);
+        takeCopies(counts);
+        invalidateAfterCommit(counts.keySet());
+    }
+
+    /**
+     * Gives every held or confirmed copy of the transaction back to the shelf.
+     * Safe to call more than once.
+     */
+    @Transactional
+    public int release(String transactionId) {
+        return releaseLocked(reservationRepository.lockByTransactionId(transactionId, ACTIVE));
+    }
+
+    /**
+     * Puts copies on the shelf or takes them off when the stock of a title changes.
+     * Copies that are lent out or held cannot be removed.
+     */
+    @Transactional
+    public void adjustStock(String bookId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (bookRepository.adjustCopies(bookId, delta) != 1) {
+            throw new IllegalArgumentException("Cannot remove " + -delta + " copies: not enough are on the shelf");
+        }
+        evict(List.of(bookId));
+        invalidateAfterCommit(List.of(bookId));
+    }
+
+    @Transactional
+    public int extend(String transactionId) {
+        return reservationRepository.extend(transactionId, ReservationStatus.HELD, LocalDateTime.now().plus(holdDuration));
+    }
+
+    @Transactional
+    public List<Map<String, Object>> getReservations(String transactionId) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (BookReservation reservation : reservationRepository.findByTransactionIdWithBook(transactionId)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", reservation.getId());
+            item.put("bookId", reservation.getBook().getId());
+            item.put("title", reservation.getBook().getTitle());
+            item.put("status", reservation.getStatus());
+            item.put("createdAt", reservation.getCreatedAt());
+            item.put("expiresAt", reservation.getExpiresAt());
+            result.add(item);
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${digilibz.inventory.sweep-interval:PT1M}")
+    public void releaseExpired() {
+        int total = 0;
+        while (true) {
+            Integer processed = transactionTemplate.execute(status -> {
+                List<BookReservation> expired = reservationRepository.lockExpired(
+                        ReservationStatus.HELD, LocalDateTime.now(), PageRequest.of(0, sweepBatchSize));
+                releaseLocked(expired);
+                return expired.size();
+            });
+            total += processed == null ? 0 : processed;
+            if (processed == null || processed < sweepBatchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("Released {} expired book reservations", total);
+        }
+    }
+
+    private int releaseLocked(List<BookReservation> reservations) {
+        List<String> bookIds = new ArrayList<>(reservations.size());
+        for (BookReservation reservation : reservations) {
+            reservation.setStatus(ReservationStatus.RELEASED);
+            bookIds.add(reservation.getBook().getId());
+        }
+        Map<String, Integer> counts = countByBook(bookIds);
+        groupByCount(counts).forEach((count, ids) -> bookRepository.releaseCopies(ids, count));
+        evict(counts.keySet());
+        invalidateAfterCommit(counts.keySet());
+        return reservations.size();
+    }
+
+    /**
+     * One conditional UPDATE per distinct copy count, which in practice means one
+     * statement per borrow however many titles it contains.
+     */
+    private void takeCopies(Map<String, Integer> counts) {
+        groupByCount(counts).forEach((count, ids) -> {
+            if (bookRepository.reserveCopies(ids, count) != ids.size()) {
+                List<String> titles = bookRepository.findUnavailableTitles(ids, count);
+                throw new IllegalArgumentException("No available copies for: " + String.join(", ", titles));
+            }
+        });
+        evict(counts.keySet());
+    }
+
+    /**
+     * Detaches the books a bulk UPDATE changed. {@code getReference} returns the managed
+     * instance when there is one and otherwise an unloaded proxy, so no row is read.
+     * Books have no associations; a caller that edits a book and its stock in one
+     * transaction flushes the edit first so detaching it drops nothing.
+     */
+    private void evict(Collection<String> bookIds) {
+        for (String id : bookIds) {
+            entityManager.detach(entityManager.getReference(Book.class, id));
+        }
+    }
+
+    private static Map<String, Integer> countByBook(List<String> bookIds) {
+        Map<String, Integer> counts = new TreeMap<>();
+        bookIds.forEach(id -> counts.merge(id, 1, Integer::sum));
+        return counts;
+    }
+
+    private static Map<Integer, List<String>> groupByCount(Map<String, Integer> counts) {
+        Map<Integer, List<String>> groups = new TreeMap<>();
+        counts.forEach((id, count) -> groups.computeIfAbsent(count, key -> new ArrayList<>()).add(id));
+        return groups;
+    }
+
+    private void invalidateAfterCommit(Collection<String> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = List.copyOf(bookIds);
+        AfterCommit.run(() -> ids.forEach(bookCache::invalidate));
+    }
+}
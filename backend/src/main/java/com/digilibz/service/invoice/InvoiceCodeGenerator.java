@@ -0,0 +1,129 @@
+package com.digilibz.service.invoice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Issues invoice codes of the form {@code INV-yyyyMMdd-XXXXXXXXXXXXX}. The suffix is a
+ * fixed-width Crockford base32 rendering of a Snowflake-style id: 41 bits of
+ * milliseconds since 2024-01-01, 10 bits of node id and 12 bits of sequence. Codes
+ * are unique as long as every node runs with its own node id, and they sort in the
+ * order they were issued, which the transaction list relies on for paging.
+ */
+@Component
+public class InvoiceCodeGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceCodeGenerator.class);
+
+    static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int SUFFIX_LENGTH = 13;
+    private static final int PREFIX_LENGTH = "INV-yyyyMMdd-".length();
+
+    private final long nodeId;
+    private final ZoneId zone;
+    private final LongSupplier clock;
+
+    // Last issued (millis since EPOCH << SEQUENCE_BITS | sequence).
+    private final AtomicLong state = new AtomicLong();
+    private volatile DayPrefix dayPrefix;
+
+    @Autowired
+    public InvoiceCodeGenerator(@Value("${digilibz.invoice.node-id:-1}") int nodeId) {
+        this(nodeId < 0 ? deriveNodeId() : nodeId, ZoneId.systemDefault(), System::currentTimeMillis);
+    }
+
+    InvoiceCodeGenerator(int nodeId, ZoneId zone, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Invoice node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.zone = zone;
+        this.clock = clock;
+    }
+
+    public String next() {
+        long id = nextState();
+        long millis = (id >>> SEQUENCE_BITS) + EPOCH;
+        long value = ((id >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS))
+                | (nodeId << SEQUENCE_BITS)
+                | (id & SEQUENCE_MASK);
+
+        char[] code = new char[PREFIX_LENGTH + SUFFIX_LENGTH];
+        prefixFor(millis).copyInto(code);
+        for (int i = code.length - 1; i >= PREFIX_LENGTH; i--) {
+            code[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(code);
+    }
+
+    /**
+     * Advances the clock/sequence pair without locking. When the sequence runs out
+     * within one millisecond, or the wall clock steps backwards, ids keep going from
+     * the last issued millisecond instead of repeating.
+     */
+    private long nextState() {
+        while (true) {
+            long current = state.get();
+            long now = clock.getAsLong() - EPOCH;
+            long next = now > (current >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : current + 1;
+            if (state.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private DayPrefix prefixFor(long millis) {
+        DayPrefix prefix = dayPrefix;
+        if (prefix == null || millis < prefix.start || millis >= prefix.end) {
+            prefix = DayPrefix.of(Instant.ofEpochMilli(millis).atZone(zone).toLocalDate(), zone);
+            dayPrefix = prefix;
+        }
+        return prefix;
+    }
+
+    private static int deriveNodeId() {
+        String identity;
+        try {
+            identity = InetAddress.getLocalHost().getHostName() + "/" + ManagementFactory.getRuntimeMXBean().getName();
+        } catch (Exception e) {
+            identity = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        int nodeId = (identity.hashCode() & Integer.MAX_VALUE) % (MAX_NODE_ID + 1);
+        log.warn("digilibz.invoice.node-id is not set, using {} derived from {}; set it explicitly when running several instances",
+                nodeId, identity);
+        return nodeId;
+    }
+
+    private record DayPrefix(long start, long end, char[] chars) {
+
+        static DayPrefix of(LocalDate date, ZoneId zone) {
+            ZonedDateTime start = date.atStartOfDay(zone);
+            String text = String.format("INV-%04d%02d%02d-", date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+            return new DayPrefix(start.toInstant().toEpochMilli(),
+                    date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli(), text.toCharArray());
+        }
+
+        void copyInto(char[] target) {
+            System.arraycopy(chars, 0, target, 0, chars.length);
+        }
+    }
+}
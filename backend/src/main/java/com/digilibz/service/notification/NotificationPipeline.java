@@ -0,0 +1,259 @@
+package com.digilibz.service.notification;
+
+import com.digilibz.common.AfterCommit;
+import com.digilibz.models.Notification;
+import com.digilibz.models.User;
+import com.digilibz.service.statistic.StatisticAggregator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes notifications off the request path. Messages are queued only once the
+ * business transaction that produced them has committed, and a single writer thread
+ * drains the queue into the notifications table in batches. When the queue is full
+ * the caller waits briefly and then writes its own message in a new transaction; on
+ * shutdown the remaining queue is flushed before the datasource goes away.
+ *
+ * <p>Delivery is best effort, not an outbox: between the commit and the insert a
+ * message lives only in memory, so a crash loses what was queued, and a row that
+ * still fails on its own (e.g. its user was deleted meanwhile) is logged and counted
+ * in {@link Stats#failed()}.
+ */
+@Component
+public class NotificationPipeline implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationPipeline.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final StatisticAggregator statisticAggregator;
+    private final NotificationPushService notificationPushService;
+    private final UnreadCounter unreadCounter;
+    private final BlockingQueue<PendingNotification> queue;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final Duration offerTimeout;
+    private final Duration lingerTime;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder callerWrites = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile int lastBatchSize;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public NotificationPipeline(
+            PlatformTransactionManager transactionManager,
+            StatisticAggregator statisticAggregator,
+            NotificationPushService notificationPushService,
+            UnreadCounter unreadCounter,
+            @Value("${digilibz.notifications.queue-capacity:10000}") int capacity,
+            @Value("${digilibz.notifications.batch-size:100}") int maxBatchSize,
+            @Value("${digilibz.notifications.offer-timeout:PT0.2S}") Duration offerTimeout,
+            @Value("${digilibz.notifications.linger:PT0.05S}") Duration lingerTime
+    ) {
+        // The caller's fallback insert runs in an after-commit callback, where the
+        // finished transaction is still bound; joining it would never flush the row.
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.statisticAggregator = statisticAggregator;
+        this.notificationPushService = notificationPushService;
+        this.unreadCounter = unreadCounter;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.offerTimeout = offerTimeout;
+        this.lingerTime = lingerTime;
+    }
+
+    /**
+     * Queues a notification for the user once the current transaction commits. A
+     * rolled-back borrow therefore never tells anyone it was received.
+     */
+    public void publish(User user, String title, String message, Notification.NotificationType type) {
+        PendingNotification notification = new PendingNotification(
+                user.getId(), title, message, type, LocalDateTime.now());
+        AfterCommit.run(() -> enqueue(notification));
+    }
+
+    private void enqueue(PendingNotification notification) {
+        pending.incrementAndGet();
+        try {
+            if (running && queue.offer(notification, offerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                enqueued.increment();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Queue full, interrupted or not running: the caller pays for its own insert.
+        callerWrites.increment();
+        write(List.of(notification));
+    }
+
+    private void runWriter() {
+        List<PendingNotification> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingNotification first = queue.poll(lingerTime.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Notification writer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingNotification> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            persist(batch);
+            written.add(batch.size());
+        } catch (RuntimeException batchFailure) {
+            // One bad row (e.g. the user was deleted meanwhile) must not sink the rest.
+            log.warn("Notification batch of {} failed, retrying one by one: {}", batch.size(), batchFailure.getMessage());
+            for (PendingNotification notification : batch) {
+                try {
+                    persist(List.of(notification));
+                    written.increment();
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    log.error("Dropping notification for user {}: {}", notification.userId(), e.getMessage());
+                }
+            }
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            batches.increment();
+            flushNanos.add(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+            lastBatchSize = batch.size();
+            pending.addAndGet(-batch.size());
+        }
+    }
+
+    private void persist(List<PendingNotification> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Notification> notifications = new ArrayList<>(batch.size());
+            for (PendingNotification pendingNotification : batch) {
+                Notification notification = new Notification();
+                notification.setUser(entityManager.getReference(User.class, pendingNotification.userId()));
+                notification.setTitle(pendingNotification.title());
+                notification.setMessage(pendingNotification.message());
+                notification.setType(pendingNotification.type());
+                notification.setDate(pendingNotification.date());
+                notification.setRead(false);
+                entityManager.persist(notification);
+                notifications.add(notification);
+            }
+            statisticAggregator.notificationsCreated(batch.size());
+            Map<String, Long> perUser = new HashMap<>();
+            batch.forEach(pendingNotification -> perUser.merge(pendingNotification.userId(), 1L, Long::sum));
+            perUser.forEach(unreadCounter::adjust);
+            notificationPushService.notificationsCreated(notifications);
+        });
+    }
+
+    /**
+     * Waits until everything published so far has been written or given up on.
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pending.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    public Stats stats() {
+        long batchCount = batches.sum();
+        return new Stats(queue.size(), capacity, enqueued.sum(), written.sum(), failed.sum(), callerWrites.sum(),
+                batchCount, lastBatchSize, batchCount == 0 ? 0 : (double) (written.sum() + failed.sum()) / batchCount,
+                batchCount == 0 ? 0 : flushNanos.sum() / batchCount / 1_000_000.0, maxFlushNanos.get() / 1_000_000.0);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::runWriter, "notification-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        // The writer exits on its own once the queue is empty; interrupting it could
+        // abort an insert half way.
+        running = false;
+        try {
+            writer.join(Duration.ofSeconds(30).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingNotification> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        write(rest);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public record Stats(int queueDepth, int capacity, long enqueued, long written, long failed, long callerWrites,
+                        long batches, int lastBatchSize, double averageBatchSize, double averageFlushMillis,
+                        double maxFlushMillis) {
+    }
+
+    private record PendingNotification(String userId, String title, String message,
+                                       Notification.NotificationType type, LocalDateTime date) {
+    }
+}
@@ -0,0 +1,252 @@
+package com.digilibz.service.notification;
+
+import com.digilibz.common.AfterCommit;
+import com.digilibz.models.Notification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes notification events to connected clients over Server-Sent Events. An open
+ * stream is an async servlet request, so idle clients hold no request thread; sends
+ * run on a small fan-out pool so a slow client never stalls the notification writer.
+ * Clients receive the unread count once on connect and deltas afterwards, so they no
+ * longer need to poll the notification list.
+ *
+ * <p>Each stream has a small buffer drained by at most one pool thread at a time, and
+ * the pool's own queue is bounded. A client whose buffer fills up, whose drain cannot
+ * be queued, or whose send has been blocked longer than the send timeout is closed;
+ * it reconnects and gets a fresh unread count, so dropping events never leaves it
+ * with a wrong total.
+ */
+@Service
+public class NotificationPushService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationPushService.class);
+
+    private final UnreadCounter unreadCounter;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final int bufferSize;
+    private final ThreadPoolExecutor fanOut;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public NotificationPushService(
+            UnreadCounter unreadCounter,
+            @Value("${digilibz.notifications.stream-timeout:PT30M}") Duration timeout,
+            @Value("${digilibz.notifications.fan-out-threads:4}") int fanOutThreads,
+            @Value("${digilibz.notifications.fan-out-queue:1000}") int fanOutQueue,
+            @Value("${digilibz.notifications.stream-buffer:64}") int bufferSize,
+            @Value("${digilibz.notifications.send-timeout:PT10S}") Duration sendTimeout
+    ) {
+        this.unreadCounter = unreadCounter;
+        this.timeoutMillis = timeout.toMillis();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.bufferSize = bufferSize;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.fanOut = new ThreadPoolExecutor(fanOutThreads, fanOutThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(fanOutQueue), runnable -> {
+            Thread thread = new Thread(runnable, "notification-push-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SseEmitter subscribe(String userId) {
+        return subscribe(userId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(String userId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(userId, emitter, bufferSize);
+        subscribers.compute(userId, (key, current) -> {
+            Set<Subscriber> target = current == null ? ConcurrentHashMap.newKeySet() : current;
+            target.add(subscriber);
+            return target;
+        });
+        connections.incrementAndGet();
+
+        Runnable remove = () -> unsubscribe(subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(error -> remove.run());
+
+        long unread = unreadCounter.get(userId);
+        offer(subscriber, SseEmitter.event().name("unread").data(Map.of("unread", unread)));
+        return emitter;
+    }
+
+    /**
+     * Announces freshly stored notifications once the transaction that stored them
+     * has committed.
+     */
+    public void notificationsCreated(Collection<Notification> notifications) {
+        if (subscribers.isEmpty() || notifications.isEmpty()) {
+            return;
+        }
+        List<Map<String, Object>> events = new ArrayList<>(notifications.size());
+        for (Notification notification : notifications) {
+            if (subscribers.containsKey(notification.getUser().getId())) {
+                events.add(toEvent(notification));
+            }
+        }
+        if (!events.isEmpty()) {
+            AfterCommit.run(() -> events.forEach(event -> publish((String) event.get("userId"), "notification", event)));
+        }
+    }
+
+    public void notificationRead(Notification notification) {
+        AfterCommit.run(() -> publish(notification.getUser().getId(), "read",
+                Map.of("id", notification.getId(), "unreadDelta", -1)));
+    }
+
+    public void allNotificationsRead(String userId, int count) {
+        AfterCommit.run(() -> publish(userId, "readAll", Map.of("unreadDelta", -count)));
+    }
+
+    public void notificationDeleted(Notification notification) {
+        AfterCommit.run(() -> publish(notification.getUser().getId(), "deleted",
+                Map.of("id", notification.getId(), "unreadDelta", notification.isRead() ? 0 : -1)));
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Comment frames keep proxies from closing idle streams and flush out dead ones.
+     * The same pass closes streams whose current send has been blocked for longer
+     * than the send timeout, which makes the stuck write fail and frees its thread.
+     */
+    @Scheduled(fixedDelayString = "${digilibz.notifications.heartbeat-interval:PT25S}")
+    public void heartbeat() {
+        long now = System.nanoTime();
+        subscribers.values().forEach(current -> current.forEach(subscriber -> {
+            long since = subscriber.sendingSince;
+            if (since != 0 && now - since > sendTimeoutNanos) {
+                drop(subscriber, "send timed out");
+            } else {
+                offer(subscriber, SseEmitter.event().comment("ping"));
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(current -> current.forEach(subscriber -> subscriber.emitter.complete()));
+        fanOut.shutdown();
+    }
+
+    private void publish(String userId, String eventName, Object data) {
+        Set<Subscriber> current = subscribers.get(userId);
+        if (current == null) {
+            return;
+        }
+        for (Subscriber subscriber : current) {
+            offer(subscriber, SseEmitter.event().name(eventName).data(data));
+        }
+    }
+
+    private void offer(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (!subscriber.events.offer(event)) {
+            drop(subscriber, "buffer full");
+            return;
+        }
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            fanOut.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.scheduled.set(false);
+            drop(subscriber, "fan-out queue full");
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            SseEmitter.SseEventBuilder event = subscriber.events.poll();
+            if (event == null) {
+                subscriber.scheduled.set(false);
+                // An offer may have slipped in after the poll but before the flag cleared.
+                if (subscriber.events.isEmpty() || !subscriber.scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            subscriber.sendingSince = System.nanoTime();
+            try {
+                subscriber.emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                drop(subscriber, e.getMessage());
+                return;
+            } finally {
+                subscriber.sendingSince = 0;
+            }
+        }
+    }
+
+    private void drop(Subscriber subscriber, String reason) {
+        if (unsubscribe(subscriber)) {
+            log.debug("Dropping notification stream of user {}: {}", subscriber.userId, reason);
+            subscriber.events.clear();
+            subscriber.emitter.completeWithError(new IOException(reason));
+        }
+    }
+
+    private boolean unsubscribe(Subscriber subscriber) {
+        boolean[] removed = new boolean[1];
+        subscribers.computeIfPresent(subscriber.userId, (key, current) -> {
+            if (current.remove(subscriber)) {
+                connections.decrementAndGet();
+                removed[0] = true;
+            }
+            return current.isEmpty() ? null : current;
+        });
+        return removed[0];
+    }
+
+    private static Map<String, Object> toEvent(Notification notification) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("id", notification.getId());
+        event.put("userId", notification.getUser().getId());
+        event.put("title", notification.getTitle());
+        event.put("message", notification.getMessage());
+        event.put("type", notification.getType());
+        event.put("date", notification.getDate());
+        event.put("read", notification.isRead());
+        event.put("unreadDelta", notification.isRead() ? 0 : 1);
+        return event;
+    }
+
+    private static final class Subscriber {
+        final String userId;
+        final SseEmitter emitter;
+        final BlockingQueue<SseEmitter.SseEventBuilder> events;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        // System.nanoTime() when the current send started, 0 while idle.
+        volatile long sendingSince;
+
+        Subscriber(String userId, SseEmitter emitter, int bufferSize) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.events = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
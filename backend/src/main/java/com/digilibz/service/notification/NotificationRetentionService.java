@@ -0,0 +1,107 @@
+package com.digilibz.service.notification;
+
+import com.digilibz.repository.ArchivedNotificationRepository;
+import com.digilibz.repository.NotificationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves read notifications past the retention age from {@code notifications} to
+ * {@code notifications_archive}. Each batch copies and deletes a bounded set of rows
+ * in its own short transaction, and the job pauses between batches so row locks and
+ * undo never pile up. Unread notifications are never archived.
+ */
+@Service
+public class NotificationRetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationRetentionService.class);
+
+    private final NotificationRepository notificationRepository;
+    private final ArchivedNotificationRepository archivedNotificationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Period readAge;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration pause;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public NotificationRetentionService(
+            NotificationRepository notificationRepository,
+            ArchivedNotificationRepository archivedNotificationRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${digilibz.notifications.retention.read-age:P30D}") Period readAge,
+            @Value("${digilibz.notifications.retention.batch-size:500}") int batchSize,
+            @Value("${digilibz.notifications.retention.max-batches:200}") int maxBatches,
+            @Value("${digilibz.notifications.retention.pause:PT0.2S}") Duration pause
+    ) {
+        this.notificationRepository = notificationRepository;
+        this.archivedNotificationRepository = archivedNotificationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.readAge = readAge;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.pause = pause;
+    }
+
+    @Scheduled(cron = "${digilibz.notifications.retention.cron:0 30 3 * * *}")
+    public void archiveScheduled() {
+        archive();
+    }
+
+    /**
+     * Runs one retention pass and returns the number of archived notifications. A
+     * pass stops after {@code max-batches} batches; the next run picks up the rest.
+     */
+    public int archive() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(readAge);
+            int total = 0;
+            for (int batch = 0; batch < maxBatches; batch++) {
+                Integer moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+                total += moved == null ? 0 : moved;
+                if (moved == null || moved < batchSize) {
+                    break;
+                }
+                Thread.sleep(pause.toMillis());
+            }
+            if (total > 0) {
+                log.info("Archived {} read notifications older than {}", total, cutoff);
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<String> ids = notificationRepository.findArchivableIds(cutoff, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int copied = archivedNotificationRepository.copyFromNotifications(ids, LocalDateTime.now());
+        int deleted = notificationRepository.deleteReadByIds(ids);
+        if (copied != deleted) {
+            // A row changed between the copy and the delete; retry the batch next time.
+            throw new IllegalStateException("Archived " + copied + " notifications but removed " + deleted);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,79 @@
+package com.digilibz.service.notification;
+
+import com.digilibz.common.AfterCommit;
+import com.digilibz.repository.NotificationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user unread notification counts for the bell icon. A count is loaded with one
+ * COUNT query on first use and then adjusted in memory after each commit. Entries
+ * expire after a while, which also heals any drift from a load racing an update.
+ */
+@Component
+public class UnreadCounter {
+
+    private final NotificationRepository notificationRepository;
+    private final int maxUsers;
+    private final long ttlMillis;
+
+    private final Map<String, Entry> counts = new ConcurrentHashMap<>();
+
+    public UnreadCounter(
+            NotificationRepository notificationRepository,
+            @Value("${digilibz.notifications.unread-cache-size:50000}") int maxUsers,
+            @Value("${digilibz.notifications.unread-ttl:PT5M}") Duration ttl
+    ) {
+        this.notificationRepository = notificationRepository;
+        this.maxUsers = maxUsers;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    public long get(String userId) {
+        long now = System.currentTimeMillis();
+        Entry entry = counts.get(userId);
+        if (entry != null && now - entry.loadedAt < ttlMillis) {
+            return entry.count.get();
+        }
+        long count = notificationRepository.countByUserIdAndReadFalse(userId);
+        if (counts.size() >= maxUsers) {
+            evictOne();
+        }
+        counts.put(userId, new Entry(new AtomicLong(count), now));
+        return count;
+    }
+
+    public void adjust(String userId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        AfterCommit.run(() -> counts.computeIfPresent(userId, (key, entry) -> {
+            entry.count.updateAndGet(value -> Math.max(0, value + delta));
+            return entry;
+        }));
+    }
+
+    public void reset(String userId) {
+        AfterCommit.run(() -> counts.computeIfPresent(userId, (key, entry) -> {
+            entry.count.set(0);
+            return entry;
+        }));
+    }
+
+    private void evictOne() {
+        Iterator<String> keys = counts.keySet().iterator();
+        if (keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private record Entry(AtomicLong count, long loadedAt) {
+    }
+}
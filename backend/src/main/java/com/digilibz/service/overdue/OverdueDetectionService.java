@@ -0,0 +1,203 @@
+package com.digilibz.service.overdue;
+
+import com.digilibz.models.Notification;
+import com.digilibz.models.Transaction;
+import com.digilibz.service.NotificationsService;
+import com.digilibz.service.analytics.AnalyticsEngine;
+import com.digilibz.service.fee.FeeLedgerService;
+import com.digilibz.service.scheduling.SchedulerLeaseService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Marks approved borrows whose {@code date_to} has passed as OVERDUE. Candidates are
+ * read in due-date order through the (status, type, date_to) index, a chunk at a time
+ * in short transactions, and a database lease keeps the job on one node. Late fees
+ * for the days already missed go to the fee ledger. Only
+ * APPROVED borrows are selected, so re-running a chunk never double-processes it.
+ */
+@Service
+public class OverdueDetectionService {
+
+    private static final Logger log = LoggerFactory.getLogger(OverdueDetectionService.class);
+
+    static final String LEASE_NAME = "overdue-detection";
+
+    private final SchedulerLeaseService leaseService;
+    private final NotificationsService notificationsService;
+    private final AnalyticsEngine analyticsEngine;
+    private final FeeLedgerService feeLedgerService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxChunks;
+    private final Duration leaseDuration;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong totalRuns = new AtomicLong();
+    private final AtomicLong skippedRuns = new AtomicLong();
+    private final AtomicLong totalProcessed = new AtomicLong();
+    private volatile RunReport lastRun;
+
+    public OverdueDetectionService(
+            SchedulerLeaseService leaseService,
+            NotificationsService notificationsService,
+            AnalyticsEngine analyticsEngine,
+            FeeLedgerService feeLedgerService,
+            TransactionTemplate transactionTemplate,
+            @Value("${digilibz.overdue.chunk-size:200}") int chunkSize,
+            @Value("${digilibz.overdue.max-chunks:100}") int maxChunks,
+            @Value("${digilibz.overdue.lease-duration:PT10M}") Duration leaseDuration
+    ) {
+        this.leaseService = leaseService;
+        this.notificationsService = notificationsService;
+        this.analyticsEngine = analyticsEngine;
+        this.feeLedgerService = feeLedgerService;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+        this.leaseDuration = leaseDuration;
+    }
+
+    @Scheduled(cron = "${digilibz.overdue.cron:0 */15 * * * *}")
+    public void detectScheduled() {
+        detect();
+    }
+
+    /**
+     * Runs one detection pass. Returns empty when another pass is running here or
+     * another node holds the lease.
+     */
+    public Optional<RunReport> detect() {
+        if (!running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        try {
+            if (!leaseService.tryAcquire(LEASE_NAME, leaseDuration)) {
+                skippedRuns.incrementAndGet();
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(run());
+            } finally {
+                leaseService.release(LEASE_NAME);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private RunReport run() {
+        LocalDate today = LocalDate.now();
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+        int processed = 0;
+        int chunks = 0;
+        long maxLagDays = 0;
+        BigDecimal fees = BigDecimal.ZERO;
+
+        while (chunks < maxChunks) {
+            ChunkResult chunk = transactionTemplate.execute(status -> processChunk(today));
+            if (chunk == null || chunk.processed() == 0) {
+                break;
+            }
+            chunks++;
+            processed += chunk.processed();
+            maxLagDays = Math.max(maxLagDays, chunk.maxLagDays());
+            fees = fees.add(chunk.lateFees());
+            // Renew between chunks; stop if the lease was lost to another node.
+            if (chunk.processed() < chunkSize || !leaseService.tryAcquire(LEASE_NAME, leaseDuration)) {
+                break;
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        RunReport report = new RunReport(startedAt, LocalDateTime.now(), processed, chunks,
+                seconds > 0 ? processed / seconds : 0, maxLagDays, fees);
+        totalRuns.incrementAndGet();
+        totalProcessed.addAndGet(processed);
+        lastRun = report;
+        if (processed > 0) {
+            log.info("Marked {} transactions overdue in {} chunks ({} per second, max lag {} days)",
+                    processed, chunks, String.format("%.1f", report.throughputPerSecond()), maxLagDays);
+        }
+        return report;
+    }
+
+    private ChunkResult processChunk(LocalDate today) {
+        List<Transaction> due = entityManager.createQuery(
+                        "SELECT t FROM Transaction t WHERE t.status = :status AND t.type = :type AND t.dateTo < :today " +
+                                "ORDER BY t.dateTo, t.id", Transaction.class)
+                .setParameter("status", Transaction.TransactionStatus.APPROVED)
+                .setParameter("type", Transaction.TransactionType.BORROW)
+                .setParameter("today", today)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setMaxResults(chunkSize)
+                .getResultList();
+        if (due.isEmpty()) {
+            return new ChunkResult(0, 0, BigDecimal.ZERO);
+        }
+
+        Map<String, List<String>> categories = new HashMap<>();
+        entityManager.createQuery(
+                        "SELECT i.transaction.id, b.category FROM TransactionItem i JOIN i.book b " +
+                                "WHERE i.transaction.id IN :ids", Object[].class)
+                .setParameter("ids", due.stream().map(Transaction::getId).toList())
+                .getResultList()
+                .forEach(row -> categories.computeIfAbsent((String) row[0], key -> new ArrayList<>()).add((String) row[1]));
+
+        long maxLagDays = 0;
+        for (Transaction transaction : due) {
+            transaction.setStatus(Transaction.TransactionStatus.OVERDUE);
+            maxLagDays = Math.max(maxLagDays, ChronoUnit.DAYS.between(transaction.getDateTo(), today) - 1);
+
+            analyticsEngine.transactionStatusChanged(transaction.getStatus(),
+                    categories.getOrDefault(transaction.getId(), List.of()));
+            notificationsService.publishNotification(transaction.getUser(), "Borrow Request Overdue",
+                    "Your borrow request with invoice code " + transaction.getInvoiceCode() +
+                            " is overdue. Please return the books immediately.",
+                    Notification.NotificationType.ALERT);
+        }
+        BigDecimal total = feeLedgerService.accrue(due, today);
+        return new ChunkResult(due.size(), maxLagDays, total);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("running", running.get());
+        stats.put("totalRuns", totalRuns.get());
+        stats.put("skippedRuns", skippedRuns.get());
+        stats.put("totalProcessed", totalProcessed.get());
+        stats.put("lastRun", lastRun);
+        return stats;
+    }
+
+    /**
+     * Outcome of one pass. {@code maxLagDays} is how many days the oldest transaction
+     * in the pass had been overdue before it was detected.
+     */
+    public record RunReport(LocalDateTime startedAt, LocalDateTime finishedAt, int processed, int chunks,
+                            double throughputPerSecond, long maxLagDays, BigDecimal lateFees) {
+    }
+
+    private record ChunkResult(int processed, long maxLagDays, BigDecimal lateFees) {
+    }
+}
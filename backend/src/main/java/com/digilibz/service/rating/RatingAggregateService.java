@@ -0,0 +1,336 @@
+package com.digilibz.service.rating;
+
+import com.digilibz.common.AfterCommit;
+import com.digilibz.models.Book;
+import com.digilibz.models.BookRatingAggregate;
+import com.digilibz.repository.BookRatingAggregateRepository;
+import com.digilibz.repository.BookRepository;
+import com.digilibz.repository.ReviewRepository;
+import com.digilibz.service.cache.BookCache;
+import com.digilibz.service.scheduling.SchedulerLeaseService;
+import com.digilibz.service.statistic.StatisticAggregator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Per-book rating aggregates. Each review adds one to the book's review count, its
+ * rating to the rating sum and one to its star bucket in {@code book_rating_aggregates},
+ * and rewrites {@code books.rating} from the new totals, all in the transaction that
+ * saves the review. Listings and the dashboard read those columns instead of averaging
+ * the reviews table. A nightly job recounts the aggregates from the reviews and fixes
+ * any row that drifted.
+ */
+@Service
+public class RatingAggregateService {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingAggregateService.class);
+
+    static final String LEASE_NAME = "rating-reconcile";
+    public static final int MIN_STARS = 1;
+    public static final int MAX_STARS = 5;
+
+    private final BookRatingAggregateRepository aggregateRepository;
+    private final BookRepository bookRepository;
+    private final ReviewRepository reviewRepository;
+    private final BookCache bookCache;
+    private final StatisticAggregator statisticAggregator;
+    private final SchedulerLeaseService leaseService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration leaseDuration;
+    private final int reconcileChunkSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Map<String, Object> lastRun;
+
+    public RatingAggregateService(
+            BookRatingAggregateRepository aggregateRepository,
+            BookRepository bookRepository,
+            ReviewRepository reviewRepository,
+            BookCache bookCache,
+            StatisticAggregator statisticAggregator,
+            SchedulerLeaseService leaseService,
+            TransactionTemplate transactionTemplate,
+            @Value("${digilibz.ratings.lease-duration:PT30M}") Duration leaseDuration,
+            @Value("${digilibz.ratings.reconcile-chunk-size:200}") int reconcileChunkSize
+    ) {
+        this.aggregateRepository = aggregateRepository;
+        this.bookRepository = bookRepository;
+        this.reviewRepository = reviewRepository;
+        this.bookCache = bookCache;
+        this.statisticAggregator = statisticAggregator;
+        this.leaseService = leaseService;
+        this.transactionTemplate = transactionTemplate;
+        this.leaseDuration = leaseDuration;
+        this.reconcileChunkSize = reconcileChunkSize;
+    }
+
+    /**
+     * Adds one review to the book's aggregate. Must run in the transaction that saves
+     * the review.
+     */
+    public void reviewAdded(String bookId, double rating) {
+        apply(bookId, new RatingDelta().add(rating));
+    }
+
+    /**
+     * Swaps the rating of a review that was edited in place.
+     */
+    public void reviewReplaced(String bookId, double previousRating, double rating) {
+        apply(bookId, new RatingDelta().remove(previousRating).add(rating));
+    }
+
+    /**
+     * Subtracts every review by the user from the aggregates of the books they rated.
+     * Call in the transaction that deletes the user, before the delete cascades to the
+     * reviews. Books are updated in id order so concurrent deletes lock them alike.
+     */
+    public void authorRemoved(String userId) {
+        Map<String, RatingDelta> removals = new TreeMap<>();
+        for (Object[] row : reviewRepository.findBookRatingsByAuthorId(userId)) {
+            removals.computeIfAbsent((String) row[0], bookId -> new RatingDelta())
+                    .remove(((Number) row[1]).doubleValue());
+        }
+        removals.forEach(this::apply);
+    }
+
+    /**
+     * Applies the combined change of any number of reviews of one book with a single
+     * update, then rewrites the book's stored rating from the new totals.
+     */
+    public void apply(String bookId, RatingDelta delta) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!increment(bookId, delta, now)) {
+            if (delta.getCount() <= 0) {
+                // Nothing to subtract from yet; the reconciliation will rebuild the row.
+                return;
+            }
+            // First reviews of the book: take the book row lock so two first writers
+            // cannot both insert, then try the update again before inserting.
+            entityManager.find(Book.class, bookId, LockModeType.PESSIMISTIC_WRITE);
+            if (!increment(bookId, delta, now)) {
+                BookRatingAggregate aggregate = new BookRatingAggregate();
+                aggregate.setBookId(bookId);
+                aggregate.setReviewCount(delta.getCount());
+                aggregate.setRatingSum(delta.getSum());
+                for (int stars = MIN_STARS; stars <= MAX_STARS; stars++) {
+                    aggregate.setStars(stars, delta.getStars(stars));
+                }
+                aggregate.setUpdatedAt(now);
+                entityManager.persist(aggregate);
+                entityManager.flush();
+            }
+        }
+
+        Object[] totals = aggregateRepository.findTotals(bookId).get(0);
+        bookRepository.updateRating(bookId, average(((Number) totals[0]).longValue(), ((Number) totals[1]).doubleValue()));
+        AfterCommit.run(() -> bookCache.invalidate(bookId));
+    }
+
+    public Map<String, Object> getBookRating(String bookId) {
+        BookRatingAggregate aggregate = aggregateRepository.findById(bookId).orElse(null);
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int stars = MAX_STARS; stars >= MIN_STARS; stars--) {
+            histogram.put(Integer.toString(stars), aggregate != null ? aggregate.getStars(stars) : 0L);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("bookId", bookId);
+        result.put("reviewCount", aggregate != null ? aggregate.getReviewCount() : 0L);
+        result.put("average", aggregate != null ? average(aggregate.getReviewCount(), aggregate.getRatingSum()) : null);
+        result.put("histogram", histogram);
+        return result;
+    }
+
+    public Map<String, Object> getLastRun() {
+        return lastRun;
+    }
+
+    /**
+     * Fills the aggregates on the first start after they were introduced, when the
+     * reviews table already has rows but the aggregate table is still empty.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (aggregateRepository.count() == 0 && reviewRepository.count() > 0) {
+            reconcile();
+        }
+    }
+
+    @Scheduled(cron = "${digilibz.ratings.reconcile-cron:0 30 3 * * *}")
+    public void reconcileScheduled() {
+        reconcile();
+    }
+
+    /**
+     * Recomputes every aggregate from the reviews in one grouped scan and corrects the
+     * rows and book ratings that differ. Returns empty when another node holds the lease.
+     * The scan takes no locks; only the books that drifted are locked, recounted and
+     * written, {@code digilibz.ratings.reconcile-chunk-size} books per transaction.
+     */
+    public Optional<Map<String, Object>> reconcile() {
+        if (!leaseService.tryAcquire(LEASE_NAME, leaseDuration)) {
+            return Optional.empty();
+        }
+        try {
+            long start = System.nanoTime();
+            int[] counts = reconcileDrifted();
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("books", counts == null ? 0 : counts[0]);
+            report.put("corrections", counts == null ? 0 : counts[1]);
+            report.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+            report.put("finishedAt", LocalDateTime.now());
+            lastRun = report;
+            log.info("Rating aggregates reconciled: {} books, {} corrections", report.get("books"), report.get("corrections"));
+            return Optional.of(report);
+        } finally {
+            leaseService.release(LEASE_NAME);
+        }
+    }
+
+    private int[] reconcileDrifted() {
+        Map<String, BookRatingAggregate> stored = new HashMap<>();
+        aggregateRepository.findAll().forEach(aggregate -> stored.put(aggregate.getBookId(), aggregate));
+
+        int books = 0;
+        Set<String> drifted = new TreeSet<>();
+        for (Object[] row : reviewRepository.aggregateByBook()) {
+            books++;
+            String bookId = (String) row[0];
+            if (drifted(stored.remove(bookId), row)) {
+                drifted.add(bookId);
+            }
+        }
+        // Aggregates left over belong to books whose reviews are all gone.
+        drifted.addAll(stored.keySet());
+
+        // Sorted, so chunks lock books in the same order as authorRemoved.
+        List<String> bookIds = new ArrayList<>(drifted);
+        int corrections = 0;
+        for (int from = 0; from < bookIds.size(); from += reconcileChunkSize) {
+            List<String> chunk = bookIds.subList(from, Math.min(from + reconcileChunkSize, bookIds.size()));
+            Integer corrected = transactionTemplate.execute(status -> correct(chunk));
+            corrections += corrected == null ? 0 : corrected;
+        }
+        if (corrections > 0) {
+            statisticAggregator.markStale();
+        }
+        return new int[]{books, corrections};
+    }
+
+    /**
+     * Recounts one chunk of books under lock. The aggregate rows, or for books without
+     * one the book rows that guard the first insert in {@link #apply}, are locked before
+     * the reviews are read, so a concurrent review either is counted here or waits and
+     * lands its increment on top of the recount.
+     */
+    private int correct(List<String> bookIds) {
+        Map<String, BookRatingAggregate> locked = new HashMap<>();
+        lockAggregates(bookIds).forEach(aggregate -> locked.put(aggregate.getBookId(), aggregate));
+        List<String> missing = bookIds.stream().filter(bookId -> !locked.containsKey(bookId)).toList();
+        if (!missing.isEmpty()) {
+            entityManager.createQuery("SELECT b FROM Book b WHERE b.id IN :bookIds ORDER BY b.id", Book.class)
+                    .setParameter("bookIds", missing)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getResultList();
+            // A first review may have inserted the row since the scan.
+            lockAggregates(missing).forEach(aggregate -> locked.put(aggregate.getBookId(), aggregate));
+        }
+
+        Map<String, Object[]> counted = new HashMap<>();
+        reviewRepository.aggregateByBookIds(bookIds).forEach(row -> counted.put((String) row[0], row));
+
+        LocalDateTime now = LocalDateTime.now();
+        int corrections = 0;
+        for (String bookId : bookIds) {
+            BookRatingAggregate aggregate = locked.get(bookId);
+            Object[] row = counted.get(bookId);
+            if (row == null) {
+                if (aggregate != null) {
+                    entityManager.remove(aggregate);
+                    bookRepository.updateRating(bookId, null);
+                    AfterCommit.run(() -> bookCache.invalidate(bookId));
+                    corrections++;
+                }
+                continue;
+            }
+            if (!drifted(aggregate, row)) {
+                continue;
+            }
+
+            long reviewCount = ((Number) row[1]).longValue();
+            double ratingSum = ((Number) row[2]).doubleValue();
+            boolean created = aggregate == null;
+            if (created) {
+                aggregate = new BookRatingAggregate();
+                aggregate.setBookId(bookId);
+            }
+            aggregate.setReviewCount(reviewCount);
+            aggregate.setRatingSum(ratingSum);
+            for (int stars = MIN_STARS; stars <= MAX_STARS; stars++) {
+                aggregate.setStars(stars, ((Number) row[2 + stars]).longValue());
+            }
+            aggregate.setUpdatedAt(now);
+            if (created) {
+                entityManager.persist(aggregate);
+            }
+            bookRepository.updateRating(bookId, average(reviewCount, ratingSum));
+            AfterCommit.run(() -> bookCache.invalidate(bookId));
+            corrections++;
+        }
+        return corrections;
+    }
+
+    private List<BookRatingAggregate> lockAggregates(Collection<String> bookIds) {
+        return entityManager.createQuery(
+                        "SELECT a FROM BookRatingAggregate a WHERE a.bookId IN :bookIds ORDER BY a.bookId",
+                        BookRatingAggregate.class)
+                .setParameter("bookIds", bookIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+    }
+
+    // Compares a stored aggregate with a row of ReviewRepository.aggregateByBook.
+    private static boolean drifted(BookRatingAggregate aggregate, Object[] row) {
+        boolean drifted = aggregate == null
+                || aggregate.getReviewCount() != ((Number) row[1]).longValue()
+                || Math.abs(aggregate.getRatingSum() - ((Number) row[2]).doubleValue()) > 1e-6;
+        for (int stars = MIN_STARS; !drifted && stars <= MAX_STARS; stars++) {
+            drifted = aggregate.getStars(stars) != ((Number) row[2 + stars]).longValue();
+        }
+        return drifted;
+    }
+
+    private boolean increment(String bookId, RatingDelta delta, LocalDateTime now) {
+        return aggregateRepository.addDelta(bookId, delta.getCount(), delta.getSum(),
+                delta.getStars(1), delta.getStars(2), delta.getStars(3),
+                delta.getStars(4), delta.getStars(5), now) > 0;
+    }
+
+    // Same rounding as the CASE buckets in ReviewRepository.aggregateByBook.
+    static int stars(double rating) {
+        return (int) Math.max(MIN_STARS, Math.min(MAX_STARS, Math.round(rating)));
+    }
+
+    private static BigDecimal average(long reviewCount, double ratingSum) {
+        if (reviewCount == 0) {
+            return null;
+        }
+        return BigDecimal.valueOf(ratingSum).divide(BigDecimal.valueOf(reviewCount), 2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,38 @@
+package com.digilibz.service.rating;
+
+/**
+ * Change to one book's rating aggregate, collected from any number of added or
+ * replaced reviews and applied with a single update.
+ */
+public class RatingDelta {
+
+    private long count;
+    private double sum;
+    private final long[] stars = new long[RatingAggregateService.MAX_STARS + 1];
+
+    public RatingDelta add(double rating) {
+        count++;
+        sum += rating;
+        stars[RatingAggregateService.stars(rating)]++;
+        return this;
+    }
+
+    public RatingDelta remove(double rating) {
+        count--;
+        sum -= rating;
+        stars[RatingAggregateService.stars(rating)]--;
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public long getStars(int stars) {
+        return this.stars[stars];
+    }
+}
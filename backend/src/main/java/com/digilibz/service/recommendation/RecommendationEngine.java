@@ -0,0 +1,237 @@
+package com.digilibz.service.recommendation;
+
+import com.digilibz.models.Transaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Precomputes book recommendations so the request path only reads in-memory lists.
+ * A periodic rebuild derives item-to-item cosine similarity from books borrowed by
+ * the same user, blends it with a Bayesian average of review ratings, and keeps a
+ * global top-N plus a personalised top-N for every user with borrow history.
+ */
+@Component
+public class RecommendationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(RecommendationEngine.class);
+
+    private static final int NEIGHBOURS_PER_BOOK = 20;
+    private static final int MAX_BASKET_SIZE = 50;
+    private static final double RATING_PRIOR_WEIGHT = 5.0;
+    private static final double POPULARITY_WEIGHT = 0.6;
+    private static final double RATING_WEIGHT = 0.4;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final int topN;
+    private final TransactionTemplate readOnlyTransaction;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public RecommendationEngine(
+            PlatformTransactionManager transactionManager,
+            @Value("${digilibz.recommendations.top-n:50}") int topN
+    ) {
+        this.topN = topN;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    // Runs through a template rather than @Transactional so the startup call, which
+    // does not go through the proxy, gets the same read-only transaction.
+    @Scheduled(fixedDelayString = "${digilibz.recommendations.refresh-interval:PT15M}",
+            initialDelayString = "${digilibz.recommendations.refresh-interval:PT15M}")
+    public void rebuild() {
+        readOnlyTransaction.executeWithoutResult(status -> rebuildSnapshot());
+    }
+
+    private void rebuildSnapshot() {
+        long start = System.currentTimeMillis();
+
+        List<String> bookIds = entityManager.createQuery("SELECT b.id FROM Book b", String.class).getResultList();
+
+        Map<String, Set<String>> baskets = new HashMap<>();
+        List<Object[]> borrows = entityManager.createQuery(
+                        "SELECT t.user.id, i.book.id FROM TransactionItem i JOIN i.transaction t WHERE t.status <> :declined",
+                        Object[].class)
+                .setParameter("declined", Transaction.TransactionStatus.DECLINED)
+                .getResultList();
+        for (Object[] row : borrows) {
+            Set<String> basket = baskets.computeIfAbsent((String) row[0], key -> new LinkedHashSet<>());
+            if (basket.size() < MAX_BASKET_SIZE) {
+                basket.add((String) row[1]);
+            }
+        }
+
+        RatingScores ratingScores = ratingScores();
+
+        Map<String, Integer> borrowCounts = new HashMap<>();
+        Map<String, Map<String, Integer>> coBorrows = new HashMap<>();
+        for (Set<String> basket : baskets.values()) {
+            String[] items = basket.toArray(new String[0]);
+            for (int i = 0; i < items.length; i++) {
+                borrowCounts.merge(items[i], 1, Integer::sum);
+                for (int j = i + 1; j < items.length; j++) {
+                    coBorrows.computeIfAbsent(items[i], key -> new HashMap<>()).merge(items[j], 1, Integer::sum);
+                    coBorrows.computeIfAbsent(items[j], key -> new HashMap<>()).merge(items[i], 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<String, List<Scored>> neighbours = new HashMap<>();
+        for (Map.Entry<String, Map<String, Integer>> entry : coBorrows.entrySet()) {
+            int countA = borrowCounts.get(entry.getKey());
+            List<Scored> similar = new ArrayList<>();
+            for (Map.Entry<String, Integer> pair : entry.getValue().entrySet()) {
+                double cosine = pair.getValue() / Math.sqrt((double) countA * borrowCounts.get(pair.getKey()));
+                double rating = ratingScores.of(pair.getKey());
+                similar.add(new Scored(pair.getKey(), cosine * (0.8 + 0.2 * rating)));
+            }
+            neighbours.put(entry.getKey(), top(similar, NEIGHBOURS_PER_BOOK));
+        }
+
+        int maxBorrows = borrowCounts.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        List<Scored> global = new ArrayList<>(bookIds.size());
+        for (String bookId : bookIds) {
+            double popularity = maxBorrows == 0 ? 0.0
+                    : Math.log1p(borrowCounts.getOrDefault(bookId, 0)) / Math.log1p(maxBorrows);
+            global.add(new Scored(bookId, POPULARITY_WEIGHT * popularity
+                    + RATING_WEIGHT * ratingScores.of(bookId)));
+        }
+        List<String> globalTop = ids(top(global, topN));
+
+        Map<String, List<String>> perUser = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : baskets.entrySet()) {
+            Map<String, Double> candidates = new HashMap<>();
+            for (String borrowed : entry.getValue()) {
+                for (Scored neighbour : neighbours.getOrDefault(borrowed, List.of())) {
+                    if (!entry.getValue().contains(neighbour.id())) {
+                        candidates.merge(neighbour.id(), neighbour.score(), Double::sum);
+                    }
+                }
+            }
+            List<Scored> scored = new ArrayList<>(candidates.size());
+            candidates.forEach((id, score) -> scored.add(new Scored(id, score)));
+            perUser.put(entry.getKey(), List.copyOf(ids(top(scored, topN))));
+        }
+
+        Map<String, Set<String>> history = new HashMap<>();
+        baskets.forEach((userId, basket) -> history.put(userId, Set.copyOf(basket)));
+
+        snapshot = new Snapshot(List.copyOf(bookIds), globalTop, perUser, history);
+        log.info("Recommendations rebuilt for {} books and {} users in {} ms",
+                bookIds.size(), perUser.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Returns up to {@code max} book ids for the user, topping up personalised
+     * results with the global list and skipping books the user already borrowed.
+     */
+    public List<String> recommend(String userId, int max) {
+        Snapshot current = snapshot;
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        Set<String> borrowed = userId == null ? Set.of() : current.history().getOrDefault(userId, Set.of());
+
+        if (userId != null) {
+            for (String id : current.perUser().getOrDefault(userId, List.of())) {
+                if (result.size() >= max) {
+                    break;
+                }
+                result.add(id);
+            }
+        }
+        for (String id : current.global()) {
+            if (result.size() >= max) {
+                break;
+            }
+            if (!borrowed.contains(id)) {
+                result.add(id);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Uniform sample of {@code max} cached book ids using reservoir sampling.
+     */
+    public List<String> sample(int max) {
+        List<String> ids = snapshot.bookIds();
+        List<String> reservoir = new ArrayList<>(Math.min(max, ids.size()));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < ids.size(); i++) {
+            if (i < max) {
+                reservoir.add(ids.get(i));
+            } else {
+                int j = random.nextInt(i + 1);
+                if (j < max) {
+                    reservoir.set(j, ids.get(i));
+                }
+            }
+        }
+        Collections.shuffle(reservoir, random);
+        return reservoir;
+    }
+
+    private RatingScores ratingScores() {
+        List<Object[]> rows = entityManager.createQuery(
+                        "SELECT r.book.id, SUM(r.rating), COUNT(r) FROM Review r GROUP BY r.book.id", Object[].class)
+                .getResultList();
+
+        double totalSum = 0;
+        long totalCount = 0;
+        for (Object[] row : rows) {
+            totalSum += ((Number) row[1]).doubleValue();
+            totalCount += ((Number) row[2]).longValue();
+        }
+        double globalMean = totalCount == 0 ? 0.0 : totalSum / totalCount;
+
+        Map<String, Double> scores = new HashMap<>();
+        for (Object[] row : rows) {
+            double sum = ((Number) row[1]).doubleValue();
+            long count = ((Number) row[2]).longValue();
+            double bayesian = (RATING_PRIOR_WEIGHT * globalMean + sum) / (RATING_PRIOR_WEIGHT + count);
+            scores.put((String) row[0], bayesian / 5.0);
+        }
+        return new RatingScores(scores, globalMean / 5.0);
+    }
+
+    private static List<Scored> top(List<Scored> scored, int limit) {
+        scored.sort(Comparator.comparingDouble(Scored::score).reversed().thenComparing(Scored::id));
+        return scored.size() > limit ? new ArrayList<>(scored.subList(0, limit)) : scored;
+    }
+
+    private static List<String> ids(List<Scored> scored) {
+        return scored.stream().map(Scored::id).toList();
+    }
+
+    private record Scored(String id, double score) {
+    }
+
+    private record RatingScores(Map<String, Double> scores, double unrated) {
+        double of(String bookId) {
+            return scores.getOrDefault(bookId, unrated);
+        }
+    }
+
+    private record Snapshot(List<String> bookIds, List<String> global,
+                            Map<String, List<String>> perUser, Map<String, Set<String>> history) {
+        static final Snapshot EMPTY = new Snapshot(List.of(), List.of(), Map.of(), Map.of());
+    }
+}
@@ -0,0 +1,82 @@
+package com.digilibz.service.scheduling;
+
+import com.digilibz.models.SchedulerLease;
+import com.digilibz.repository.SchedulerLeaseRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Database-backed leases so a scheduled job runs on one node at a time. A lease is a
+ * row per job name; claiming it is a conditional UPDATE that only succeeds when the
+ * previous holder's lease has run out, so a crashed node blocks the job for at most
+ * one lease duration.
+ */
+@Service
+public class SchedulerLeaseService {
+
+    private final SchedulerLeaseRepository leaseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public SchedulerLeaseService(SchedulerLeaseRepository leaseRepository, TransactionTemplate transactionTemplate) {
+        this.leaseRepository = leaseRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Claims or renews the named lease for this node. Returns false while another
+     * node holds it.
+     */
+    public boolean tryAcquire(String name, Duration duration) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(duration);
+        Integer claimed = transactionTemplate.execute(status -> leaseRepository.claim(name, owner, now, until));
+        if (claimed != null && claimed > 0) {
+            return true;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (leaseRepository.existsById(name)) {
+                    throw new LeaseHeldException();
+                }
+                SchedulerLease lease = new SchedulerLease();
+                lease.setName(name);
+                lease.setOwner(owner);
+                lease.setLeaseUntil(until);
+                // persist, not save: merging an assigned id would overwrite a lease created concurrently.
+                entityManager.persist(lease);
+                entityManager.flush();
+            });
+            return true;
+        } catch (LeaseHeldException | DataIntegrityViolationException | PersistenceException e) {
+            // Someone else holds the lease, or created the row first.
+            return false;
+        }
+    }
+
+    public void release(String name) {
+        transactionTemplate.executeWithoutResult(status -> leaseRepository.release(name, owner, LocalDateTime.now()));
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    private static class LeaseHeldException extends RuntimeException {
+        LeaseHeldException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.digilibz.service.search;
+
+import com.digilibz.models.Book;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory facet counts for the book browser. Every book gets a dense ordinal and
+ * every facet value keeps a bitset of the ordinals that carry it, so the count for a
+ * value under any combination of filters is the cardinality of a few ANDed bitsets.
+ * Counts are disjunctive: the counts of a facet ignore that facet's own filter, so
+ * the client can show the alternatives to the value it selected.
+ */
+@Component
+public class BookFacetIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BookFacetIndex.class);
+
+    public enum Facet {
+        CATEGORY("category"), YEAR("year"), LANGUAGE("language"), CAN_BORROW("canBorrow");
+
+        private final String key;
+
+        Facet(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static final Facet[] FACETS = Facet.values();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String[]> valuesByOrdinal = new ArrayList<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final EnumMap<Facet, Map<String, BitSet>> postings = new EnumMap<>(Facet.class);
+    private volatile boolean ready;
+
+    public BookFacetIndex() {
+        for (Facet facet : FACETS) {
+            postings.put(facet, new HashMap<>());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        long start = System.currentTimeMillis();
+        List<Object[]> rows = entityManager.createQuery(
+                "SELECT b.id, b.category, b.year, b.language, b.canBorrow FROM Book b", Object[].class).getResultList();
+        lock.writeLock().lock();
+        try {
+            clearLocked();
+            for (Object[] row : rows) {
+                addLocked((String) row[0], values(row[1], row[2], row[3], row[4]));
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Book facet index built with {} documents in {} ms", rows.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(book.getId());
+            addLocked(book.getId(), values(book));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Value counts per facet for the books that pass the given filters, most frequent
+     * value first. {@code candidateIds}, when not null, restricts the counts to those
+     * books, e.g. the hits of a text search.
+     */
+    public Map<String, Map<String, Integer>> counts(Map<Facet, String> filters, Collection<String> candidateIds) {
+        lock.readLock().lock();
+        try {
+            BitSet candidates = null;
+            if (candidateIds != null) {
+                candidates = new BitSet();
+                for (String id : candidateIds) {
+                    Integer ordinal = ordinals.get(id);
+                    if (ordinal != null) {
+                        candidates.set(ordinal);
+                    }
+                }
+            }
+
+            Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
+            for (Facet facet : FACETS) {
+                BitSet base = matching(filters, facet, candidates);
+                List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+                for (Map.Entry<String, BitSet> value : postings.get(facet).entrySet()) {
+                    int count;
+                    if (base == null) {
+                        count = value.getValue().cardinality();
+                    } else {
+                        BitSet intersection = (BitSet) value.getValue().clone();
+                        intersection.and(base);
+                        count = intersection.cardinality();
+                    }
+                    if (count > 0) {
+                        counts.add(Map.entry(value.getKey(), count));
+                    }
+                }
+                counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+                Map<String, Integer> values = new LinkedHashMap<>();
+                counts.forEach(entry -> values.put(entry.getKey(), entry.getValue()));
+                result.put(facet.getKey(), values);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether the book carries every non-null filter value; false for unknown books.
+     */
+    public boolean matches(String bookId, Map<Facet, String> filters) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(bookId);
+            if (ordinal == null) {
+                return false;
+            }
+            String[] values = valuesByOrdinal.get(ordinal);
+            for (Map.Entry<Facet, String> filter : filters.entrySet()) {
+                if (filter.getValue() != null && !filter.getValue().equals(values[filter.getKey().ordinal()])) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Intersection of every filter except the one on the facet being counted; null
+    // when nothing restricts the set, so the caller can use the posting sizes as is.
+    private BitSet matching(Map<Facet, String> filters, Facet counted, BitSet candidates) {
+        BitSet base = candidates == null ? null : (BitSet) candidates.clone();
+        for (Map.Entry<Facet, String> filter : filters.entrySet()) {
+            if (filter.getKey() == counted || filter.getValue() == null) {
+                continue;
+            }
+            BitSet bits = postings.get(filter.getKey()).get(filter.getValue());
+            if (bits == null) {
+                return new BitSet();
+            }
+            if (base == null) {
+                base = (BitSet) bits.clone();
+            } else {
+                base.and(bits);
+            }
+        }
+        return base;
+    }
+
+    private void addLocked(String id, String[] values) {
+        int ordinal;
+        if (freeOrdinals.isEmpty()) {
+            ordinal = valuesByOrdinal.size();
+            valuesByOrdinal.add(values);
+        } else {
+            ordinal = freeOrdinals.pop();
+            valuesByOrdinal.set(ordinal, values);
+        }
+        ordinals.put(id, ordinal);
+        for (Facet facet : FACETS) {
+            String value = values[facet.ordinal()];
+            if (value != null) {
+                postings.get(facet).computeIfAbsent(value, key -> new BitSet()).set(ordinal);
+            }
+        }
+    }
+
+    private void removeLocked(String id) {
+        Integer ordinal = ordinals.remove(id);
+        if (ordinal == null) {
+            return;
+        }
+        String[] values = valuesByOrdinal.set(ordinal, null);
+        freeOrdinals.push(ordinal);
+        for (Facet facet : FACETS) {
+            String value = values[facet.ordinal()];
+            if (value == null) {
+                continue;
+            }
+            Map<String, BitSet> facetPostings = postings.get(facet);
+            BitSet bits = facetPostings.get(value);
+            bits.clear(ordinal);
+            if (bits.isEmpty()) {
+                facetPostings.remove(value);
+            }
+        }
+    }
+
+    private void clearLocked() {
+        ordinals.clear();
+        valuesByOrdinal.clear();
+        freeOrdinals.clear();
+        postings.values().forEach(Map::clear);
+    }
+
+    private static String[] values(Book book) {
+        return values(book.getCategory(), book.getYear(), book.getLanguage(), book.isCanBorrow());
+    }
+
+    private static String[] values(Object category, Object year, Object language, Object canBorrow) {
+        String[] values = new String[FACETS.length];
+        values[Facet.CATEGORY.ordinal()] = blankToNull(category);
+        values[Facet.YEAR.ordinal()] = year == null ? null : year.toString();
+        values[Facet.LANGUAGE.ordinal()] = blankToNull(language);
+        values[Facet.CAN_BORROW.ordinal()] = canBorrow == null ? null : canBorrow.toString();
+        return values;
+    }
+
+    private static String blankToNull(Object value) {
+        return value == null || value.toString().isEmpty() ? null : value.toString();
+    }
+}
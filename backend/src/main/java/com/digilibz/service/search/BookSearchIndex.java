@@ -0,0 +1,329 @@
+package com.digilibz.service.search;
+
+import com.digilibz.models.Book;
+import com.digilibz.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * In-memory inverted index over the book catalog used by the search box.
+ * Title, author, category, description and ISBN are tokenized with per-field
+ * weights and ranked with BM25. Every query term must match, either exactly,
+ * as a prefix of an indexed term, or within one edit for terms of four or more
+ * characters.
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final Comparator<Hit> RANKING = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparing(Hit::id);
+
+    private static final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_WEIGHT = 0.8;
+    private static final double FUZZY_WEIGHT = 0.6;
+    private static final int MAX_EXPANSIONS = 64;
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int AUTHOR_WEIGHT = 2;
+    private static final int ISBN_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 1;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final BookRepository bookRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Map<String, Integer>> postings = new TreeMap<>();
+    private final Map<String, Map<String, Integer>> documents = new HashMap<>();
+    private final Map<String, Integer> documentLengths = new HashMap<>();
+    private long totalLength;
+    private volatile boolean ready;
+
+    public BookSearchIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        long start = System.currentTimeMillis();
+        rebuild(bookRepository.findAll());
+        log.info("Book search index built with {} documents in {} ms", size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void rebuild(Collection<Book> books) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            documentLengths.clear();
+            totalLength = 0;
+            books.forEach(this::addLocked);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Book book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(book.getId());
+            addLocked(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String bookId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of matching books, best match first.
+     */
+    public List<String> search(String query, int limit) {
+        return search(query, limit, null);
+    }
+
+    /**
+     * Returns the ids of matching books that pass {@code filter}, best match first. The
+     * filter runs before the limit, so a narrow filter still gets up to {@code limit} hits.
+     */
+    public List<String> search(String query, int limit, Predicate<String> filter) {
+        return searchAfter(query, limit, filter, null).stream().map(Hit::id).toList();
+    }
+
+    /**
+     * Matching books that pass {@code filter} and rank strictly after {@code after}, best
+     * match first with the id as tie-breaker. Paging with the last hit of each page as
+     * {@code after} walks the whole ranking without a cap; a book whose score changes
+     * between pages may move across the boundary, as with any keyset over live data.
+     */
+    public List<Hit> searchAfter(String query, int limit, Predicate<String> filter, Hit after) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / documentCount;
+
+            Map<String, Double> scores = null;
+            for (String queryTerm : new LinkedHashSet<>(queryTerms)) {
+                Map<String, Double> termScores = scoreTerm(queryTerm, documentCount, averageLength);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    Map<String, Double> intersection = new HashMap<>();
+                    for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                        Double termScore = termScores.get(entry.getKey());
+                        if (termScore != null) {
+                            intersection.put(entry.getKey(), entry.getValue() + termScore);
+                        }
+                    }
+                    scores = intersection;
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            return scores.entrySet().stream()
+                    .map(entry -> new Hit(entry.getKey(), entry.getValue()))
+                    .filter(hit -> after == null || RANKING.compare(hit, after) > 0)
+                    .filter(hit -> filter == null || filter.test(hit.id()))
+                    .sorted(RANKING)
+                    .limit(limit)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Double> scoreTerm(String queryTerm, int documentCount, double averageLength) {
+        Map<String, Double> scores = new HashMap<>();
+
+        Map<String, Integer> exact = postings.get(queryTerm);
+        if (exact != null) {
+            accumulate(scores, exact, 1.0, documentCount, averageLength);
+        }
+
+        int expansions = 0;
+        for (Map.Entry<String, Map<String, Integer>> entry
+                : postings.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+            if (expansions++ >= MAX_EXPANSIONS) {
+                break;
+            }
+            accumulate(scores, entry.getValue(), PREFIX_WEIGHT, documentCount, averageLength);
+        }
+
+        if (scores.isEmpty() && queryTerm.length() >= MIN_FUZZY_LENGTH) {
+            // Typos rarely hit the first character, which keeps the candidate scan to one slice of the dictionary.
+            String first = queryTerm.substring(0, 1);
+            expansions = 0;
+            for (Map.Entry<String, Map<String, Integer>> entry
+                    : postings.subMap(first, true, first + Character.MAX_VALUE, false).entrySet()) {
+                if (expansions >= MAX_EXPANSIONS) {
+                    break;
+                }
+                if (withinOneEdit(queryTerm, entry.getKey())) {
+                    accumulate(scores, entry.getValue(), FUZZY_WEIGHT, documentCount, averageLength);
+                    expansions++;
+                }
+            }
+        }
+        return scores;
+    }
+
+    private void accumulate(Map<String, Double> scores, Map<String, Integer> posting, double weight,
+                            int documentCount, double averageLength) {
+        int documentFrequency = posting.size();
+        double idf = Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        for (Map.Entry<String, Integer> entry : posting.entrySet()) {
+            int termFrequency = entry.getValue();
+            int length = documentLengths.get(entry.getKey());
+            double norm = termFrequency + K1 * (1 - B + B * length / averageLength);
+            double score = weight * idf * (termFrequency * (K1 + 1)) / norm;
+            scores.merge(entry.getKey(), score, Math::max);
+        }
+    }
+
+    private void addLocked(Book book) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        addField(termFrequencies, book.getTitle(), TITLE_WEIGHT);
+        addField(termFrequencies, book.getAuthor(), AUTHOR_WEIGHT);
+        addField(termFrequencies, book.getCategory(), CATEGORY_WEIGHT);
+        addField(termFrequencies, book.getDescription(), DESCRIPTION_WEIGHT);
+        addField(termFrequencies, book.getIsbn(), ISBN_WEIGHT);
+        if (book.getIsbn() != null) {
+            String digits = book.getIsbn().replaceAll("[^0-9Xx]", "").toLowerCase(Locale.ROOT);
+            if (!digits.isEmpty()) {
+                termFrequencies.merge(digits, ISBN_WEIGHT, Integer::sum);
+            }
+        }
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new HashMap<>()).put(book.getId(), entry.getValue());
+            length += entry.getValue();
+        }
+        documents.put(book.getId(), termFrequencies);
+        documentLengths.put(book.getId(), length);
+        totalLength += length;
+    }
+
+    private void removeLocked(String bookId) {
+        Map<String, Integer> termFrequencies = documents.remove(bookId);
+        if (termFrequencies == null) {
+            return;
+        }
+        totalLength -= documentLengths.remove(bookId);
+        for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+            Map<String, Integer> posting = postings.get(entry.getKey());
+            if (posting != null) {
+                posting.remove(bookId);
+                if (posting.isEmpty()) {
+                    postings.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    private static void addField(Map<String, Integer> termFrequencies, String value, int weight) {
+        for (String term : tokenize(value)) {
+            termFrequencies.merge(term, weight, Integer::sum);
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    static boolean withinOneEdit(String a, String b) {
+        int lengthDifference = a.length() - b.length();
+        if (Math.abs(lengthDifference) > 1) {
+            return false;
+        }
+        int i = 0;
+        int j = 0;
+        boolean edited = false;
+        while (i < a.length() && j < b.length()) {
+            if (a.charAt(i) == b.charAt(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            if (edited) {
+                return false;
+            }
+            edited = true;
+            if (lengthDifference > 0) {
+                i++;
+            } else if (lengthDifference < 0) {
+                j++;
+            } else if (i + 1 < a.length() && j + 1 < b.length()
+                    && a.charAt(i) == b.charAt(j + 1) && a.charAt(i + 1) == b.charAt(j)) {
+                // Adjacent transposition counts as a single edit.
+                i += 2;
+                j += 2;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return !edited || (i == a.length() && j == b.length());
+    }
+
+    public record Hit(String id, double score) {
+    }
+}
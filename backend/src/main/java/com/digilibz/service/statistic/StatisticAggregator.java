@@ -0,0 +1,374 @@
+package com.digilibz.service.statistic;
+
+import com.digilibz.common.AfterCommit;
+import com.digilibz.dto.review.ReviewDTO;
+import com.digilibz.models.User;
+import com.digilibz.repository.*;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Running dashboard counters. Services report creates and deletes here once their
+ * transaction commits; a scheduled reconciliation recounts from the database to
+ * absorb anything the hooks cannot see. Deletes that cascade in the database count
+ * the cascaded rows first and subtract them, so they do not force a recount.
+ * <p>
+ * Only one reconciliation runs at a time. Changes reported while it is counting are
+ * recorded on the side and added to the fresh totals, so they are not overwritten.
+ */
+@Component
+public class StatisticAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(StatisticAggregator.class);
+
+    public static final int RECENT_REVIEW_CAPACITY = 20;
+
+    private enum Counter {
+        USERS, BOOKS, TRANSACTIONS, NOTIFICATIONS
+    }
+
+    /**
+     * Rows the database deletes together with a user or a book through ON DELETE
+     * CASCADE, counted before the delete.
+     */
+    public record CascadedRows(long transactions, long notifications, long reviews, double ratingSum,
+                               Collection<String> reviewIds) {
+    }
+
+    private final UserRepository userRepository;
+    private final BookRepository bookRepository;
+    private final TransactionRepository transactionRepository;
+    private final NotificationRepository notificationRepository;
+    private final ArchivedNotificationRepository archivedNotificationRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ReentrantLock reconcileLock = new ReentrantLock();
+    private final AtomicBoolean stale = new AtomicBoolean(true);
+
+    // Guarded by this.
+    private final long[] counts = new long[Counter.values().length];
+    private final Deque<ReviewDTO> recentReviews = new ArrayDeque<>();
+    private double ratingSum;
+    private long ratingCount;
+    private Changes pending;
+
+    private volatile LocalDateTime reconciledAt;
+
+    public StatisticAggregator(
+            UserRepository userRepository,
+            BookRepository bookRepository,
+            TransactionRepository transactionRepository,
+            NotificationRepository notificationRepository,
+            ArchivedNotificationRepository archivedNotificationRepository
+    ) {
+        this.userRepository = userRepository;
+        this.bookRepository = bookRepository;
+        this.transactionRepository = transactionRepository;
+        this.notificationRepository = notificationRepository;
+        this.archivedNotificationRepository = archivedNotificationRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        reconcile();
+    }
+
+    @Scheduled(fixedDelayString = "${digilibz.statistics.reconcile-interval:PT5M}",
+            initialDelayString = "${digilibz.statistics.reconcile-interval:PT5M}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            reconcileLocked();
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    private void reconcileLocked() {
+        stale.set(false);
+        synchronized (this) {
+            pending = new Changes();
+        }
+        try {
+            long users = userRepository.countByRole(User.Role.USER);
+            long books = bookRepository.count();
+            long transactions = transactionRepository.count();
+            // Archiving moves rows between tables, so the total covers both.
+            long notifications = notificationRepository.count() + archivedNotificationRepository.count();
+
+            // One row per rated book instead of a scan over every review.
+            Object[] rating = entityManager.createQuery(
+                    "SELECT COALESCE(SUM(a.ratingSum), 0), COALESCE(SUM(a.reviewCount), 0) FROM BookRatingAggregate a",
+                    Object[].class).getSingleResult();
+            List<ReviewDTO> latest = entityManager.createQuery(
+                            "SELECT new com.digilibz.dto.review.ReviewDTO(r.id, b.title, a.name, r.date, r.rating, r.content) " +
+                                    "FROM Review r JOIN r.book b JOIN r.author a ORDER BY r.date DESC, r.id DESC",
+                            ReviewDTO.class)
+                    .setMaxResults(RECENT_REVIEW_CAPACITY)
+                    .getResultList();
+
+            synchronized (this) {
+                counts[Counter.USERS.ordinal()] = users + pending.counts[Counter.USERS.ordinal()];
+                counts[Counter.BOOKS.ordinal()] = books + pending.counts[Counter.BOOKS.ordinal()];
+                counts[Counter.TRANSACTIONS.ordinal()] = transactions + pending.counts[Counter.TRANSACTIONS.ordinal()];
+                counts[Counter.NOTIFICATIONS.ordinal()] = notifications + pending.counts[Counter.NOTIFICATIONS.ordinal()];
+                ratingSum = ((Number) rating[0]).doubleValue() + pending.ratingSum;
+                ratingCount = ((Number) rating[1]).longValue() + pending.ratingCount;
+
+                recentReviews.clear();
+                recentReviews.addAll(latest);
+                Set<String> listed = new HashSet<>();
+                latest.forEach(review -> listed.add(review.getId()));
+                for (ReviewDTO review : pending.addedReviews) {
+                    // A review replaced during the count may be listed with its old rating.
+                    if (!listed.add(review.getId())) {
+                        recentReviews.removeIf(listedReview -> listedReview.getId().equals(review.getId()));
+                    }
+                    pushRecent(review);
+                }
+                recentReviews.removeIf(review -> pending.removedReviewIds.contains(review.getId()));
+            }
+        } finally {
+            synchronized (this) {
+                pending = null;
+            }
+        }
+        reconciledAt = LocalDateTime.now();
+        log.debug("Statistics reconciled at {}", reconciledAt);
+    }
+
+    /**
+     * Marks the counters as untrustworthy, e.g. after a bulk import that bypasses the
+     * hooks. The next snapshot reconciles before answering.
+     */
+    public void markStale() {
+        AfterCommit.run(() -> stale.set(true));
+    }
+
+    /**
+     * Counts the rows that deleting the user will cascade to. Call before the delete.
+     */
+    public CascadedRows cascadedByUser(String userId) {
+        long transactions = entityManager.createQuery(
+                        "SELECT COUNT(t) FROM Transaction t WHERE t.user.id = :userId", Long.class)
+                .setParameter("userId", userId).getSingleResult();
+        long notifications = entityManager.createQuery(
+                        "SELECT COUNT(n) FROM Notification n WHERE n.user.id = :userId", Long.class)
+                .setParameter("userId", userId).getSingleResult()
+                + entityManager.createQuery(
+                        "SELECT COUNT(n) FROM ArchivedNotification n WHERE n.user.id = :userId", Long.class)
+                .setParameter("userId", userId).getSingleResult();
+        List<Object[]> reviews = entityManager.createQuery(
+                        "SELECT r.id, r.rating FROM Review r WHERE r.author.id = :userId", Object[].class)
+                .setParameter("userId", userId).getResultList();
+        return cascaded(transactions, notifications, reviews);
+    }
+
+    /**
+     * Counts the rows that deleting the book will cascade to. Call before the delete.
+     */
+    public CascadedRows cascadedByBook(String bookId) {
+        List<Object[]> reviews = entityManager.createQuery(
+                        "SELECT r.id, r.rating FROM Review r WHERE r.book.id = :bookId", Object[].class)
+                .setParameter("bookId", bookId).getResultList();
+        return cascaded(0, 0, reviews);
+    }
+
+    private static CascadedRows cascaded(long transactions, long notifications, List<Object[]> reviews) {
+        List<String> reviewIds = new ArrayList<>(reviews.size());
+        double ratingSum = 0;
+        for (Object[] review : reviews) {
+            reviewIds.add((String) review[0]);
+            ratingSum += ((Number) review[1]).doubleValue();
+        }
+        return new CascadedRows(transactions, notifications, reviews.size(), ratingSum, reviewIds);
+    }
+
+    public void userCreated(User.Role role) {
+        if (role == User.Role.USER) {
+            add(Counter.USERS, 1);
+        }
+    }
+
+    public void userDeleted(User.Role role, CascadedRows cascaded) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                if (role == User.Role.USER) {
+                    apply(Counter.USERS, -1);
+                }
+                removeCascaded(cascaded);
+            }
+        });
+    }
+
+    public void userRoleChanged(User.Role previousRole, User.Role newRole) {
+        if (previousRole == newRole) {
+            return;
+        }
+        if (previousRole == User.Role.USER) {
+            add(Counter.USERS, -1);
+        } else if (newRole == User.Role.USER) {
+            add(Counter.USERS, 1);
+        }
+    }
+
+    public void bookCreated() {
+        add(Counter.BOOKS, 1);
+    }
+
+    public void bookDeleted(CascadedRows cascaded) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                apply(Counter.BOOKS, -1);
+                removeCascaded(cascaded);
+            }
+        });
+    }
+
+    public void transactionCreated() {
+        add(Counter.TRANSACTIONS, 1);
+    }
+
+    public void notificationsCreated(int count) {
+        add(Counter.NOTIFICATIONS, count);
+    }
+
+    public void notificationDeleted() {
+        add(Counter.NOTIFICATIONS, -1);
+    }
+
+    public void reviewCreated(ReviewDTO review) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                ratingSum += review.getRating();
+                ratingCount++;
+                pushRecent(review);
+                if (pending != null) {
+                    pending.ratingSum += review.getRating();
+                    pending.ratingCount++;
+                    pending.addedReviews.add(review);
+                }
+            }
+        });
+    }
+
+    /**
+     * A user's second review of a book replaced their first: the old rating leaves the
+     * sum, the new one enters it, and the review moves to the top of the recent list.
+     */
+    public void reviewReplaced(ReviewDTO review, double previousRating) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                double delta = review.getRating() - previousRating;
+                ratingSum += delta;
+                recentReviews.removeIf(listed -> listed.getId().equals(review.getId()));
+                pushRecent(review);
+                if (pending != null) {
+                    pending.ratingSum += delta;
+                    pending.addedReviews.add(review);
+                }
+            }
+        });
+    }
+
+    public Snapshot snapshot(int maxRecentReviews) {
+        if (stale.get()) {
+            reconcileLock.lock();
+            try {
+                // Another caller may have reconciled while this one waited for the lock.
+                if (stale.get()) {
+                    reconcileLocked();
+                }
+            } finally {
+                reconcileLock.unlock();
+            }
+        }
+        synchronized (this) {
+            double average = ratingCount == 0 ? 0.0 : Math.round(ratingSum / ratingCount * 100.0) / 100.0;
+            List<ReviewDTO> recent = new ArrayList<>(Math.min(maxRecentReviews, recentReviews.size()));
+            for (ReviewDTO review : recentReviews) {
+                if (recent.size() >= maxRecentReviews) {
+                    break;
+                }
+                recent.add(review);
+            }
+            return new Snapshot(counts[Counter.BOOKS.ordinal()], counts[Counter.USERS.ordinal()],
+                    counts[Counter.TRANSACTIONS.ordinal()], counts[Counter.NOTIFICATIONS.ordinal()],
+                    ratingCount, average, List.copyOf(recent), LocalDateTime.now(), reconciledAt);
+        }
+    }
+
+    private void add(Counter counter, long delta) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                apply(counter, delta);
+            }
+        });
+    }
+
+    // Callers hold the monitor.
+    private void apply(Counter counter, long delta) {
+        counts[counter.ordinal()] += delta;
+        if (pending != null) {
+            pending.counts[counter.ordinal()] += delta;
+        }
+    }
+
+    // Callers hold the monitor.
+    private void removeCascaded(CascadedRows cascaded) {
+        apply(Counter.TRANSACTIONS, -cascaded.transactions());
+        apply(Counter.NOTIFICATIONS, -cascaded.notifications());
+        ratingSum -= cascaded.ratingSum();
+        ratingCount -= cascaded.reviews();
+        Set<String> removed = new HashSet<>(cascaded.reviewIds());
+        recentReviews.removeIf(review -> removed.contains(review.getId()));
+        if (pending != null) {
+            pending.ratingSum -= cascaded.ratingSum();
+            pending.ratingCount -= cascaded.reviews();
+            pending.removedReviewIds.addAll(removed);
+        }
+    }
+
+    // Callers hold the monitor.
+    private void pushRecent(ReviewDTO review) {
+        recentReviews.addFirst(review);
+        while (recentReviews.size() > RECENT_REVIEW_CAPACITY) {
+            recentReviews.removeLast();
+        }
+    }
+
+    public record Snapshot(long totalBook, long totalUser, long totalTransaction, long totalNotifications,
+                           long totalReview, double averageReview, List<ReviewDTO> recentReviews,
+                           LocalDateTime generatedAt, LocalDateTime reconciledAt) {
+    }
+
+    /**
+     * Changes reported while a reconciliation is counting.
+     */
+    private static final class Changes {
+        private final long[] counts = new long[Counter.values().length];
+        private final List<ReviewDTO> addedReviews = new ArrayList<>();
+        private final Set<String> removedReviewIds = new HashSet<>();
+        private double ratingSum;
+        private long ratingCount;
+    }
+}
@@ -3,6 +3,9 @@ package com.digilibz.service.user;
 import com.digilibz.models.User;
 import com.digilibz.repository.UserRepository;
 import com.digilibz.dto.user.UserRequestDTO;
+import com.digilibz.service.analytics.AnalyticsEngine;
+import com.digilibz.service.rating.RatingAggregateService;
+import com.digilibz.service.statistic.StatisticAggregator;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -21,6 +24,15 @@ public class UserService {
     @Autowired
     protected PasswordEncoder passwordEncoder;
 
+    @Autowired
+    protected StatisticAggregator statisticAggregator;
+
+    @Autowired
+    protected AnalyticsEngine analyticsEngine;
+
+    @Autowired
+    protected RatingAggregateService ratingAggregateService;
+
     public Optional<User> findById(String id) {
         return userRepository.findById(id);
     }
@@ -33,7 +45,13 @@ public class UserService {
     }
 
     public void deleteById(String id) {
+        Optional<User> user = userRepository.findById(id);
+        StatisticAggregator.CascadedRows cascaded = user.isPresent() ? statisticAggregator.cascadedByUser(id) : null;
+        if (user.isPresent()) {
+            ratingAggregateService.authorRemoved(id);
+        }
         userRepository.deleteById(id);
+        user.ifPresent(deleted -> statisticAggregator.userDeleted(deleted.getRole(), cascaded));
     }
 
     public User registerUser(UserRequestDTO userDTO, User.Role role) {
@@ -48,10 +66,18 @@ public class UserService {
         user.setRole(role);
         user.setPhone(userDTO.getPhone());
         
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        statisticAggregator.userCreated(role);
+        analyticsEngine.userCreated(role);
+        return savedUser;
     }
 
-    public User updateUser(User newUser, String id) {
+    /**
+     * Copies the fields set in {@code newUser}. The role is only copied when
+     * {@code changeRole} is set, so a user editing their own profile cannot promote
+     * themselves.
+     */
+    public User updateUser(User newUser, String id, boolean changeRole) {
         return userRepository.findById(id)
                 .map(existingUser -> {
                     if (newUser.getEmail() != null && !newUser.getEmail().equals(existingUser.getEmail())) {
@@ -72,7 +98,8 @@ public class UserService {
                     if (newUser.getPassword() != null && !newUser.getPassword().isEmpty()) {
                         existingUser.setPassword(passwordEncoder.encode(newUser.getPassword()));
                     }
-                    if (newUser.getRole() != null) {
+                    if (changeRole && newUser.getRole() != null) {
+                        statisticAggregator.userRoleChanged(existingUser.getRole(), newUser.getRole());
                         existingUser.setRole(newUser.getRole());
                     }
                     return userRepository.save(existingUser);
@@ -22,7 +22,10 @@ CREATE TABLE books (
     available_copies INTEGER,
     late_fee DECIMAL(10,2),
     can_borrow BOOLEAN DEFAULT true,
-    rating DECIMAL(3,2)
+    rating DECIMAL(3,2),
+    INDEX idx_books_year_id (year, id),
+    INDEX idx_books_rating_id (rating, id),
+    INDEX idx_books_available_copies_id (available_copies, id)
 );
 
 CREATE TABLE transactions (
@@ -32,11 +35,15 @@ CREATE TABLE transactions (
     date_from DATE NOT NULL,
     date_to DATE NOT NULL,
     total_fee DOUBLE NOT NULL,
+    late_fee DECIMAL(10,2) NOT NULL DEFAULT 0,
+    fee_accrued_through DATE,
     status ENUM('PENDING', 'APPROVED', 'DECLINED', 'OVERDUE') NOT NULL,
     type ENUM('BORROW', 'RETURN') NOT NULL,
     payment_method VARCHAR(255),
     payment_evidence VARCHAR(255),
-    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    INDEX idx_transactions_status_type_date_to (status, type, date_to),
+    INDEX idx_transactions_user_id (user_id)
 );
 
 CREATE TABLE transaction_items (
@@ -55,7 +62,10 @@ CREATE TABLE reviews (
     rating DOUBLE NOT NULL,
     content TEXT NOT NULL,
     FOREIGN KEY (book_id) REFERENCES books(id) ON DELETE CASCADE,
-    FOREIGN KEY (author_id) REFERENCES users(id) ON DELETE CASCADE
+    FOREIGN KEY (author_id) REFERENCES users(id) ON DELETE CASCADE,
+    UNIQUE KEY uk_reviews_book_author (book_id, author_id),
+    INDEX idx_reviews_book_date (book_id, date),
+    INDEX idx_reviews_date (date)
 );
 
 CREATE TABLE notifications (
@@ -66,5 +76,72 @@ CREATE TABLE notifications (
     type ENUM('INFO', 'REMINDER', 'ALERT') NOT NULL,
     date TIMESTAMP NOT NULL,
     `read` BOOLEAN NOT NULL DEFAULT false,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    INDEX idx_notifications_user_read_date (user_id, `read`, date),
+    INDEX idx_notifications_read_date (`read`, date)
+);
+
+CREATE TABLE notifications_archive (
+    id CHAR(36) PRIMARY KEY NOT NULL,
+    user_id CHAR(36) NOT NULL,
+    title VARCHAR(255) NOT NULL,
+    message TEXT NOT NULL,
+    type ENUM('INFO', 'REMINDER', 'ALERT') NOT NULL,
+    date TIMESTAMP NOT NULL,
+    archived_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    INDEX idx_notifications_archive_user_date (user_id, date)
+);
+
+CREATE TABLE book_reservations (
+    id CHAR(36) PRIMARY KEY NOT NULL,
+    transaction_id CHAR(36) NOT NULL,
+    book_id CHAR(36) NOT NULL,
+    status ENUM('HELD', 'CONFIRMED', 'RELEASED') NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (transaction_id) REFERENCES transactions(id) ON DELETE CASCADE,
+    FOREIGN KEY (book_id) REFERENCES books(id) ON DELETE CASCADE,
+    INDEX idx_book_reservations_transaction (transaction_id),
+    INDEX idx_book_reservations_status_expires (status, expires_at)
+);
+
+CREATE TABLE scheduler_leases (
+    name VARCHAR(100) PRIMARY KEY NOT NULL,
+    owner VARCHAR(255) NOT NULL,
+    lease_until TIMESTAMP NOT NULL
+);
+
+CREATE TABLE fee_ledger_entries (
+    id CHAR(36) PRIMARY KEY NOT NULL,
+    transaction_id CHAR(36) NOT NULL,
+    user_id CHAR(36) NOT NULL,
+    entry_date DATE NOT NULL,
+    days INT NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (transaction_id) REFERENCES transactions(id) ON DELETE CASCADE,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    UNIQUE KEY uk_fee_ledger_transaction_date (transaction_id, entry_date),
+    INDEX idx_fee_ledger_user_id (user_id)
+);
+
+CREATE TABLE user_fee_balances (
+    user_id CHAR(36) PRIMARY KEY NOT NULL,
+    outstanding DECIMAL(12,2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+CREATE TABLE book_rating_aggregates (
+    book_id CHAR(36) PRIMARY KEY NOT NULL,
+    review_count BIGINT NOT NULL DEFAULT 0,
+    rating_sum DOUBLE NOT NULL DEFAULT 0,
+    stars_1 BIGINT NOT NULL DEFAULT 0,
+    stars_2 BIGINT NOT NULL DEFAULT 0,
+    stars_3 BIGINT NOT NULL DEFAULT 0,
+    stars_4 BIGINT NOT NULL DEFAULT 0,
+    stars_5 BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (book_id) REFERENCES books(id) ON DELETE CASCADE
+);
@@ -0,0 +1,208 @@
+package com.digilibz.config;
+
+import com.digilibz.dto.TransactionRequest;
+import com.digilibz.models.Book;
+import com.digilibz.models.Notification;
+import com.digilibz.models.User;
+import com.digilibz.repository.UserRepository;
+import com.digilibz.service.NotificationsService;
+import com.digilibz.service.TransactionService;
+import com.digilibz.service.auth.TokenService;
+import com.digilibz.support.TestFixtures;
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * With enforcement on, registration is open, admin routes need the ADMIN role, and
+ * per-user routes only answer the user named in the request, the owner of the
+ * transaction or notification it names, or an admin.
+ */
+@SpringBootTest(properties = "digilibz.auth.enforce=true")
+@ActiveProfiles("test")
+class SecurityConfigTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private NotificationsService notificationsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(context.getBean("springSecurityFilterChain", Filter.class))
+                .build();
+    }
+
+    @Test
+    void adminRoutesNeedTheAdminRole() throws Exception {
+        String user = bearer(fixtures.user("member"));
+        String admin = bearer(fixtures.user("librarian", u -> u.setRole(User.Role.ADMIN)));
+
+        mockMvc.perform(post("/api/fees/accrue")).andExpect(status().isUnauthorized());
+        mockMvc.perform(as(post("/api/fees/accrue"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(post("/api/transactions/overdue/run"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(post("/api/reviews/ratings/reconcile"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(get("/api/export/users"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(put("/api/transactions").param("invoiceCode", "x").param("status", "RETURNED"), user))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(as(get("/api/users"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(post("/api/users/register/admin"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(post("/api/books"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(put("/api/books/some-book"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(delete("/api/books/some-book"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(get("/api/export/books"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(post("/api/books/import"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(get("/api/books/import/some-job"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(post("/api/books/import/some-job/resume"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(post("/api/reviews/batch"), user)).andExpect(status().isForbidden());
+        mockMvc.perform(as(post("/api/notifications"), user)).andExpect(status().isForbidden());
+
+        mockMvc.perform(as(get("/api/reviews/ratings/reconcile"), admin)).andExpect(status().is2xxSuccessful());
+        mockMvc.perform(as(get("/api/users"), admin)).andExpect(status().isOk());
+        // Reading the catalog only needs a token.
+        mockMvc.perform(as(get("/api/books"), user)).andExpect(status().isOk());
+    }
+
+    @Test
+    void registrationIsOpenButAdminRegistrationIsNot() throws Exception {
+        String id = UUID.randomUUID().toString();
+        String body = "{\"email\":\"open-" + id + "@example.com\",\"password\":\"secret1\"," +
+                "\"name\":\"Open Registration\",\"phone\":\"" + id + "\"}";
+
+        mockMvc.perform(post("/api/users/register/admin").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/users/register").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void invoiceAndNotificationRoutesOnlyAnswerTheirOwner() throws Exception {
+        User member = fixtures.user("borrower");
+        String owner = bearer(member);
+        String stranger = bearer(fixtures.user("stranger"));
+        String admin = bearer(fixtures.user("librarian", u -> u.setRole(User.Role.ADMIN)));
+        String invoiceCode = transactionService.createTransaction(borrow(member, fixtures.book("scoped", book -> {
+            book.setAvailableCopies(1);
+            book.setCanBorrow(true);
+        })));
+        Notification notification = notificationsService.addNotification(member, "Hello", "Yours",
+                Notification.NotificationType.INFO);
+
+        for (String path : List.of("/api/transactions/invoice", "/api/transactions/reservations", "/api/fees/ledger")) {
+            mockMvc.perform(as(get(path).param("invoiceCode", invoiceCode), stranger)).andExpect(status().isForbidden());
+            mockMvc.perform(as(get(path).param("invoiceCode", invoiceCode), owner)).andExpect(status().isOk());
+            mockMvc.perform(as(get(path).param("invoiceCode", invoiceCode), admin)).andExpect(status().isOk());
+        }
+        mockMvc.perform(as(put("/api/transactions/reservations").param("invoiceCode", invoiceCode), stranger))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(as(put("/api/notifications").param("notifId", notification.getId()), stranger))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as(delete("/api/notifications/" + notification.getId()), stranger))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as(put("/api/notifications").param("notifId", notification.getId()), owner))
+                .andExpect(status().isOk());
+        mockMvc.perform(as(delete("/api/notifications/" + notification.getId()), owner))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void onlyAnAdminChangesARole() throws Exception {
+        User member = fixtures.user("climber");
+        String promotion = "{\"role\":\"ADMIN\",\"name\":\"Climber\"}";
+
+        mockMvc.perform(as(put("/api/users/" + member.getId()), bearer(member))
+                        .contentType(MediaType.APPLICATION_JSON).content(promotion))
+                .andExpect(status().isOk());
+        User afterSelfEdit = userRepository.findById(member.getId()).orElseThrow();
+        assertEquals("Climber", afterSelfEdit.getName());
+        assertEquals(User.Role.USER, afterSelfEdit.getRole());
+
+        String admin = bearer(fixtures.user("librarian", u -> u.setRole(User.Role.ADMIN)));
+        mockMvc.perform(as(put("/api/users/" + member.getId()), admin)
+                        .contentType(MediaType.APPLICATION_JSON).content(promotion))
+                .andExpect(status().isOk());
+        assertEquals(User.Role.ADMIN, userRepository.findById(member.getId()).orElseThrow().getRole());
+    }
+
+    @Test
+    void perUserRoutesOnlyAnswerThatUserOrAnAdmin() throws Exception {
+        User member = fixtures.user("member");
+        User other = fixtures.user("other");
+        String user = bearer(member);
+        String admin = bearer(fixtures.user("librarian", u -> u.setRole(User.Role.ADMIN)));
+
+        mockMvc.perform(as(get("/api/notifications/unread-count").param("userId", member.getId()), user))
+                .andExpect(status().isOk());
+        mockMvc.perform(as(get("/api/notifications/unread-count").param("userId", other.getId()), user))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as(get("/api/notifications/stream").param("userId", other.getId()), user))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as(get("/api/fees/balance").param("userId", other.getId()), user))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as(get("/api/users/" + other.getId()), user)).andExpect(status().isForbidden());
+        // Without a userId the listing covers every user.
+        mockMvc.perform(as(get("/api/transactions"), user)).andExpect(status().isForbidden());
+
+        mockMvc.perform(as(get("/api/users/" + member.getId()), user)).andExpect(status().isOk());
+        mockMvc.perform(as(get("/api/notifications/unread-count").param("userId", other.getId()), admin))
+                .andExpect(status().isOk());
+        mockMvc.perform(as(get("/api/users/" + other.getId()), admin)).andExpect(status().isOk());
+    }
+
+    private String bearer(User user) {
+        return "Bearer " + tokenService.issue(user).token();
+    }
+
+    private static TransactionRequest borrow(User user, Book book) {
+        TransactionRequest.Item item = new TransactionRequest.Item();
+        item.setId(book.getId());
+        TransactionRequest request = new TransactionRequest();
+        request.setUserId(user.getId());
+        request.setItems(List.of(item));
+        request.setDateFrom(LocalDate.now());
+        request.setDateTo(LocalDate.now().plusDays(7));
+        return request;
+    }
+
+    private static MockHttpServletRequestBuilder as(MockHttpServletRequestBuilder request, String authorization) {
+        return request.header(HttpHeaders.AUTHORIZATION, authorization);
+    }
+}
@@ -0,0 +1,131 @@
+package com.digilibz.service;
+
+import com.digilibz.dto.CursorPage;
+import com.digilibz.dto.book.BookCardDTO;
+import com.digilibz.models.Book;
+import com.digilibz.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Walks the book listing page by page for each sort and checks that the pages join
+ * up to the full, correctly ordered result with no row repeated or skipped.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BookListingTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Test
+    void keysetPagesCoverEverySortWithoutGaps() {
+        String category = "listing-" + UUID.randomUUID();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            Book book = new Book();
+            book.setTitle(category + " " + (char) ('a' + i));
+            book.setAuthor("Author");
+            book.setCategory(category);
+            book.setIsbn(category + "-" + i);
+            book.setYear(2000 + i % 4);
+            book.setAvailableCopies(i % 3);
+            book.setDescription("long description");
+            // Every third book is unrated, the rest share a few ratings.
+            book.setRating(i % 3 == 0 ? null : new BigDecimal(i % 5 + ".50"));
+            books.add(bookRepository.save(book));
+        }
+
+        Comparator<BigDecimal> nullsLow = Comparator.nullsFirst(Comparator.naturalOrder());
+        Comparator<Book> byId = Comparator.comparing(Book::getId);
+
+        assertPages(category, "title", "asc", books, Comparator.comparing(Book::getTitle));
+        assertPages(category, "year", "desc", books, Comparator.comparingInt(Book::getYear).thenComparing(byId).reversed());
+        assertPages(category, "availability", "asc", books, Comparator.comparingInt(Book::getAvailableCopies).thenComparing(byId));
+        assertPages(category, "rating", "desc", books, Comparator.comparing(Book::getRating, nullsLow).thenComparing(byId).reversed());
+        assertPages(category, "rating", "asc", books, Comparator.comparing(Book::getRating, nullsLow).thenComparing(byId));
+    }
+
+    @Test
+    void filteredSearchFindsMatchesBelowTheUnfilteredTopHits() {
+        String term = "zq" + UUID.randomUUID().toString().replace("-", "").substring(0, 10);
+        String popular = "popular-" + term;
+        String rare = "rare-" + term;
+        // Enough strong title matches in one category to fill the search cap on their own.
+        for (int i = 0; i < 210; i++) {
+            bookService.addBook(book(term + " volume " + i, popular, term + "-p-" + i, null));
+        }
+        // Weaker matches, on the description only, in another category.
+        bookService.addBook(book("Rare one " + term.substring(2), rare, term + "-r-1", term));
+        bookService.addBook(book("Rare two " + term.substring(2), rare, term + "-r-2", term));
+
+        CursorPage<?> page = bookService.getBooks(term, rare, null, null, null, null, null, "card", null, 10);
+        assertEquals(2, page.getItems().size());
+    }
+
+    @Test
+    void searchWithoutSortPagesEveryHitInRelevanceOrder() {
+        String term = "zr" + UUID.randomUUID().toString().replace("-", "").substring(0, 10);
+        String category = "relevance-" + term;
+        List<String> titleMatches = new ArrayList<>();
+        List<String> descriptionMatches = new ArrayList<>();
+        // More hits than the sorted search keeps, half of them ranking well above the rest.
+        for (int i = 0; i < 125; i++) {
+            titleMatches.add(bookService.addBook(book(term + " volume " + i, category, term + "-t-" + i, null)).getId());
+            descriptionMatches.add(bookService.addBook(book("Other " + i, category, term + "-d-" + i, term)).getId());
+        }
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<?> page = bookService.getBooks(term, null, null, null, null, null, null, "card", cursor, 40);
+            assertTrue(page.getItems().size() <= 40);
+            page.getItems().forEach(item -> seen.add(((BookCardDTO) item).getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(250, seen.size());
+        assertEquals(Set.copyOf(titleMatches), Set.copyOf(seen.subList(0, 125)));
+        assertEquals(Set.copyOf(descriptionMatches), Set.copyOf(seen.subList(125, 250)));
+    }
+
+    private static Book book(String title, String category, String isbn, String description) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Author");
+        book.setCategory(category);
+        book.setIsbn(isbn);
+        book.setYear(2020);
+        book.setDescription(description);
+        return book;
+    }
+
+    private void assertPages(String category, String sort, String order, List<Book> books, Comparator<Book> expectedOrder) {
+        List<String> expected = books.stream().sorted(expectedOrder).map(Book::getId).toList();
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<?> page = bookService.getBooks(null, category, null, null, null, sort, order, "card", cursor, 5);
+            assertTrue(page.getItems().size() <= 5);
+            page.getItems().forEach(item -> seen.add(((BookCardDTO) item).getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, seen, sort + " " + order);
+    }
+}
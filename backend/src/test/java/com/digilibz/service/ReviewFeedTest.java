@@ -0,0 +1,71 @@
+package com.digilibz.service;
+
+import com.digilibz.dto.CursorPage;
+import com.digilibz.dto.review.ReviewDTO;
+import com.digilibz.models.Book;
+import com.digilibz.models.Review;
+import com.digilibz.repository.ReviewRepository;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pages through a book's reviews, several sharing a timestamp, and checks the pages
+ * join up newest first without repeats or gaps.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ReviewFeedTest {
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void keysetPagesFollowDateThenId() {
+        Book book = fixtures.book("feed");
+
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 12, 0);
+        List<Review> reviews = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Review review = new Review();
+            review.setBook(book);
+            review.setAuthor(fixtures.user("feed", user -> user.setName("Feed Reader")));
+            review.setDate(base.plusMinutes(i / 3));
+            review.setRating(4);
+            review.setContent("Review " + i);
+            reviews.add(reviewRepository.save(review));
+        }
+        List<String> expected = reviews.stream()
+                .sorted(Comparator.comparing(Review::getDate).thenComparing(Review::getId).reversed())
+                .map(Review::getId)
+                .toList();
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<ReviewDTO> page = reviewService.getReviewFeed(book.getId(), cursor, 3);
+            page.getItems().forEach(review -> {
+                assertEquals("Feed Reader", review.getAuthorName());
+                seen.add(review.getId());
+            });
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, seen);
+    }
+}
@@ -0,0 +1,79 @@
+package com.digilibz.service;
+
+import com.digilibz.dto.TransactionRequest;
+import com.digilibz.models.Book;
+import com.digilibz.models.User;
+import com.digilibz.service.notification.NotificationPipeline;
+import com.digilibz.support.TestFixtures;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the statements issued by one borrow on the embedded database and checks
+ * that the count does not grow with the number of borrowed books.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionServiceBatchingTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private NotificationPipeline notificationPipeline;
+
+    @Test
+    void statementsPerBorrowStayConstantAsItemsGrow() throws InterruptedException {
+        User user = fixtures.user("batching");
+
+        long single = statementsForBorrow(user, 1);
+        long ten = statementsForBorrow(user, 10);
+        long forty = statementsForBorrow(user, 40);
+
+        assertEquals(single, ten);
+        assertEquals(single, forty);
+    }
+
+    private long statementsForBorrow(User user, int items) throws InterruptedException {
+        List<TransactionRequest.Item> requestItems = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            Book book = fixtures.book("batching", b -> b.setAvailableCopies(3));
+            TransactionRequest.Item item = new TransactionRequest.Item();
+            item.setId(book.getId());
+            requestItems.add(item);
+        }
+
+        TransactionRequest request = new TransactionRequest();
+        request.setUserId(user.getId());
+        request.setItems(requestItems);
+        request.setDateFrom(LocalDate.now());
+        request.setDateTo(LocalDate.now().plusDays(7));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        transactionService.createTransaction(request);
+        // Include the asynchronous notification insert so the count is deterministic.
+        assertTrue(notificationPipeline.awaitIdle(Duration.ofSeconds(10)));
+
+        return statistics.getPrepareStatementCount();
+    }
+}
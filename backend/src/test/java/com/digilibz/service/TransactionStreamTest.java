@@ -0,0 +1,217 @@
+package com.digilibz.service;
+
+import com.digilibz.controller.TransactionController;
+import com.digilibz.dto.CursorPage;
+import com.digilibz.dto.TransactionRequest;
+import com.digilibz.dto.transaction.TransactionResponse;
+import com.digilibz.models.Book;
+import com.digilibz.models.Transaction;
+import com.digilibz.models.TransactionItem;
+import com.digilibz.models.User;
+import com.digilibz.repository.TransactionRepository;
+import com.digilibz.support.TestFixtures;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /api/transactions/stream writes a JSON array whose elements have the shape of
+ * the map-based responses it replaced, plus the transaction's late fee. The
+ * allocation comparison between the two only runs with {@code -Pbenchmark}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionStreamTest {
+
+    @Autowired
+    private TransactionController transactionController;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void streamMatchesTheMapResponseShape() throws Exception {
+        User user = fixtures.user("stream", u -> u.setPhone("+62 812 0000 0000"));
+        String invoiceCode = transactionService.createTransaction(borrow(user,
+                fixtures.book("stream", b -> stocked(b, "one.png", "1500.00")),
+                fixtures.book("stream", b -> stocked(b, "two.png", "2500.00"))));
+
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(transactionController).build();
+        MvcResult started = mvc.perform(get("/api/transactions/stream").param("userId", user.getId()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode streamed = jsonMapper.readTree(body);
+        assertTrue(streamed.isArray());
+        assertEquals(1, streamed.size());
+        ObjectNode actual = (ObjectNode) streamed.get(0);
+        assertEquals(0, actual.remove("lateFee").decimalValue().signum());
+
+        // Through text like the stream, so numbers are compared as the client parses them.
+        ObjectNode expected = (ObjectNode) jsonMapper.readTree(jsonMapper.writeValueAsString(transactionTemplate.execute(
+                status -> mapResponse(transactionRepository.findByInvoiceCode(invoiceCode).orElseThrow()))));
+        assertEquals(items(expected.remove("items")), items(actual.remove("items")));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void projectionAllocatesLessPerResponseThanTheMapPath() {
+        User user = fixtures.user("allocation", u -> u.setPhone("+62 812 0000 0001"));
+        for (int i = 0; i < 40; i++) {
+            transactionService.createTransaction(borrow(user,
+                    fixtures.book("allocation", b -> stocked(b, "one.png", "1500.00")),
+                    fixtures.book("allocation", b -> stocked(b, "two.png", "2500.00"))));
+        }
+
+        // One response is the user's page of 50 transactions serialized to JSON.
+        Supplier<byte[]> projection = () -> {
+            CursorPage<TransactionResponse> page = transactionService.getTransactionsWithFilter(
+                    null, null, null, user.getId(), null, 50);
+            return jsonMapper.writeValueAsBytes(page.getItems());
+        };
+        Supplier<byte[]> maps = () -> transactionTemplate.execute(status -> {
+            List<Map<String, Object>> page = entityManager.createQuery(
+                            "SELECT t FROM Transaction t WHERE t.user.id = :userId", Transaction.class)
+                    .setParameter("userId", user.getId())
+                    .setMaxResults(50)
+                    .getResultList().stream()
+                    .map(TransactionStreamTest::mapResponse)
+                    .toList();
+            return jsonMapper.writeValueAsBytes(page);
+        });
+
+        int responses = 200;
+        bytesPerResponse(projection, responses);
+        bytesPerResponse(maps, responses);
+        long projected = bytesPerResponse(projection, responses);
+        long mapped = bytesPerResponse(maps, responses);
+
+        assertTrue(projected < mapped, String.format(
+                "projection %d B per response, map path %d B per response", projected, mapped));
+    }
+
+    /** Bytes the calling thread allocates per response; both paths run their queries on it. */
+    private static long bytesPerResponse(Supplier<byte[]> response, int responses) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long written = 0;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < responses; i++) {
+            written += response.get().length;
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue(written > 0);
+        return allocated / responses;
+    }
+
+    /** The response built by hand before the DTO projection, kept here as the reference shape. */
+    private static Map<String, Object> mapResponse(Transaction transaction) {
+        return Map.of(
+                "id", transaction.getId(),
+                "invoiceCode", transaction.getInvoiceCode(),
+                "dateRange", Map.of(
+                        "from", transaction.getDateFrom(),
+                        "to", transaction.getDateTo()
+                ),
+                "status", transaction.getStatus(),
+                "type", transaction.getType(),
+                "user", Map.of(
+                        "id", transaction.getUser().getId(),
+                        "name", transaction.getUser().getName(),
+                        "email", transaction.getUser().getEmail(),
+                        "phone", transaction.getUser().getPhone(),
+                        "role", transaction.getUser().getRole()
+                ),
+                "totalFee", transaction.getTotalFee(),
+                "paymentMethod", transaction.getPaymentMethod(),
+                "paymentEvidence", transaction.getPaymentEvidence(),
+                "items", transaction.getItems().stream().map(TransactionStreamTest::mapItem).toList()
+        );
+    }
+
+    private static Map<String, Object> mapItem(TransactionItem item) {
+        return Map.of(
+                "id", item.getBook().getId(),
+                "title", item.getBook().getTitle(),
+                "author", item.getBook().getAuthor(),
+                "image", item.getBook().getImage(),
+                "lateFee", item.getBook().getLateFee()
+        );
+    }
+
+    // Item order follows the database in both versions, so compare them as a set.
+    private static Set<JsonNode> items(JsonNode items) {
+        Set<JsonNode> result = new HashSet<>();
+        items.forEach(result::add);
+        return result;
+    }
+
+    private static void stocked(Book book, String image, String lateFee) {
+        book.setImage(image);
+        book.setLateFee(new BigDecimal(lateFee));
+        book.setAvailableCopies(1);
+        book.setCanBorrow(true);
+    }
+
+    private static TransactionRequest borrow(User user, Book... books) {
+        TransactionRequest request = new TransactionRequest();
+        request.setUserId(user.getId());
+        request.setItems(Arrays.stream(books).map(book -> {
+            TransactionRequest.Item item = new TransactionRequest.Item();
+            item.setId(book.getId());
+            return item;
+        }).toList());
+        request.setTotalFee(4000);
+        request.setPaymentMethod("cash");
+        request.setPaymentEvidence("receipt.png");
+        request.setDateFrom(LocalDate.now());
+        request.setDateTo(LocalDate.now().plusDays(7));
+        return request;
+    }
+}
@@ -0,0 +1,78 @@
+package com.digilibz.service.analytics;
+
+import com.digilibz.models.Book;
+import com.digilibz.models.Review;
+import com.digilibz.repository.ReviewRepository;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Seeding from grouped queries puts existing reviews in the tier their age allows,
+ * with the same counts and sums as recording them one by one.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class AnalyticsEngineTest {
+
+    @Autowired
+    private AnalyticsEngine analyticsEngine;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Test
+    void seedGroupsExistingReviewsPerTier() {
+        Book book = fixtures.book("seeded");
+
+        LocalDateTime now = LocalDateTime.now();
+        review(book, now.minusHours(1), 4);
+        review(book, now.minusHours(1), 4);
+        review(book, now.minusDays(10), 2);
+        review(book, now.minusDays(200), 5);
+
+        analyticsEngine.seed();
+
+        String dimension = "book:" + book.getId();
+        Map<String, Object> total = sum(analyticsEngine.query(AnalyticsEngine.REVIEWS, Granularity.MONTH,
+                now.minusDays(400), now.plusHours(1), dimension).values(), dimension);
+        assertEquals(4L, total.get("count"));
+        assertEquals(15.0, (Double) total.get("sum"), 1e-9);
+
+        Map<String, Object> recent = sum(analyticsEngine.query(AnalyticsEngine.REVIEWS, Granularity.HOUR,
+                now.minusHours(3), now.plusHours(1), dimension).values(), dimension);
+        assertEquals(2L, recent.get("count"));
+        assertEquals(8.0, (Double) recent.get("sum"), 1e-9);
+    }
+
+    private void review(Book book, LocalDateTime date, double rating) {
+        Review review = new Review();
+        review.setBook(book);
+        review.setAuthor(fixtures.user("seed"));
+        review.setDate(date);
+        review.setRating(rating);
+        review.setContent("Seeded");
+        reviewRepository.save(review);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> sum(Iterable<Map<String, Object>> points, String dimension) {
+        long count = 0;
+        double sum = 0;
+        for (Map<String, Object> point : points) {
+            count += ((Map<String, Long>) point.get("counts")).getOrDefault(dimension, 0L);
+            sum += ((Map<String, Double>) point.get("sums")).getOrDefault(dimension, 0.0);
+        }
+        return Map.of("count", count, "sum", sum);
+    }
+}
@@ -0,0 +1,47 @@
+package com.digilibz.service.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Late writes into old buckets, as replaced reviews make them, survive a compaction
+ * that moves those buckets at the same time.
+ */
+class TimeSeriesTest {
+
+    @Test
+    void lateWritesAreNotLostWhileTheirBucketIsCompacted() throws Exception {
+        TimeSeries series = new TimeSeries();
+        LocalDateTime now = LocalDateTime.now();
+        int writes = 500_000;
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < writes; i++) {
+                LocalDateTime at = now.minusDays(10 + i % 40);
+                series.increment(Granularity.DAY, at, "count", -1);
+                series.add(Granularity.DAY, at, "rating", -2.0);
+            }
+            writing.set(false);
+        }, "late-writer");
+        writer.start();
+        while (writing.get()) {
+            series.compact(Granularity.DAY, Granularity.MONTH, now);
+        }
+        writer.join();
+
+        long count = 0;
+        double sum = 0;
+        for (Map<String, Object> point : series.query(Granularity.MONTH, now.minusDays(90), now, null).values()) {
+            count += ((Map<?, ?>) point.get("counts")).get("count") instanceof Long n ? n : 0;
+            sum += ((Map<?, ?>) point.get("sums")).get("rating") instanceof Double n ? n : 0;
+        }
+        assertEquals(-writes, count);
+        assertEquals(-2.0 * writes, sum, 1e-6);
+    }
+}
@@ -0,0 +1,248 @@
+package com.digilibz.service.auth;
+
+import com.digilibz.exception.ApiException;
+import com.digilibz.service.AuthService;
+import com.digilibz.service.BookService;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Login throttling: rate limit buckets, the client address behind a proxy, identical
+ * failures for unknown accounts, and a saturated verification pool shedding logins.
+ * The catalog latency check under a login flood measures wall-clock time and only
+ * runs with {@code -Pbenchmark}.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LoginThrottlingTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private CredentialVerifier credentialVerifier;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void bucketsLimitPerAddressAndPerAccountAndRefill() {
+        LoginRateLimiter limiter = new LoginRateLimiter(3, 60, 2, 6);
+        long now = 0;
+
+        limiter.acquire("10.0.0.1", "A@example.com", now);
+        limiter.acquire("10.0.0.2", "a@example.com ", now);
+        LoginRateLimiter.RateLimitedException account = assertThrows(LoginRateLimiter.RateLimitedException.class,
+                () -> limiter.acquire("10.0.0.3", "a@example.com", 0));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, account.getStatus());
+        // Six per minute: the next token is ten seconds away.
+        assertEquals(10, account.getRetryAfter().toSeconds());
+
+        limiter.acquire("10.0.0.9", "b@example.com", now);
+        limiter.acquire("10.0.0.9", "c@example.com", now);
+        limiter.acquire("10.0.0.9", "d@example.com", now);
+        assertThrows(LoginRateLimiter.RateLimitedException.class, () -> limiter.acquire("10.0.0.9", "e@example.com", 0));
+
+        now += TimeUnit.SECONDS.toNanos(10);
+        limiter.acquire("10.0.0.3", "a@example.com", now);
+        limiter.acquire("10.0.0.9", "e@example.com", now);
+
+        limiter.purgeIdleBuckets(now + TimeUnit.MINUTES.toNanos(5));
+        assertEquals(0, limiter.stats().get("ipBuckets"));
+        assertEquals(0, limiter.stats().get("accountBuckets"));
+    }
+
+    @Test
+    void clientAddressComesFromTheLastEntryOfTheConfiguredHeader() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("X-Forwarded-For", "203.0.113.9, 198.51.100.7");
+
+        assertEquals("198.51.100.7", new ClientAddressResolver("X-Forwarded-For").resolve(request));
+        assertEquals("10.0.0.1", new ClientAddressResolver("").resolve(request));
+        assertEquals("10.0.0.1", new ClientAddressResolver("X-Real-IP").resolve(request));
+    }
+
+    @Test
+    void fullVerificationQueueShedsLoginsStraightAway() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        CredentialVerifier verifier = new CredentialVerifier(blocking, 1, 1, Duration.ofSeconds(30));
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // One check holds the only thread and one waits in the only queue slot.
+            Future<Boolean> running = callers.submit(() -> verifier.matches("secret", "secret"));
+            awaitStat(verifier, "active", 1);
+            Future<Boolean> queued = callers.submit(() -> verifier.matches("secret", "other"));
+            awaitStat(verifier, "queued", 1);
+
+            ApiException shed = assertThrows(ApiException.class, () -> verifier.matches("secret", "secret"));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, shed.getStatus());
+
+            release.countDown();
+            assertTrue(running.get(30, TimeUnit.SECONDS));
+            assertFalse(queued.get(30, TimeUnit.SECONDS));
+            Map<String, Object> stats = verifier.stats();
+            assertEquals(1L, ((Number) stats.get("rejected")).longValue());
+            assertEquals(2L, ((Number) stats.get("verifications")).longValue());
+            assertEquals(1L, ((Number) stats.get("maxActive")).longValue());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+            verifier.shutdown();
+        }
+    }
+
+    @Test
+    void unknownAccountsFailLikeWrongPasswords() {
+        String email = fixtures.user("login", user -> user.setPassword(passwordEncoder.encode("correct horse")))
+                .getEmail();
+
+        RuntimeException wrongPassword = assertThrows(RuntimeException.class,
+                () -> authService.login(email, "battery staple", "192.0.2.1"));
+        RuntimeException unknown = assertThrows(RuntimeException.class,
+                () -> authService.login("nobody-" + email, "battery staple", "192.0.2.1"));
+        assertEquals(wrongPassword.getMessage(), unknown.getMessage());
+
+        assertEquals(email, authService.login(email, "correct horse", "192.0.2.1").getEmail());
+        // The role is only revealed once the password is right.
+        assertEquals("Unauthorized: Admin access only",
+                assertThrows(RuntimeException.class, () -> authService.loginAdmin(email, "correct horse", "192.0.2.1")).getMessage());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void catalogReadsStayFastWhileLoginsSaturateTheVerifier() throws Exception {
+        String category = "login-load-" + UUID.randomUUID();
+        for (int i = 0; i < 200; i++) {
+            int index = i;
+            fixtures.book(category, book -> {
+                book.setCategory(category);
+                book.setYear(2000 + index % 20);
+                book.setAvailableCopies(index % 3);
+            });
+        }
+
+        long[] baseline = catalogLatencies(category, 300);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger shed = new AtomicInteger();
+        List<Thread> clients = new ArrayList<>();
+        for (int t = 0; t < 96; t++) {
+            int client = t;
+            Thread thread = new Thread(() -> {
+                int n = 0;
+                while (running.get()) {
+                    // A fresh address and account per attempt so only the verifier pushes back.
+                    String id = client + "-" + n++;
+                    try {
+                        authService.login("flood-" + id + "@example.com", "guess", "flood-" + id);
+                    } catch (ApiException e) {
+                        shed.incrementAndGet();
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+                    } catch (RuntimeException ignored) {
+                        // Invalid credentials.
+                    }
+                    attempts.incrementAndGet();
+                }
+            }, "login-flood-" + t);
+            thread.setDaemon(true);
+            clients.add(thread);
+            thread.start();
+        }
+
+        long[] saturated;
+        try {
+            Thread.sleep(500);
+            saturated = catalogLatencies(category, 300);
+        } finally {
+            running.set(false);
+            for (Thread thread : clients) {
+                thread.join(10_000);
+            }
+        }
+
+        Map<String, Object> stats = credentialVerifier.stats();
+        assertTrue(shed.get() > 0, "a full verification queue should shed logins");
+        assertTrue(((Number) stats.get("maxActive")).longValue() <= ((Number) stats.get("threads")).longValue());
+        // Hashing is capped at the pool size, so catalog reads keep most of the CPU.
+        assertTrue(percentile(saturated, 50) < percentile(baseline, 50) * 10 + 25,
+                String.format("catalog median latency should not collapse under a login flood: " +
+                                "p50 %.2f ms idle, %.2f ms during %d login attempts",
+                        percentile(baseline, 50), percentile(saturated, 50), attempts.get()));
+    }
+
+    private static void awaitStat(CredentialVerifier verifier, String name, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (((Number) verifier.stats().get(name)).longValue() != expected) {
+            assertTrue(System.nanoTime() < deadline, name + " never reached " + expected);
+            Thread.sleep(5);
+        }
+    }
+
+    private long[] catalogLatencies(String category, int samples) {
+        for (int i = 0; i < 50; i++) {
+            bookService.getBooks(null, category, null, null, null, "year", "desc", "card", null, 20);
+        }
+        long[] latencies = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            assertEquals(20, bookService.getBooks(null, category, null, null, null, "year", "desc", "card", null, 20)
+                    .getItems().size());
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile / 100.0 * sorted.length) - 1);
+        return sorted[index] / 1_000_000.0;
+    }
+}
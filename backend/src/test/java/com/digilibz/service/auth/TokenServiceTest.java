@@ -0,0 +1,49 @@
+package com.digilibz.service.auth;
+
+import com.digilibz.models.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenServiceTest {
+
+    private final TokenService tokenService = new TokenService("test-secret", Duration.ofHours(12), Duration.ofHours(24), 1000);
+
+    @Test
+    void verifiesIssuedTokensAndRejectsTamperedOrExpiredOnes() {
+        Instant now = Instant.parse("2024-05-01T23:00:00Z");
+        TokenService.IssuedToken issued = tokenService.issue("user-1", User.Role.ADMIN, now);
+
+        TokenService.TokenClaims claims = tokenService.verify(issued.token(), now.plusSeconds(60)).orElseThrow();
+        assertEquals("user-1", claims.userId());
+        assertEquals(User.Role.ADMIN, claims.role());
+        assertEquals(now.plus(Duration.ofHours(12)), claims.expiresAt());
+
+        // Still valid after the signing key rotated at midnight.
+        assertTrue(tokenService.verify(issued.token(), now.plus(Duration.ofHours(2))).isPresent());
+        assertTrue(tokenService.verify(issued.token(), now.plus(Duration.ofHours(12))).isEmpty());
+
+        String[] parts = issued.token().split("\\.");
+        String forged = parts[0] + "." + parts[1].substring(0, parts[1].length() - 2) + "AA." + parts[2];
+        assertTrue(tokenService.verify(forged, now).isEmpty());
+        assertTrue(tokenService.verify("not-a-token", now).isEmpty());
+
+        TokenService otherSecret = new TokenService("other-secret", Duration.ofHours(12), Duration.ofHours(24), 1000);
+        assertTrue(otherSecret.verify(issued.token(), now).isEmpty());
+    }
+
+    @Test
+    void revokedTokensAreRejectedOthersAreNot() {
+        Instant now = Instant.now();
+        TokenService.IssuedToken kept = tokenService.issue("user-1", User.Role.USER, now);
+        TokenService.IssuedToken revoked = tokenService.issue("user-1", User.Role.USER, now);
+
+        tokenService.revoke(tokenService.verify(revoked.token()).orElseThrow());
+
+        assertTrue(tokenService.verify(revoked.token()).isEmpty());
+        assertTrue(tokenService.verify(kept.token()).isPresent());
+    }
+}
@@ -0,0 +1,41 @@
+package com.digilibz.service.cache;
+
+import com.digilibz.models.Book;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCacheTest {
+
+    private final BookCache cache = new BookCache(10, Duration.ofMinutes(10));
+
+    @Test
+    void readsReturnDetachedCopiesThatCannotChangeTheCachedBook() {
+        Book loaded = book("book-1", "Dunia Sophie");
+        Book first = cache.get("book-1", () -> Optional.of(loaded)).orElseThrow();
+
+        // Neither the loaded entity nor a returned copy is shared with the cache.
+        loaded.setTitle("changed by the loader's session");
+        first.setTitle("changed by a caller");
+        first.setAvailableCopies(0);
+
+        Book second = cache.get("book-1", () -> fail("should be a hit")).orElseThrow();
+        assertNotSame(first, second);
+        assertEquals("Dunia Sophie", second.getTitle());
+        assertEquals(3, second.getAvailableCopies());
+        assertEquals("Dunia Sophie", cache.getByIsbn("isbn-book-1", Optional::empty).orElseThrow().getTitle());
+        assertEquals("Dunia Sophie", cache.getMap("book-1", Optional::empty).orElseThrow().get("title"));
+    }
+
+    private static Book book(String id, String title) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setIsbn("isbn-" + id);
+        book.setAvailableCopies(3);
+        return book;
+    }
+}
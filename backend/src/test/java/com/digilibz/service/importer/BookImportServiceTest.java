@@ -0,0 +1,207 @@
+package com.digilibz.service.importer;
+
+import com.digilibz.models.Book;
+import com.digilibz.repository.BookRepository;
+import com.digilibz.service.search.BookFacetIndex;
+import com.digilibz.service.search.BookSearchIndex;
+import com.digilibz.service.statistic.StatisticAggregator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Imports a generated CSV with repeated, already-existing and invalid rows, and checks
+ * that only the valid new books are inserted; resumes a failed import from its
+ * checkpoint; and separates key clashes from other rejected rows when a batch fails.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BookImportServiceTest {
+
+    private static final int ROWS = 20_000;
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private BookFacetIndex bookFacetIndex;
+
+    @Autowired
+    private StatisticAggregator statisticAggregator;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void importsValidRowsAndSkipsDuplicates() throws IOException {
+        String prefix = UUID.randomUUID().toString().substring(0, 8);
+
+        Book existing = new Book();
+        existing.setTitle(prefix + " Title 0");
+        existing.setAuthor("Author");
+        existing.setCategory("Fiction");
+        existing.setIsbn(prefix + "-existing");
+        bookRepository.save(existing);
+
+        Path file = tempDir.resolve("books.csv");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("title,author,category,isbn,year,quota,availableCopies,description,lateFee,canBorrow\n");
+            for (int i = 0; i < ROWS; i++) {
+                writer.write(prefix + " Title " + i + ",Author " + i + ",Fiction," + prefix + "-" + i + ",2020,3,3,"
+                        + "\"A book, with \"\"quotes\"\"\",1000,true\n");
+            }
+            // Same ISBN as an earlier row, a row with no author and a row with a bad year.
+            writer.write(prefix + " Other,Author,Fiction," + prefix + "-5,2020,1,1,,,\n");
+            writer.write(prefix + " No author,,Fiction," + prefix + "-x1,2020,1,1,,,\n");
+            writer.write(prefix + " Bad year,Author,Fiction," + prefix + "-x2,twenty,1,1,,,\n");
+        }
+
+        BookImportJob job = bookImportService.importFile(file, ImportFormat.CSV);
+
+        assertEquals(BookImportJob.State.COMPLETED, job.getState(), job.getFailure());
+        assertEquals(ROWS + 3, job.getRead());
+        assertEquals(ROWS - 1, job.getInserted());
+        assertEquals(2, job.getDuplicates());
+        assertEquals(2, job.getInvalid());
+        assertEquals(2, job.getErrors().size());
+
+        Book imported = bookRepository.findByIsbn(prefix + "-42").orElseThrow();
+        assertEquals(prefix + " Title 42", imported.getTitle());
+        assertEquals("A book, with \"quotes\"", imported.getDescription());
+        assertEquals(3, imported.getAvailableCopies());
+    }
+
+    @Test
+    void resumesAfterTheLastCommittedChunk() throws IOException {
+        String prefix = UUID.randomUUID().toString().substring(0, 8);
+        Path file = tempDir.resolve("books.ndjson");
+        writeNdjson(file, prefix, 1000, 650, "{\"title\": \"broken");
+
+        BookImportService service = service(jdbcTemplate);
+        try {
+            BookImportJob failed = service.importFile(file, ImportFormat.JSON);
+            assertEquals(BookImportJob.State.FAILED, failed.getState());
+            // One worker and chunks of 100: the writer trails the reader by one chunk.
+            assertEquals(500, failed.getCheckpoint());
+            assertEquals(500, failed.getInserted());
+
+            writeNdjson(file, prefix, 1000, 650, null);
+            BookImportJob resumed = service.importFile(file, ImportFormat.JSON);
+            assertEquals(BookImportJob.State.COMPLETED, resumed.getState(), resumed.getFailure());
+            assertEquals(500, resumed.getRead());
+            assertEquals(500, resumed.getInserted());
+            assertEquals(0, resumed.getDuplicates());
+        } finally {
+            service.shutdown();
+        }
+        assertEquals(1000, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM books WHERE isbn LIKE ?", Integer.class, prefix + "-%"));
+    }
+
+    @Test
+    void rowByRowFallbackOnlyCountsKeyClashesAsDuplicates() throws IOException {
+        String prefix = UUID.randomUUID().toString().substring(0, 8);
+        Path file = tempDir.resolve("clashes.ndjson");
+        writeNdjson(file, prefix, 5, -1, null);
+
+        AtomicInteger rowInserts = new AtomicInteger();
+        JdbcTemplate flaky = new JdbcTemplate(dataSource) {
+            @Override
+            public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                           ParameterizedPreparedStatementSetter<T> pss) {
+                // Another writer takes record 4's ISBN after the import loaded its key sets.
+                TransactionTemplate elsewhere = new TransactionTemplate(transactionTemplate.getTransactionManager());
+                elsewhere.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                elsewhere.executeWithoutResult(status -> {
+                    Book clash = new Book();
+                    clash.setTitle(prefix + " elsewhere");
+                    clash.setAuthor("Author");
+                    clash.setIsbn(prefix + "-3");
+                    bookRepository.save(clash);
+                });
+                throw new DataIntegrityViolationException("batch rejected");
+            }
+
+            @Override
+            public int update(String sql, PreparedStatementSetter pss) {
+                if (rowInserts.incrementAndGet() == 2) {
+                    throw new DataIntegrityViolationException("Value too long for column rack_number");
+                }
+                return super.update(sql, pss);
+            }
+        };
+
+        BookImportService service = service(flaky);
+        try {
+            BookImportJob job = service.importFile(file, ImportFormat.JSON);
+            assertEquals(BookImportJob.State.COMPLETED, job.getState(), job.getFailure());
+            assertEquals(3, job.getInserted());
+            assertEquals(1, job.getDuplicates());
+            assertEquals(1, job.getInvalid());
+            assertEquals(List.of("Record 2: rejected by the database: Value too long for column rack_number"),
+                    job.getErrors());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private BookImportService service(JdbcTemplate template) {
+        return new BookImportService(template, transactionTemplate, jsonMapper, bookSearchIndex, bookFacetIndex,
+                statisticAggregator, tempDir.resolve("imports"), 100, 1);
+    }
+
+    // Record numbers start at 1; the record at {@code replaced} (0-based) is swapped for the given line.
+    private static void writeNdjson(Path file, String prefix, int rows, int replaced, String line) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                if (i == replaced && line != null) {
+                    writer.write(line + "\n");
+                    continue;
+                }
+                writer.write("{\"title\": \"" + prefix + " Book " + i + "\", \"author\": \"Author\", "
+                        + "\"category\": \"Fiction\", \"isbn\": \"" + prefix + "-" + i + "\"}\n");
+            }
+        }
+    }
+}
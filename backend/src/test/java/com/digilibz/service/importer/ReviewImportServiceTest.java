@@ -0,0 +1,202 @@
+package com.digilibz.service.importer;
+
+import com.digilibz.dto.review.ReviewContent;
+import com.digilibz.dto.review.ReviewImportRequest;
+import com.digilibz.dto.review.ReviewRequest;
+import com.digilibz.models.Book;
+import com.digilibz.repository.BookRepository;
+import com.digilibz.repository.ReviewRepository;
+import com.digilibz.service.analytics.AnalyticsEngine;
+import com.digilibz.service.analytics.Granularity;
+import com.digilibz.service.ReviewService;
+import com.digilibz.service.rating.RatingAggregateService;
+import com.digilibz.service.statistic.StatisticAggregator;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import javax.sql.DataSource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ingests review batches with unknown ids, repeated (book, author) pairs and a
+ * resubmission, and checks the upserts, the per-book aggregate and the analytics. A
+ * batch the database rejects is written row by row instead of failing as a whole.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ReviewImportServiceTest {
+
+    @Autowired
+    private ReviewImportService reviewImportService;
+
+    @Autowired
+    private RatingAggregateService ratingAggregateService;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AnalyticsEngine analyticsEngine;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private StatisticAggregator statisticAggregator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void upsertsOneReviewPerUserAndBook() {
+        Book book = fixtures.book("imported-reviews");
+
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            users.add(fixtures.user("import").getId());
+        }
+
+        List<ReviewImportRequest> batch = List.of(
+                review(book.getId(), users.get(0), 2),
+                review(book.getId(), users.get(1), 4),
+                review(book.getId(), users.get(0), 5),
+                review(book.getId(), "missing-user", 3),
+                review("missing-book", users.get(2), 3),
+                review(book.getId(), users.get(2), 7)
+        );
+        ReviewImportResult first = reviewImportService.ingest(batch);
+
+        assertEquals(6, first.getReceived());
+        assertEquals(2, first.getInserted());
+        assertEquals(0, first.getUpdated());
+        assertEquals(1, first.getDuplicates());
+        assertEquals(3, first.getInvalid());
+
+        ReviewImportResult second = reviewImportService.ingest(List.of(
+                review(book.getId(), users.get(1), 1),
+                review(book.getId(), users.get(2), 3)
+        ));
+        assertEquals(1, second.getInserted());
+        assertEquals(1, second.getUpdated());
+
+        assertEquals(5.0, reviewRepository.findByBookIdAndAuthorId(book.getId(), users.get(0)).orElseThrow().getRating());
+        assertEquals(1.0, reviewRepository.findByBookIdAndAuthorId(book.getId(), users.get(1)).orElseThrow().getRating());
+
+        Map<String, Object> rating = ratingAggregateService.getBookRating(book.getId());
+        assertEquals(3L, rating.get("reviewCount"));
+        assertEquals(new BigDecimal("3.00"), rating.get("average"));
+        assertEquals(Map.of("5", 1L, "4", 0L, "3", 1L, "2", 0L, "1", 1L), rating.get("histogram"));
+        assertEquals(new BigDecimal("3.00"), bookRepository.findById(book.getId()).orElseThrow().getRating());
+
+        // The replaced rating moved out of the analytics along with the row.
+        String dimension = "book:" + book.getId();
+        long count = 0;
+        double sum = 0;
+        for (Map<String, Object> point : analyticsEngine.query(AnalyticsEngine.REVIEWS, Granularity.MONTH,
+                LocalDateTime.now().minusDays(1), LocalDateTime.now().plusHours(1), dimension).values()) {
+            count += ((Map<?, ?>) point.get("counts")).get(dimension) instanceof Long n ? n : 0;
+            sum += ((Map<?, ?>) point.get("sums")).get(dimension) instanceof Double n ? n : 0;
+        }
+        assertEquals(3, count);
+        assertEquals(9.0, sum, 1e-9);
+    }
+
+    @Test
+    void rejectedBatchIsWrittenRowByRow() {
+        Book book = fixtures.book("row-by-row");
+        String first = fixtures.user("row-by-row").getId();
+        String raced = fixtures.user("row-by-row").getId();
+        String refused = fixtures.user("row-by-row").getId();
+
+        AtomicInteger batches = new AtomicInteger();
+        JdbcTemplate flaky = new JdbcTemplate(dataSource) {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                if (batches.incrementAndGet() == 1) {
+                    // The raced author submits a review through the API after the import looked theirs up.
+                    TransactionTemplate elsewhere = new TransactionTemplate(transactionTemplate.getTransactionManager());
+                    elsewhere.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+                    elsewhere.executeWithoutResult(status -> reviewService.submitReview(submitted(book.getId(), raced, 1)));
+                    throw new DataIntegrityViolationException("batch rejected");
+                }
+                if (batchArgs.stream().anyMatch(args -> refused.equals(args[2]))) {
+                    throw new DataIntegrityViolationException("Value too long for column content");
+                }
+                return super.batchUpdate(sql, batchArgs);
+            }
+        };
+        ReviewImportService service = new ReviewImportService(flaky, transactionTemplate, jsonMapper,
+                ratingAggregateService, statisticAggregator, analyticsEngine, 1000);
+        context.getAutowireCapableBeanFactory().autowireBean(service);
+
+        ReviewImportResult result = service.ingest(List.of(
+                review(book.getId(), first, 2),
+                review(book.getId(), raced, 4),
+                review(book.getId(), refused, 5)
+        ));
+
+        assertEquals(3, result.getReceived());
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(0, result.getDuplicates());
+        assertEquals(List.of("Record 3: rejected by the database: Value too long for column content"), result.getErrors());
+
+        assertEquals(4.0, reviewRepository.findByBookIdAndAuthorId(book.getId(), raced).orElseThrow().getRating());
+        assertTrue(reviewRepository.findByBookIdAndAuthorId(book.getId(), refused).isEmpty());
+        Map<String, Object> rating = ratingAggregateService.getBookRating(book.getId());
+        assertEquals(2L, rating.get("reviewCount"));
+        assertEquals(new BigDecimal("3.00"), rating.get("average"));
+    }
+
+    private static ReviewRequest submitted(String bookId, String authorId, int rating) {
+        ReviewContent content = new ReviewContent();
+        content.setAuthorId(authorId);
+        content.setRating(rating);
+        content.setContent("Submitted " + rating);
+        ReviewRequest request = new ReviewRequest();
+        request.setBookId(bookId);
+        request.setReview(content);
+        return request;
+    }
+
+    private static ReviewImportRequest review(String bookId, String authorId, int rating) {
+        ReviewImportRequest review = new ReviewImportRequest();
+        review.setBookId(bookId);
+        review.setAuthorId(authorId);
+        review.setRating(rating);
+        review.setContent("Imported " + rating);
+        return review;
+    }
+}
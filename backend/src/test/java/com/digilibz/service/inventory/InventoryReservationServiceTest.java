@@ -0,0 +1,164 @@
+package com.digilibz.service.inventory;
+
+import com.digilibz.controller.BookController;
+import com.digilibz.dto.TransactionRequest;
+import com.digilibz.models.Book;
+import com.digilibz.repository.BookRepository;
+import com.digilibz.service.BookService;
+import com.digilibz.service.TransactionService;
+import com.digilibz.service.search.BookSearchIndex;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent borrows of one title take exactly the copies on the shelf, and editing
+ * the book afterwards does not overwrite what the reservations took.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class InventoryReservationServiceTest {
+
+    private static final int COPIES = 5;
+    private static final int BORROWERS = 24;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookController bookController;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void concurrentBorrowsTakeExactlyTheCopiesOnTheShelf() throws Exception {
+        Book book = fixtures.book("contended", b -> {
+            b.setQuota(COPIES);
+            b.setAvailableCopies(COPIES);
+            b.setCanBorrow(true);
+        });
+        List<TransactionRequest> requests = new ArrayList<>();
+        for (int i = 0; i < BORROWERS; i++) {
+            requests.add(borrow(fixtures.user("contended").getId(), book.getId()));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        List<Throwable> unexpected = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(BORROWERS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (TransactionRequest request : requests) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        transactionService.createTransaction(request);
+                        borrowed.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        refused.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        unexpected.add(e);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of(), unexpected);
+        assertEquals(COPIES, borrowed.get());
+        assertEquals(BORROWERS - COPIES, refused.get());
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getAvailableCopies());
+    }
+
+    @Test
+    void editingABookKeepsReservedCopiesAndMovesStockWithTheQuota() {
+        Book book = fixtures.book("edited", b -> {
+            b.setQuota(3);
+            b.setAvailableCopies(3);
+            b.setCanBorrow(true);
+        });
+        transactionService.createTransaction(borrow(fixtures.user("edited").getId(), book.getId()));
+
+        // The admin form still sends the count it loaded before the borrow.
+        Book payload = bookRepository.findById(book.getId()).orElseThrow();
+        payload.setTitle("Edited title");
+        payload.setAvailableCopies(3);
+        Book updated = bookService.updateBook(book.getId(), payload);
+        assertEquals("Edited title", updated.getTitle());
+        assertEquals(2, updated.getAvailableCopies());
+
+        payload.setQuota(5);
+        assertEquals(4, bookService.updateBook(book.getId(), payload).getAvailableCopies());
+
+        payload.setQuota(0);
+        assertThrows(IllegalArgumentException.class, () -> bookService.updateBook(book.getId(), payload));
+        // Over HTTP the refusal is a bad request carrying the reason, not a missing book.
+        var refusal = bookController.updateBook(book.getId(), payload);
+        assertEquals(HttpStatus.BAD_REQUEST, refusal.getStatusCode());
+        assertTrue(String.valueOf(refusal.getBody()).contains("Cannot remove"));
+        assertEquals(HttpStatus.NOT_FOUND, bookController.updateBook("missing", payload).getStatusCode());
+        Book unchanged = bookRepository.findById(book.getId()).orElseThrow();
+        assertEquals(5, unchanged.getQuota());
+        assertEquals(4, unchanged.getAvailableCopies());
+
+        // An edit rolled back by the caller's transaction never reaches the search index.
+        String rolledBackTitle = "zr" + UUID.randomUUID().toString().replace("-", "");
+        payload.setQuota(5);
+        payload.setTitle(rolledBackTitle);
+        transactionTemplate.executeWithoutResult(status -> {
+            bookService.updateBook(book.getId(), payload);
+            status.setRollbackOnly();
+        });
+        assertEquals("Edited title", bookRepository.findById(book.getId()).orElseThrow().getTitle());
+        assertTrue(bookSearchIndex.search(rolledBackTitle, 10).isEmpty());
+    }
+
+    private static TransactionRequest borrow(String userId, String bookId) {
+        TransactionRequest.Item item = new TransactionRequest.Item();
+        item.setId(bookId);
+        TransactionRequest request = new TransactionRequest();
+        request.setUserId(userId);
+        request.setItems(List.of(item));
+        request.setDateFrom(LocalDate.now());
+        request.setDateTo(LocalDate.now().plusDays(7));
+        return request;
+    }
+}
@@ -0,0 +1,147 @@
+package com.digilibz.service.invoice;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hammers the generator from many threads on a frozen clock, which forces the
+ * sequence to wrap into following milliseconds, and checks every code is unique
+ * and that each thread sees its own codes in increasing order. The comparison with
+ * the random suffix it replaced measures time and allocation, so it only runs with
+ * {@code -Pbenchmark}.
+ */
+class InvoiceCodeGeneratorTest {
+
+    private static final ZoneId JAKARTA = ZoneId.of("Asia/Jakarta");
+    private static final long NOW = Instant.parse("2026-10-18T03:00:00Z").toEpochMilli();
+
+    @Test
+    void concurrentCodesAreUniqueAndOrdered() throws Exception {
+        InvoiceCodeGenerator generator = new InvoiceCodeGenerator(7, JAKARTA, () -> NOW);
+        int threads = 16;
+        int perThread = 20_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<String> codes = new ArrayList<>(perThread);
+                for (int i = 0; i < perThread; i++) {
+                    codes.add(generator.next());
+                }
+                return codes;
+            }));
+        }
+        start.countDown();
+
+        Set<String> all = new HashSet<>();
+        for (Future<List<String>> future : futures) {
+            List<String> codes = future.get(60, TimeUnit.SECONDS);
+            for (int i = 1; i < codes.size(); i++) {
+                assertTrue(codes.get(i - 1).compareTo(codes.get(i)) < 0, "codes must increase within a thread");
+            }
+            all.addAll(codes);
+        }
+        executor.shutdown();
+
+        assertEquals(threads * perThread, all.size());
+        all.forEach(code -> assertTrue(code.matches("INV-20261018-[0-9A-Z]{13}"), code));
+    }
+
+    @Test
+    void clockStepBackDoesNotRepeatCodes() {
+        AtomicLong clock = new AtomicLong(NOW);
+        InvoiceCodeGenerator generator = new InvoiceCodeGenerator(1, JAKARTA, clock::get);
+
+        String before = generator.next();
+        clock.addAndGet(-5_000);
+        String after = generator.next();
+
+        assertTrue(before.compareTo(after) < 0);
+    }
+
+    @Test
+    void nodesNeverCollide() {
+        InvoiceCodeGenerator first = new InvoiceCodeGenerator(1, JAKARTA, () -> NOW);
+        InvoiceCodeGenerator second = new InvoiceCodeGenerator(2, JAKARTA, () -> NOW);
+
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            codes.add(first.next());
+            codes.add(second.next());
+        }
+
+        assertEquals(20_000, codes.size());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void issuesCodesFasterAndWithLessGarbageThanTheRandomSuffix() {
+        InvoiceCodeGenerator generator = new InvoiceCodeGenerator(7, JAKARTA, System::currentTimeMillis);
+        int codes = 200_000;
+
+        // Warm both paths up before measuring.
+        measure(InvoiceCodeGeneratorTest::randomSuffixCode, codes);
+        measure(generator::next, codes);
+        double[] random = measure(InvoiceCodeGeneratorTest::randomSuffixCode, codes);
+        double[] snowflake = measure(generator::next, codes);
+
+        String summary = String.format("random suffix %.0f ns and %.0f B per code, generator %.0f ns and %.0f B per code",
+                random[0], random[1], snowflake[0], snowflake[1]);
+        assertTrue(snowflake[0] < random[0], summary);
+        assertTrue(snowflake[1] < random[1] / 2, summary);
+    }
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new InvoiceCodeGenerator(InvoiceCodeGenerator.MAX_NODE_ID + 1, JAKARTA, () -> NOW));
+    }
+
+    /**
+     * Nanoseconds and bytes allocated per code on the calling thread; the sink keeps
+     * the codes from being optimised away.
+     */
+    private static double[] measure(Supplier<String> next, int codes) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int sink = 0;
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long started = System.nanoTime();
+        for (int i = 0; i < codes; i++) {
+            sink += next.get().length();
+        }
+        long elapsed = System.nanoTime() - started;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        assertTrue(sink > 0);
+        return new double[]{(double) elapsed / codes, (double) bytes / codes};
+    }
+
+    /** The code TransactionService built before the generator: today's date and three random characters. */
+    private static String randomSuffixCode() {
+        StringBuilder suffix = new StringBuilder();
+        String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+        for (int i = 0; i < 3; i++) {
+            suffix.append(characters.charAt((int) (Math.random() * characters.length())));
+        }
+        String currentDate = new SimpleDateFormat("yyyyMMdd").format(new Date());
+        return "INV-" + currentDate + "-" + suffix;
+    }
+}
@@ -0,0 +1,55 @@
+package com.digilibz.service.notification;
+
+import com.digilibz.models.Notification;
+import com.digilibz.models.User;
+import com.digilibz.repository.NotificationRepository;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * With the writer stopped, the publishing thread inserts its own message after the
+ * business transaction commits, and the row is really written.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class NotificationPipelineTest {
+
+    @Autowired
+    private NotificationPipeline notificationPipeline;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void callerWriteAfterCommitIsPersisted() {
+        User user = fixtures.user("pipeline");
+        long callerWrites = notificationPipeline.stats().callerWrites();
+
+        notificationPipeline.stop();
+        try {
+            transactionTemplate.executeWithoutResult(status -> notificationPipeline.publish(
+                    user, "Pipeline", "Written by the caller", Notification.NotificationType.INFO));
+        } finally {
+            notificationPipeline.start();
+        }
+
+        assertEquals(callerWrites + 1, notificationPipeline.stats().callerWrites());
+        List<Notification> notifications = notificationRepository.findByUserId(user.getId());
+        assertEquals(1, notifications.size());
+        assertEquals("Written by the caller", notifications.get(0).getMessage());
+    }
+}
@@ -0,0 +1,95 @@
+package com.digilibz.service.notification;
+
+import com.digilibz.models.User;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A client that stops reading is closed, by its full buffer or by the send timeout,
+ * instead of piling up events or holding a fan-out thread.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class NotificationPushServiceTest {
+
+    @Autowired
+    private UnreadCounter unreadCounter;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    private NotificationPushService pushService;
+    private StuckEmitter emitter;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        pushService = new NotificationPushService(unreadCounter, Duration.ofMinutes(1), 1, 1, 2, Duration.ofMillis(50));
+        emitter = new StuckEmitter();
+        user = fixtures.user("push");
+    }
+
+    @AfterEach
+    void tearDown() {
+        emitter.release.countDown();
+        pushService.shutdown();
+    }
+
+    @Test
+    void fullBufferClosesTheStream() throws InterruptedException {
+        pushService.subscribe(user.getId(), emitter);
+        assertTrue(emitter.sending.await(5, TimeUnit.SECONDS));
+        assertEquals(1, pushService.getConnectionCount());
+
+        // The unread count is stuck in send; two more fit the buffer, the third does not.
+        for (int i = 0; i < 3; i++) {
+            pushService.allNotificationsRead(user.getId(), 1);
+        }
+
+        assertEquals(0, pushService.getConnectionCount());
+    }
+
+    @Test
+    void heartbeatClosesStreamsStuckLongerThanTheSendTimeout() throws InterruptedException {
+        pushService.subscribe(user.getId(), emitter);
+        assertTrue(emitter.sending.await(5, TimeUnit.SECONDS));
+
+        pushService.heartbeat();
+        assertEquals(1, pushService.getConnectionCount());
+
+        Thread.sleep(100);
+        pushService.heartbeat();
+        assertEquals(0, pushService.getConnectionCount());
+    }
+
+    /** Blocks every send like a client that has stopped reading. */
+    private static class StuckEmitter extends SseEmitter {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("closed");
+        }
+    }
+}
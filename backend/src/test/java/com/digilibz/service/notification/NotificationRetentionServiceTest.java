@@ -0,0 +1,70 @@
+package com.digilibz.service.notification;
+
+import com.digilibz.models.Notification;
+import com.digilibz.models.User;
+import com.digilibz.repository.ArchivedNotificationRepository;
+import com.digilibz.repository.NotificationRepository;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Archives read notifications past the retention age and leaves unread and recent
+ * ones in the hot table.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class NotificationRetentionServiceTest {
+
+    @Autowired
+    private NotificationRetentionService retentionService;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private ArchivedNotificationRepository archivedNotificationRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void movesOnlyOldReadNotifications() {
+        User user = fixtures.user("retention");
+
+        Notification oldRead = save(user, LocalDateTime.now().minusDays(90), true);
+        Notification oldUnread = save(user, LocalDateTime.now().minusDays(90), false);
+        Notification recentRead = save(user, LocalDateTime.now().minusDays(1), true);
+
+        long hotBefore = notificationRepository.count();
+        long archivedBefore = archivedNotificationRepository.count();
+
+        int archived = retentionService.archive();
+
+        assertTrue(archived >= 1);
+        assertTrue(archivedNotificationRepository.existsById(oldRead.getId()));
+        assertTrue(notificationRepository.findById(oldRead.getId()).isEmpty());
+        assertTrue(notificationRepository.existsById(oldUnread.getId()));
+        assertTrue(notificationRepository.existsById(recentRead.getId()));
+        assertEquals(hotBefore + archivedBefore,
+                notificationRepository.count() + archivedNotificationRepository.count());
+    }
+
+    private Notification save(User user, LocalDateTime date, boolean read) {
+        Notification notification = new Notification();
+        notification.setUser(user);
+        notification.setTitle("Retention");
+        notification.setMessage("Retention test");
+        notification.setType(Notification.NotificationType.INFO);
+        notification.setDate(date);
+        notification.setRead(read);
+        return notificationRepository.save(notification);
+    }
+}
@@ -0,0 +1,113 @@
+package com.digilibz.service.overdue;
+
+import com.digilibz.models.Book;
+import com.digilibz.models.SchedulerLease;
+import com.digilibz.models.Transaction;
+import com.digilibz.models.TransactionItem;
+import com.digilibz.models.User;
+import com.digilibz.repository.SchedulerLeaseRepository;
+import com.digilibz.repository.TransactionRepository;
+import com.digilibz.service.fee.FeeLedgerService;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Marks a past-due approved borrow as OVERDUE and books its late fee to the ledger,
+ * does nothing on a second pass, and stays idle while another node holds the lease.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class OverdueDetectionServiceTest {
+
+    @Autowired
+    private OverdueDetectionService overdueDetectionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Autowired
+    private SchedulerLeaseRepository leaseRepository;
+
+    @Autowired
+    private FeeLedgerService feeLedgerService;
+
+    @Test
+    void marksPastDueBorrowsOnceWithLateFee() {
+        Transaction transaction = approvedBorrow(LocalDate.now().minusDays(3), new BigDecimal("1500.00"), new BigDecimal("500.50"));
+
+        OverdueDetectionService.RunReport first = overdueDetectionService.detect().orElseThrow();
+        Transaction updated = transactionRepository.findById(transaction.getId()).orElseThrow();
+
+        assertTrue(first.processed() >= 1);
+        assertEquals(Transaction.TransactionStatus.OVERDUE, updated.getStatus());
+        assertEquals(0, new BigDecimal("6001.50").compareTo(updated.getLateFee()));
+
+        assertEquals(0, new BigDecimal("6001.50").compareTo(
+                (BigDecimal) feeLedgerService.getBalance(transaction.getUser().getId()).get("outstanding")));
+        assertEquals(1, feeLedgerService.getLedger(transaction.getId()).size());
+
+        OverdueDetectionService.RunReport second = overdueDetectionService.detect().orElseThrow();
+        assertEquals(0, second.processed());
+
+        // Already accrued through today, so the daily job adds nothing.
+        feeLedgerService.accrueDaily().orElseThrow();
+        assertEquals(1, feeLedgerService.getLedger(transaction.getId()).size());
+        assertEquals(0, new BigDecimal("6001.50").compareTo(
+                transactionRepository.findById(transaction.getId()).orElseThrow().getLateFee()));
+    }
+
+    @Test
+    void skipsWhileAnotherNodeHoldsTheLease() {
+        SchedulerLease lease = leaseRepository.findById(OverdueDetectionService.LEASE_NAME).orElseGet(SchedulerLease::new);
+        lease.setName(OverdueDetectionService.LEASE_NAME);
+        lease.setOwner("other-node");
+        lease.setLeaseUntil(LocalDateTime.now().plusMinutes(5));
+        leaseRepository.save(lease);
+        try {
+            Transaction transaction = approvedBorrow(LocalDate.now().minusDays(1), new BigDecimal("1000.00"));
+
+            assertTrue(overdueDetectionService.detect().isEmpty());
+            assertEquals(Transaction.TransactionStatus.APPROVED,
+                    transactionRepository.findById(transaction.getId()).orElseThrow().getStatus());
+        } finally {
+            lease.setLeaseUntil(LocalDateTime.now().minusMinutes(1));
+            leaseRepository.save(lease);
+        }
+    }
+
+    private Transaction approvedBorrow(LocalDate dateTo, BigDecimal... lateFees) {
+        User user = fixtures.user("overdue");
+
+        Transaction transaction = new Transaction();
+        transaction.setUser(user);
+        transaction.setInvoiceCode("INV-TEST-" + UUID.randomUUID());
+        transaction.setDateFrom(dateTo.minusDays(7));
+        transaction.setDateTo(dateTo);
+        transaction.setStatus(Transaction.TransactionStatus.APPROVED);
+        transaction.setType(Transaction.TransactionType.BORROW);
+        transaction.setItems(new ArrayList<>());
+        for (BigDecimal lateFee : lateFees) {
+            Book book = fixtures.book("overdue", b -> b.setLateFee(lateFee));
+
+            TransactionItem item = new TransactionItem();
+            item.setTransaction(transaction);
+            item.setBook(book);
+            transaction.getItems().add(item);
+        }
+        return transactionRepository.save(transaction);
+    }
+}
@@ -0,0 +1,233 @@
+package com.digilibz.service.rating;
+
+import com.digilibz.dto.review.ReviewContent;
+import com.digilibz.dto.review.ReviewRequest;
+import com.digilibz.models.Book;
+import com.digilibz.models.BookRatingAggregate;
+import com.digilibz.models.User;
+import com.digilibz.repository.BookRatingAggregateRepository;
+import com.digilibz.repository.BookRepository;
+import com.digilibz.repository.ReviewRepository;
+import com.digilibz.service.BookService;
+import com.digilibz.service.ReviewService;
+import com.digilibz.service.user.UserService;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reviews update the book's aggregate and stored rating as they are submitted, and the
+ * reconciliation puts a drifted aggregate back in line with the reviews table. Racing
+ * first reviews by one user end up as a single review, and deleting a user takes their
+ * reviews out of the totals.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class RatingAggregateServiceTest {
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private RatingAggregateService ratingAggregateService;
+
+    @Autowired
+    private BookRatingAggregateRepository aggregateRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void reviewsMaintainTheAggregateAndReconcileRepairsDrift() {
+        Book book = fixtures.book("rated");
+
+        String lastUserId = null;
+        for (int rating : new int[]{5, 4, 4}) {
+            lastUserId = fixtures.user("rating").getId();
+            assertEquals(200, reviewService.submitReview(review(book.getId(), lastUserId, rating)).getStatusCode().value());
+        }
+        assertEquals(400, reviewService.submitReview(review(book.getId(), lastUserId, 9)).getStatusCode().value());
+
+        Map<String, Object> rating = ratingAggregateService.getBookRating(book.getId());
+        assertEquals(3L, rating.get("reviewCount"));
+        assertEquals(new BigDecimal("4.33"), rating.get("average"));
+        assertEquals(Map.of("5", 1L, "4", 2L, "3", 0L, "2", 0L, "1", 0L), rating.get("histogram"));
+        assertEquals(new BigDecimal("4.33"), bookRepository.findById(book.getId()).orElseThrow().getRating());
+
+        // An edit from the admin form carries the rating it loaded; it must not overwrite the totals.
+        Book edit = bookRepository.findById(book.getId()).orElseThrow();
+        edit.setRating(new BigDecimal("1.00"));
+        edit.setTitle("Rated and edited");
+        bookService.updateBook(book.getId(), edit);
+        assertEquals(new BigDecimal("4.33"), bookRepository.findById(book.getId()).orElseThrow().getRating());
+
+        BookRatingAggregate aggregate = aggregateRepository.findById(book.getId()).orElseThrow();
+        aggregate.setReviewCount(7);
+        aggregate.setStars(1, 4);
+        aggregateRepository.save(aggregate);
+
+        Map<String, Object> report = ratingAggregateService.reconcile().orElseThrow();
+        assertTrue((int) report.get("corrections") >= 1);
+        assertEquals(3L, ratingAggregateService.getBookRating(book.getId()).get("reviewCount"));
+        assertEquals(0L, ((Map<?, ?>) ratingAggregateService.getBookRating(book.getId()).get("histogram")).get("1"));
+    }
+
+    @Test
+    void reconcileBackfillsBooksWithoutAnAggregateRow() {
+        Book book = fixtures.book("backfilled");
+
+        for (int rating : new int[]{3, 5}) {
+            User user = fixtures.user("backfill");
+            assertEquals(200, reviewService.submitReview(review(book.getId(), user.getId(), rating)).getStatusCode().value());
+        }
+        // As on the first start over an existing reviews table: reviews but no aggregate.
+        aggregateRepository.deleteById(book.getId());
+
+        ratingAggregateService.reconcile().orElseThrow();
+
+        BookRatingAggregate rebuilt = aggregateRepository.findById(book.getId()).orElseThrow();
+        assertEquals(2, rebuilt.getReviewCount());
+        assertEquals(8.0, rebuilt.getRatingSum(), 1e-9);
+        assertEquals(1, rebuilt.getStars(3));
+        assertEquals(1, rebuilt.getStars(5));
+        assertNotNull(rebuilt.getUpdatedAt());
+        assertEquals(new BigDecimal("4.00"), bookRepository.findById(book.getId()).orElseThrow().getRating());
+    }
+
+    @Test
+    void reconcileFixesOnlyDriftedBooksAndDropsOrphans() {
+        Book intact = fixtures.book("intact");
+        Book drifted = fixtures.book("drifted");
+        for (Book book : List.of(intact, drifted)) {
+            User user = fixtures.user("reconciled");
+            assertEquals(200, reviewService.submitReview(review(book.getId(), user.getId(), 3)).getStatusCode().value());
+        }
+        BookRatingAggregate wrong = aggregateRepository.findById(drifted.getId()).orElseThrow();
+        wrong.setRatingSum(11);
+        aggregateRepository.save(wrong);
+        Book unreviewed = fixtures.book("orphan");
+        BookRatingAggregate orphan = new BookRatingAggregate();
+        orphan.setBookId(unreviewed.getId());
+        orphan.setReviewCount(2);
+        orphan.setRatingSum(9);
+        orphan.setUpdatedAt(LocalDateTime.now());
+        aggregateRepository.save(orphan);
+        LocalDateTime intactUpdatedAt = aggregateRepository.findById(intact.getId()).orElseThrow().getUpdatedAt();
+
+        ratingAggregateService.reconcile().orElseThrow();
+
+        assertEquals(3.0, aggregateRepository.findById(drifted.getId()).orElseThrow().getRatingSum(), 1e-9);
+        assertEquals(new BigDecimal("3.00"), bookRepository.findById(drifted.getId()).orElseThrow().getRating());
+        assertTrue(aggregateRepository.findById(unreviewed.getId()).isEmpty());
+        assertNull(bookRepository.findById(unreviewed.getId()).orElseThrow().getRating());
+        assertEquals(intactUpdatedAt, aggregateRepository.findById(intact.getId()).orElseThrow().getUpdatedAt());
+    }
+
+    @Test
+    void concurrentFirstReviewsByOneUserLeaveOneReview() throws Exception {
+        Book book = fixtures.book("raced");
+        User user = fixtures.user("racer");
+
+        int submitters = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(submitters);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < submitters; i++) {
+                int rating = i % 5 + 1;
+                statuses.add(pool.submit(() -> {
+                    start.await();
+                    return reviewService.submitReview(review(book.getId(), user.getId(), rating)).getStatusCode().value();
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> status : statuses) {
+                assertEquals(200, status.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1L, ratingAggregateService.getBookRating(book.getId()).get("reviewCount"));
+        BookRatingAggregate aggregate = aggregateRepository.findById(book.getId()).orElseThrow();
+        assertEquals(1, aggregate.getReviewCount());
+        // Replacements are serialized, so the sum is the rating of the review that was written last.
+        double survivor = reviewRepository.findByBookIdAndAuthorId(book.getId(), user.getId()).orElseThrow().getRating();
+        assertEquals(survivor, aggregate.getRatingSum(), 1e-9);
+    }
+
+    @Test
+    void deletingAUserTakesTheirReviewsOutOfTheAggregate() {
+        cascadeReviewsWithTheirAuthor();
+        Book book = fixtures.book("orphaned");
+        User staying = fixtures.user("staying");
+        User leaving = fixtures.user("leaving");
+        assertEquals(200, reviewService.submitReview(review(book.getId(), staying.getId(), 4)).getStatusCode().value());
+        assertEquals(200, reviewService.submitReview(review(book.getId(), leaving.getId(), 1)).getStatusCode().value());
+        assertEquals(new BigDecimal("2.50"), bookRepository.findById(book.getId()).orElseThrow().getRating());
+
+        userService.deleteById(leaving.getId());
+
+        BookRatingAggregate aggregate = aggregateRepository.findById(book.getId()).orElseThrow();
+        assertEquals(1, aggregate.getReviewCount());
+        assertEquals(4.0, aggregate.getRatingSum(), 1e-9);
+        assertEquals(0, aggregate.getStars(1));
+        assertEquals(new BigDecimal("4.00"), bookRepository.findById(book.getId()).orElseThrow().getRating());
+    }
+
+    /**
+     * The MySQL schema deletes a user's reviews with the user; the generated test schema
+     * does not, so recreate the author foreign key with ON DELETE CASCADE.
+     */
+    private void cascadeReviewsWithTheirAuthor() {
+        String constraint = jdbcTemplate.queryForObject(
+                "SELECT k.constraint_name FROM information_schema.key_column_usage k " +
+                        "JOIN information_schema.referential_constraints r ON r.constraint_name = k.constraint_name " +
+                        "WHERE k.table_name = 'reviews' AND k.column_name = 'author_id'", String.class);
+        jdbcTemplate.execute("ALTER TABLE reviews DROP CONSTRAINT " + constraint);
+        jdbcTemplate.execute("ALTER TABLE reviews ADD CONSTRAINT " + constraint +
+                " FOREIGN KEY (author_id) REFERENCES users(id) ON DELETE CASCADE");
+    }
+
+    private static ReviewRequest review(String bookId, String userId, int rating) {
+        ReviewContent content = new ReviewContent();
+        content.setAuthorId(userId);
+        content.setRating(rating);
+        content.setContent("Review " + rating);
+        ReviewRequest request = new ReviewRequest();
+        request.setBookId(bookId);
+        request.setReview(content);
+        return request;
+    }
+}
@@ -0,0 +1,61 @@
+package com.digilibz.service.search;
+
+import com.digilibz.models.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookFacetIndexTest {
+
+    @Test
+    void countsIgnoreTheFacetsOwnFilter() {
+        BookFacetIndex index = new BookFacetIndex();
+        index.index(book("1", "Fiksi", 2020, "id", true));
+        index.index(book("2", "Fiksi", 2021, "en", true));
+        index.index(book("3", "Sains", 2020, "id", false));
+        index.index(book("4", "Sains", 2020, null, true));
+
+        Map<BookFacetIndex.Facet, String> filters = new EnumMap<>(BookFacetIndex.Facet.class);
+        filters.put(BookFacetIndex.Facet.CATEGORY, "Fiksi");
+        Map<String, Map<String, Integer>> counts = index.counts(filters, null);
+
+        assertEquals(Map.of("Fiksi", 2, "Sains", 2), counts.get("category"));
+        assertEquals(Map.of("2020", 1, "2021", 1), counts.get("year"));
+        assertEquals(Map.of("id", 1, "en", 1), counts.get("language"));
+        assertEquals(Map.of("true", 2), counts.get("canBorrow"));
+
+        filters.put(BookFacetIndex.Facet.YEAR, "2020");
+        assertEquals(Map.of("Fiksi", 1, "Sains", 2), index.counts(filters, null).get("category"));
+        assertEquals(Map.of("Fiksi", 1), index.counts(filters, List.of("1", "2")).get("category"));
+    }
+
+    @Test
+    void updatesAndRemovalsMoveBooksBetweenValues() {
+        BookFacetIndex index = new BookFacetIndex();
+        index.index(book("1", "Fiksi", 2020, "id", true));
+        index.index(book("2", "Fiksi", 2021, "id", true));
+
+        index.index(book("1", "Sains", 2020, "id", false));
+        index.remove("2");
+        index.index(book("3", "Sejarah", 2022, "en", true));
+
+        Map<String, Map<String, Integer>> counts = index.counts(Map.of(), null);
+        assertEquals(Map.of("Sains", 1, "Sejarah", 1), counts.get("category"));
+        assertEquals(Map.of("2020", 1, "2022", 1), counts.get("year"));
+        assertEquals(Map.of("false", 1, "true", 1), counts.get("canBorrow"));
+    }
+
+    private static Book book(String id, String category, int year, String language, boolean canBorrow) {
+        Book book = new Book();
+        book.setId(id);
+        book.setCategory(category);
+        book.setYear(year);
+        book.setLanguage(language);
+        book.setCanBorrow(canBorrow);
+        return book;
+    }
+}
@@ -0,0 +1,111 @@
+package com.digilibz.service.statistic;
+
+import com.digilibz.dto.review.ReviewContent;
+import com.digilibz.dto.review.ReviewRequest;
+import com.digilibz.dto.user.UserRequestDTO;
+import com.digilibz.models.Book;
+import com.digilibz.models.Notification;
+import com.digilibz.models.User;
+import com.digilibz.service.NotificationsService;
+import com.digilibz.service.ReviewService;
+import com.digilibz.service.user.UserService;
+import com.digilibz.support.TestFixtures;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Deleting a user or replacing a review adjusts the counters instead of forcing a
+ * recount, and the counters still agree with a full reconciliation afterwards.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class StatisticAggregatorTest {
+
+    @Autowired
+    private StatisticAggregator statisticAggregator;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private NotificationsService notificationsService;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private TestFixtures fixtures;
+
+    @Test
+    void userDeleteDecrementsCountersWithoutReconciling() {
+        User user = register();
+        notificationsService.addNotification(user, "Hello", "First", Notification.NotificationType.INFO);
+        notificationsService.addNotification(user, "Hello", "Second", Notification.NotificationType.INFO);
+
+        StatisticAggregator.CascadedRows cascaded = statisticAggregator.cascadedByUser(user.getId());
+        assertEquals(2, cascaded.notifications());
+        assertEquals(0, cascaded.transactions());
+        assertEquals(0, cascaded.reviews());
+
+        // The test schema has no ON DELETE CASCADE, so delete a user without rows.
+        User deleted = register();
+        StatisticAggregator.Snapshot before = statisticAggregator.snapshot(0);
+        userService.deleteById(deleted.getId());
+        StatisticAggregator.Snapshot after = statisticAggregator.snapshot(0);
+
+        assertEquals(before.reconciledAt(), after.reconciledAt(), "a delete should not force a reconciliation");
+        assertEquals(before.totalUser() - 1, after.totalUser());
+
+        statisticAggregator.reconcile();
+        StatisticAggregator.Snapshot recounted = statisticAggregator.snapshot(0);
+        assertEquals(after.totalUser(), recounted.totalUser());
+        assertEquals(after.totalNotifications(), recounted.totalNotifications());
+        assertEquals(after.totalTransaction(), recounted.totalTransaction());
+    }
+
+    @Test
+    void replacedReviewMovesTheRatingWithoutReconciling() {
+        Book book = fixtures.book("restated");
+        User author = fixtures.user("restater");
+        assertEquals(200, reviewService.submitReview(review(book.getId(), author.getId(), 2)).getStatusCode().value());
+
+        statisticAggregator.reconcile();
+        StatisticAggregator.Snapshot before = statisticAggregator.snapshot(1);
+        assertEquals(200, reviewService.submitReview(review(book.getId(), author.getId(), 5)).getStatusCode().value());
+        StatisticAggregator.Snapshot after = statisticAggregator.snapshot(1);
+
+        assertEquals(before.reconciledAt(), after.reconciledAt(), "an edit should not force a reconciliation");
+        assertEquals(before.totalReview(), after.totalReview());
+        assertEquals(5.0, after.recentReviews().get(0).getRating());
+
+        statisticAggregator.reconcile();
+        StatisticAggregator.Snapshot recounted = statisticAggregator.snapshot(1);
+        assertEquals(recounted.totalReview(), after.totalReview());
+        assertEquals(recounted.averageReview(), after.averageReview(), 1e-9);
+    }
+
+    private static ReviewRequest review(String bookId, String userId, int rating) {
+        ReviewContent content = new ReviewContent();
+        content.setAuthorId(userId);
+        content.setRating(rating);
+        content.setContent("Review " + rating);
+        ReviewRequest request = new ReviewRequest();
+        request.setBookId(bookId);
+        request.setReview(content);
+        return request;
+    }
+
+    private User register() {
+        UserRequestDTO request = new UserRequestDTO();
+        request.setEmail("statistic-" + UUID.randomUUID() + "@example.com");
+        request.setPassword("secret");
+        request.setName("Statistic Test");
+        return userService.registerUser(request, User.Role.USER);
+    }
+}
@@ -0,0 +1,63 @@
+package com.digilibz.support;
+
+import com.digilibz.models.Book;
+import com.digilibz.models.User;
+import com.digilibz.repository.BookRepository;
+import com.digilibz.repository.UserRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Saved users and books for tests that share one embedded database. Every fixture gets
+ * a random key in its unique columns, so tests never collide with each other's rows.
+ */
+@Component
+public class TestFixtures {
+
+    private final UserRepository userRepository;
+    private final BookRepository bookRepository;
+
+    public TestFixtures(UserRepository userRepository, BookRepository bookRepository) {
+        this.userRepository = userRepository;
+        this.bookRepository = bookRepository;
+    }
+
+    public User user(String prefix) {
+        return user(prefix, user -> { });
+    }
+
+    /**
+     * Saves a {@code USER} with the password {@code secret}; the customizer runs
+     * before the insert and may override any of it.
+     */
+    public User user(String prefix, Consumer<User> customizer) {
+        User user = new User();
+        user.setEmail(prefix + "-" + UUID.randomUUID() + "@example.com");
+        user.setPassword("secret");
+        user.setName(prefix);
+        user.setRole(User.Role.USER);
+        customizer.accept(user);
+        return userRepository.save(user);
+    }
+
+    public Book book(String prefix) {
+        return book(prefix, book -> { });
+    }
+
+    /**
+     * Saves a book in the {@code Testing} category with no copies on the shelf; the
+     * customizer runs before the insert and may override any of it.
+     */
+    public Book book(String prefix, Consumer<Book> customizer) {
+        String key = prefix + "-" + UUID.randomUUID();
+        Book book = new Book();
+        book.setTitle(key);
+        book.setAuthor("Author");
+        book.setCategory("Testing");
+        book.setIsbn(key);
+        customizer.accept(book);
+        return bookRepository.save(book);
+    }
+}
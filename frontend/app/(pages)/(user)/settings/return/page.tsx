@@ -30,6 +30,8 @@ export default function ReturnPage() {
     const [search, setSearch] = useState("");
     const [loading, setLoading] = useState(true);
     const [error, setError] = useState<string | null>(null);
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [expandedRow, setExpandedRow] = useState<string | null>(null);
     const [showReviewForm, setShowReviewForm] = useState(false);
     const [selectedBookId, setSelectedBookId] = useState('');
@@ -55,23 +57,29 @@ export default function ReturnPage() {
         }
     };
 
-    const fetchData = async (userId: string) => {
-        setLoading(true);
+    const fetchData = async (userId: string, cursor?: string | null) => {
+        if (cursor) {
+            setLoadingMore(true);
+        } else {
+            setLoading(true);
+        }
         setError(null);
 
         try {
-            const data = await fetchTransactions({
+            const page = await fetchTransactions({
                 search: search,
                 type: "all",
                 status: "all",
                 userId: userId,
-            });
-            setTransactions(data);
+            }, cursor);
+            setTransactions(previous => cursor ? [...previous, ...page.items] : page.items);
+            setNextCursor(page.nextCursor);
         } catch (err) {
             console.error("Error fetching transactions:", err);
             setError("Gagal memuat data transaksi.");
         } finally {
             setLoading(false);
+            setLoadingMore(false);
         }
     };
 
@@ -152,6 +160,7 @@ export default function ReturnPage() {
                         Tidak ada buku yang perlu dikembalikan
                     </div>
                 ) : (
+                    <>
                     <Table>
                         <TableCaption>Daftar buku yang perlu dikembalikan</TableCaption>
                         <TableHeader>
@@ -301,6 +310,15 @@ export default function ReturnPage() {
                             )})}
                         </TableBody>
                     </Table>
+                    {nextCursor && (
+                        <div className="flex justify-center p-4">
+                            <Button variant="outline" onClick={() => fetchData(userId, nextCursor)} disabled={loadingMore}>
+                                {loadingMore && <Loader2 className="animate-spin h-4 w-4 mr-2" />}
+                                Muat lebih banyak
+                            </Button>
+                        </div>
+                    )}
+                    </>
                 )}
             </div>
         </div>
@@ -35,26 +35,34 @@ export default function TransactionsPage() {
     const [search, setSearch] = useState("");
     const [loading, setLoading] = useState(true);
     const [error, setError] = useState<string | null>(null);
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [expandedRow, setExpandedRow] = useState<string | null>(null);
 
-    const fetchData = async () => {
-        setLoading(true);
+    const fetchData = async (cursor?: string | null) => {
+        if (cursor) {
+            setLoadingMore(true);
+        } else {
+            setLoading(true);
+        }
         setError(null);
 
         try {
             const userId = localStorage.getItem("userId") || "";
-            const data = await fetchTransactions({
+            const page = await fetchTransactions({
                 search: search,
                 type: type,
                 status: status,
                 userId: userId,
-            });
-            setTransactions(data);
+            }, cursor);
+            setTransactions(previous => cursor ? [...previous, ...page.items] : page.items);
+            setNextCursor(page.nextCursor);
         } catch (err) {
             console.error("Error fetching transactions:", err);
             setError("Failed to fetch transactions.");
         } finally {
             setLoading(false);
+            setLoadingMore(false);
         }
     };
 
@@ -123,6 +131,7 @@ export default function TransactionsPage() {
                 ) : transactions.length === 0 ? (
                     <div className="text-center text-muted-foreground p-8">Belum ada transaksi</div>
                 ) : (
+                    <>
                     <Table>
                         <TableCaption>Daftar semua transaksi Anda</TableCaption>
                         <TableHeader>
@@ -227,6 +236,15 @@ export default function TransactionsPage() {
                             ))}
                         </TableBody>
                     </Table>
+                    {nextCursor && (
+                        <div className="flex justify-center p-4">
+                            <Button variant="outline" onClick={() => fetchData(nextCursor)} disabled={loadingMore}>
+                                {loadingMore && <Loader2 className="animate-spin h-4 w-4 mr-2" />}
+                                Muat lebih banyak
+                            </Button>
+                        </div>
+                    )}
+                    </>
                 )}
             </div>
         </div>
@@ -326,6 +326,7 @@ function BookForm({ book, onSubmit }: BookFormProps) {
                         <Label htmlFor="language">Language</Label>
                         <Input id="language" name="language" value={formData.language} onChange={handleChange} required />
                     </div>
+                    {/* Saat edit, stok tersedia mengikuti perubahan quota di server */}
                     <div>
                         <Label htmlFor="availableCopies">Available Copies</Label>
                         <Input
@@ -334,6 +335,7 @@ function BookForm({ book, onSubmit }: BookFormProps) {
                             type="number"
                             value={formData.availableCopies}
                             onChange={handleChange}
+                            disabled={!!book}
                             required
                         />
                     </div>
@@ -37,24 +37,32 @@ export default function ReturnPage() {
     const [search, setSearch] = useState("");
     const [loading, setLoading] = useState(true);
     const [error, setError] = useState<string | null>(null);
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [expandedRow, setExpandedRow] = useState<string | null>(null);
 
-    const fetchData = async () => {
-        setLoading(true);
+    const fetchData = async (cursor?: string | null) => {
+        if (cursor) {
+            setLoadingMore(true);
+        } else {
+            setLoading(true);
+        }
         setError(null);
 
         try {
-            const data = await fetchTransactions({
+            const page = await fetchTransactions({
                 search: search,
                 type: type,
                 status: status,
-            });
-            setTransactions(data);
+            }, cursor);
+            setTransactions(previous => cursor ? [...previous, ...page.items] : page.items);
+            setNextCursor(page.nextCursor);
         } catch (err) {
             console.error("Error fetching transactions:", err);
             setError("Failed to fetch transactions.");
         } finally {
             setLoading(false);
+            setLoadingMore(false);
         }
     };
 
@@ -127,6 +135,7 @@ export default function ReturnPage() {
                 ) : error ? (
                     <div className="text-center text-red-500">{error}</div>
                 ) : (
+                    <>
                     <Table>
                         <TableCaption>A list of recent transactions.</TableCaption>
                         <TableHeader>
@@ -333,6 +342,15 @@ export default function ReturnPage() {
                                 ))}
                         </TableBody>
                     </Table>
+                    {nextCursor && (
+                        <div className="flex justify-center p-4">
+                            <Button variant="outline" onClick={() => fetchData(nextCursor)} disabled={loadingMore}>
+                                {loadingMore && <Loader2 className="animate-spin h-4 w-4 mr-2" />}
+                                Muat lebih banyak
+                            </Button>
+                        </div>
+                    )}
+                    </>
                 )}
             </div>
         </div>
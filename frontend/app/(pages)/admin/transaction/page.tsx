@@ -35,24 +35,32 @@ export default function AdminTransactionsPage() {
     const [search, setSearch] = useState("");
     const [loading, setLoading] = useState(true);
     const [error, setError] = useState<string | null>(null);
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [expandedRow, setExpandedRow] = useState<string | null>(null);
 
-    const fetchData = async () => {
-        setLoading(true);
+    const fetchData = async (cursor?: string | null) => {
+        if (cursor) {
+            setLoadingMore(true);
+        } else {
+            setLoading(true);
+        }
         setError(null);
 
         try {
-            const data = await fetchTransactions({
+            const page = await fetchTransactions({
                 search: search,
                 type: type,
                 status: status,
-            });
-            setTransactions(data);
+            }, cursor);
+            setTransactions(previous => cursor ? [...previous, ...page.items] : page.items);
+            setNextCursor(page.nextCursor);
         } catch (err) {
             console.error("Error fetching transactions:", err);
             setError("Failed to fetch transactions.");
         } finally {
             setLoading(false);
+            setLoadingMore(false);
         }
     };
 
@@ -115,7 +123,7 @@ export default function AdminTransactionsPage() {
                 {/* Stats Grid */}
                 <div className="grid grid-cols-2 md:grid-cols-6 gap-4">
                     <div className="p-4 border rounded-lg bg-slate-50">
-                        <p className="text-sm text-muted-foreground">Total Transaksi</p>
+                        <p className="text-sm text-muted-foreground">Transaksi Dimuat</p>
                         <p className="text-2xl font-bold">{stats.total}</p>
                     </div>
                     <div className="p-4 border rounded-lg bg-yellow-50">
@@ -192,8 +200,9 @@ export default function AdminTransactionsPage() {
                 ) : transactions.length === 0 ? (
                     <div className="text-center text-muted-foreground p-8">Tidak ada transaksi</div>
                 ) : (
+                    <>
                     <Table>
-                        <TableCaption>Total: {transactions.length} transaksi</TableCaption>
+                        <TableCaption>Menampilkan {transactions.length} transaksi{nextCursor ? " (masih ada halaman berikutnya)" : ""}</TableCaption>
                         <TableHeader>
                             <TableRow>
                                 <TableHead>Invoice</TableHead>
@@ -303,6 +312,15 @@ export default function AdminTransactionsPage() {
                             ))}
                         </TableBody>
                     </Table>
+                    {nextCursor && (
+                        <div className="flex justify-center p-4">
+                            <Button variant="outline" onClick={() => fetchData(nextCursor)} disabled={loadingMore}>
+                                {loadingMore && <Loader2 className="animate-spin h-4 w-4 mr-2" />}
+                                Muat lebih banyak
+                            </Button>
+                        </div>
+                    )}
+                    </>
                 )}
             </div>
         </div>
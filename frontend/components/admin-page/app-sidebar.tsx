@@ -44,18 +44,20 @@ export function AppSidebar({ ...props }: React.ComponentProps<typeof Sidebar>) {
     const [filteredData, setFilteredData] = React.useState<Transaction[]>([]);
     const [loading, setLoading] = React.useState(false);
     const [error, setError] = React.useState<string | null>(null);
+    const [nextCursor, setNextCursor] = React.useState<string | null>(null);
 
-    const fetchData = async () => {
+    const fetchData = async (cursor?: string | null) => {
         setLoading(true);
         setError(null);
 
         try {
-            const data = await fetchTransactions({
+            const page = await fetchTransactions({
                 search: searchQuery,
                 status: "pending", 
                 type: "borrow"
-            });
-            setFilteredData(data);
+            }, cursor);
+            setFilteredData(previous => cursor ? [...previous, ...page.items] : page.items);
+            setNextCursor(page.nextCursor);
         } catch (err) {
             console.error("Error fetching transactions:", err);
             setError("Failed to fetch transactions.");
@@ -188,6 +190,13 @@ export function AppSidebar({ ...props }: React.ComponentProps<typeof Sidebar>) {
                                     </DialogContent>
                                 </Dialog>
                             ))}
+                            {nextCursor && (
+                                <div className="flex justify-center p-4">
+                                    <Button variant="outline" size="sm" onClick={() => fetchData(nextCursor)} disabled={loading}>
+                                        Muat lebih banyak
+                                    </Button>
+                                </div>
+                            )}
                             {filteredData.length == 0 && (
                                 <p className="text-gray-500 text-center col-span-full text-sm">
                                 <img src="/assets/dino.png" alt="dino" width={40} height={40} className="mx-auto mt-10 mb-3" />
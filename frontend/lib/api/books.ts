@@ -1,11 +1,15 @@
+import { fetchAllPages } from "./pagination";
+
 /**
  * Mengambil daftar buku berdasarkan parameter query yang diberikan.
  *
  * @param {Record<string, any>} payload - Parameter query untuk permintaan {search, category, years}.
  * @returns {Promise<any>} Daftar buku yang sesuai dengan parameter query.
+ *                         Endpoint ini berhalaman; semua halaman diambil mengikuti header X-Next-Cursor.
+ *                         Dengan search dan tanpa sort, hasil diurutkan berdasarkan relevansi.
  * @throws {Error} Jika permintaan gagal atau respons tidak OK.
  * 
- * Request example: http://localhost:8080/api/books?search="Dunia Sophie"&category="fiksi"&years=1991
+ * Request example: http://localhost:8080/api/books?search="Dunia Sophie"&category="fiksi"&years=1991&limit=100
  * 
  * Response example:
  [{
@@ -20,16 +24,7 @@
   }]
  */
 export async function fetchBooks(payload?: Record<string, any>) {
-    const queryString = new URLSearchParams(payload).toString();
-
-    const response = await fetch(`${process.env.API_BASE_URL_PRODUCTION}/books?${queryString}`, {
-        method: 'GET',
-    });
-
-    if (!response.ok) {
-        throw new Error('Gagal mengambil data buku');
-    }
-    return response.json();
+    return fetchAllPages('/books', { limit: 100, ...payload }, 'Gagal mengambil data buku');
 }
 
 /**
@@ -0,0 +1,69 @@
+/**
+ * Nama header tempat backend mengirim cursor halaman berikutnya.
+ */
+export const NEXT_CURSOR_HEADER = 'X-Next-Cursor';
+
+/**
+ * Satu halaman hasil dari endpoint yang memakai keyset cursor.
+ */
+export interface CursorPage<T> {
+    items: T[];
+    nextCursor: string | null;
+}
+
+/**
+ * Mengambil satu halaman dari endpoint daftar yang memakai keyset cursor.
+ * Cursor halaman berikutnya dibaca dari header X-Next-Cursor; null berarti halaman terakhir.
+ *
+ * @param {string} path - Path endpoint, contoh: "/transactions".
+ * @param {Record<string, any>} [payload] - Parameter query (opsional).
+ * @param {string} errorMessage - Pesan error jika permintaan gagal.
+ * @param {string | null} [cursor] - Cursor dari halaman sebelumnya; kosong untuk halaman pertama.
+ * @returns {Promise<CursorPage<any>>} Item halaman ini dan cursor halaman berikutnya.
+ * @throws {Error} Jika permintaan gagal atau respons tidak OK.
+ */
+export async function fetchPage(path: string, payload: Record<string, any> | undefined, errorMessage: string,
+                                cursor?: string | null): Promise<CursorPage<any>> {
+    const params = new URLSearchParams(payload);
+    if (cursor) {
+        params.set('cursor', cursor);
+    }
+
+    const response = await fetch(`${process.env.API_BASE_URL_PRODUCTION}${path}?${params.toString()}`, {
+        method: 'GET',
+    });
+
+    if (!response.ok) {
+        throw new Error(errorMessage);
+    }
+    return {
+        items: await response.json(),
+        nextCursor: response.headers.get(NEXT_CURSOR_HEADER),
+    };
+}
+
+/**
+ * Mengambil semua halaman dari endpoint daftar yang memakai keyset cursor.
+ * Halaman berikutnya diminta selama respons masih membawa header X-Next-Cursor,
+ * lalu semua item digabung menjadi satu array. Hanya untuk daftar yang memang
+ * kecil; daftar besar sebaiknya memakai fetchPage dan memuat halaman berikutnya
+ * saat diminta.
+ *
+ * @param {string} path - Path endpoint, contoh: "/books".
+ * @param {Record<string, any>} [payload] - Parameter query (opsional).
+ * @param {string} errorMessage - Pesan error jika salah satu permintaan gagal.
+ * @returns {Promise<any[]>} Gabungan item dari semua halaman.
+ * @throws {Error} Jika permintaan gagal atau respons tidak OK.
+ */
+export async function fetchAllPages(path: string, payload: Record<string, any> | undefined, errorMessage: string) {
+    const items: any[] = [];
+    let cursor: string | null = null;
+
+    do {
+        const page: CursorPage<any> = await fetchPage(path, payload, errorMessage, cursor);
+        items.push(...page.items);
+        cursor = page.nextCursor;
+    } while (cursor);
+
+    return items;
+}
@@ -1,4 +1,5 @@
 import { newTransaction, Transaction } from "@/types/interfaces";
+import { CursorPage, fetchPage } from "./pagination";
 
 /**
  * Mengambil data transaksi berdasarkan kode invoice.
@@ -52,15 +53,17 @@ export async function fetchTransactionsByInvoiceId(invoiceId: string) {
 }
 
 /**
- * Mengambil semua data transaksi berdasarkan filter (opsional).
+ * Mengambil satu halaman data transaksi berdasarkan filter (opsional), terbaru lebih dulu.
  *
  * @param {Record<string, any>} [payload] - Filter untuk data transaksi (opsional). 
  *                                          Contoh filter: { status: 'pending', type: 'borrow' }.
- * @returns {Promise<any>} Data transaksi yang sesuai dengan filter (jika disediakan).
+ * @param {string | null} [cursor] - nextCursor dari halaman sebelumnya untuk memuat halaman berikutnya.
+ * @returns {Promise<CursorPage<Transaction>>} Transaksi halaman ini (items) dan cursor halaman berikutnya
+ *                                            (nextCursor, null jika sudah halaman terakhir).
  * @throws {Error} Jika permintaan gagal atau respons tidak OK.
  *
  * Contoh permintaan (request):
- * GET http://localhost:8080/api/transactions?status=pending&type=borrow
+ * GET http://localhost:8080/api/transactions?status=pending&type=borrow&limit=50
  *
  * Contoh respons (response):
  * [
@@ -94,17 +97,8 @@ export async function fetchTransactionsByInvoiceId(invoiceId: string) {
   },
 ]
  */
-export async function fetchTransactions(payload?: Record<string, any>) {
-    const queryString = new URLSearchParams(payload).toString();
-
-    const response = await fetch(`${process.env.API_BASE_URL_PRODUCTION}/transactions?${queryString}`, {
-        method: 'GET',
-    });
-
-    if (!response.ok) {
-        throw new Error('Gagal mengambil data transaksi');
-    }
-    return response.json();
+export async function fetchTransactions(payload?: Record<string, any>, cursor?: string | null): Promise<CursorPage<Transaction>> {
+    return fetchPage('/transactions', { limit: 50, ...payload }, 'Gagal mengambil data transaksi', cursor);
 }
 
 /**